@@ -0,0 +1,147 @@
+package ase1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Picks up bookings made during the day: watches the flights and passengers files a {@link CheckInHandler}
+ * was loaded from, and whenever they change, adds the lines appended to them with
+ * {@link CheckInHandler#ingestBookings()} on a thread of its own, while desks carry on checking in.
+ *
+ * Changes are noticed through the file system's watch service, and the files are looked at every poll
+ * interval whatever it says, for file systems it doesn't cover. Looking costs a check of each file's size,
+ * as only lines appended since the last read are ever read. Problems with the new lines, such as duplicate
+ * booking references or a line that can't be parsed, are printed and counted, and the feed carries on.
+ */
+public class BookingFeed implements Closeable {
+	private final CheckInHandler handler;
+	private final long pollNanos;
+	private final WatchService watcher; // null if the file system can't watch the files
+	private final Thread thread;
+	private final LongAdder failures = new LongAdder();
+	private volatile boolean closed;
+
+	/**
+	 * Starts watching the files the handler was loaded from
+	 * @param handler the handler, loaded from files rather than a snapshot
+	 * @param pollInterval the longest time between looking at the files
+	 * @param unit the unit of the poll interval
+	 * @throws IllegalArgumentException if the handler was loaded from a snapshot, so has no files to watch
+	 */
+	public BookingFeed(CheckInHandler handler, long pollInterval, TimeUnit unit) {
+		if (handler.getFlightFile() == null || handler.getPassengerFile() == null) {
+			throw new IllegalArgumentException("Only a handler loaded from files can follow them");
+		}
+		this.handler = handler;
+		this.pollNanos = unit.toNanos(pollInterval);
+		this.watcher = watch(handler.getFlightFile(), handler.getPassengerFile());
+		this.thread = new Thread(this::run, "booking-feed");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Registers the folders holding the files with a watch service
+	 * @return the watch service, or null if the files can't be watched, they are then only polled
+	 */
+	private static WatchService watch(Path flightFile, Path passengerFile) {
+		Path flightDir = flightFile.toAbsolutePath().getParent();
+		Path passengerDir = passengerFile.toAbsolutePath().getParent();
+		WatchService service = null;
+		try {
+			service = FileSystems.getDefault().newWatchService();
+			flightDir.register(service, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+			if (!passengerDir.equals(flightDir)) {
+				passengerDir.register(service, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+			}
+			return service;
+		} catch (IOException | UnsupportedOperationException e) {
+			if (service != null) {
+				try {
+					service.close();
+				} catch (IOException ignored) {
+					// it was never used
+				}
+			}
+			return null;
+		}
+	}
+
+	private void run() {
+		while (!closed) {
+			ingest();
+			try {
+				if (watcher == null) {
+					LockSupport.parkNanos(this, pollNanos);
+					continue;
+				}
+				// Wait for a change or the poll interval, then take every change so far, they are all read together
+				WatchKey key = watcher.poll(pollNanos, TimeUnit.NANOSECONDS);
+				while (key != null) {
+					key.pollEvents();
+					key.reset();
+					key = watcher.poll();
+				}
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return; // closed
+			}
+		}
+	}
+
+	private void ingest() {
+		try {
+			handler.ingestBookings();
+		} catch (IOException | IllegalReferenceCodeException e) {
+			failures.increment();
+			System.out.println(e.getMessage());
+		} catch (RuntimeException e) {
+			// such as a malformed line, the lines before it are added and the feed tries again next time
+			failures.increment();
+			System.out.println("Could not add the new bookings: " + e);
+		}
+	}
+
+	/**
+	 * returns the number of times the new lines couldn't all be added, for being unreadable, malformed, illegal or duplicates
+	 * @return the number of failures
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * Stops watching the files, once any lines being added have been added
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		if (watcher != null) {
+			try {
+				watcher.close();
+			} catch (IOException e) {
+				// the thread still sees closed at the end of its poll interval
+			}
+		}
+		LockSupport.unpark(thread);
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package ase1;
+
+import ase1.data.Flight;
+
+/**
+ * A successful check-in, as published on a {@link CheckInEventRing}.
+ * Events are made once when the ring is made and reused for every check-in after, so a consumer must
+ * copy out anything it wants to keep before it returns from {@link CheckInEventRing.Consumer#onEvent}.
+ */
+public final class CheckInEvent {
+	private String bookingRefCode;
+	private Flight flight;
+	private float baggageVolume;
+	private float baggageWeight;
+	private float fee;
+	private long publishedNanos;
+
+	CheckInEvent() {
+	}
+
+	void set(String bookingRefCode, Flight flight, float vol, float weight, float fee, long publishedNanos) {
+		this.bookingRefCode = bookingRefCode;
+		this.flight = flight;
+		this.baggageVolume = vol;
+		this.baggageWeight = weight;
+		this.fee = fee;
+		this.publishedNanos = publishedNanos;
+	}
+
+	/**
+	 * returns the booking reference of the passenger checked in
+	 * @return the booking reference
+	 */
+	public String getBookingRefCode() {
+		return bookingRefCode;
+	}
+
+	/**
+	 * returns the flight the passenger was checked in to
+	 * @return the flight
+	 */
+	public Flight getFlight() {
+		return flight;
+	}
+
+	/**
+	 * returns the volume of the passenger's baggage
+	 * @return the baggage volume
+	 */
+	public float getBaggageVolume() {
+		return baggageVolume;
+	}
+
+	/**
+	 * returns the weight of the passenger's baggage
+	 * @return the baggage weight
+	 */
+	public float getBaggageWeight() {
+		return baggageWeight;
+	}
+
+	/**
+	 * returns the fee the passenger paid
+	 * @return the fee
+	 */
+	public float getFee() {
+		return fee;
+	}
+
+	/**
+	 * returns when the event was published, from System.nanoTime, for measuring how long consumers take to see it
+	 * @return the time published
+	 */
+	public long getPublishedNanos() {
+		return publishedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return bookingRefCode + " on " + (flight == null ? null : flight.getFlightCode())
+				+ " volume " + baggageVolume + " weight " + baggageWeight + " fee " + fee;
+	}
+}
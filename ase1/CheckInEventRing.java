@@ -0,0 +1,331 @@
+package ase1;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import ase1.data.Flight;
+
+/**
+ * A ring buffer of check-in events, so reporting, persistence and monitoring can react to check-ins
+ * on threads of their own without slowing the desks down.
+ *
+ * The events are made once, up front, and reused. Any number of desks publish: each claims the next
+ * sequence number with a compare and set, fills in the event in that slot, then marks the slot as
+ * published for that lap of the ring. Each consumer runs on its own thread, works through the events
+ * in order at its own pace, and is told when it reaches the last event published so far, so it can
+ * do its expensive work (a report, a disk write) once per batch rather than once per event.
+ *
+ * A slot is only reused once every consumer has finished with it. When consumers fall a whole ring
+ * behind, the {@link BackPressure} decides whether desks wait for them or the event is dropped.
+ * Events published before the ring is started are dropped, as no consumer is there to take them, so every
+ * consumer starts from the first sequence number and no desk ever laps a consumer that hasn't started.
+ * How consumers wait for events is set by the {@link WaitStrategy}, trading CPU for latency.
+ */
+public class CheckInEventRing implements Closeable {
+	private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(int[].class);
+	// Rounds of busy spinning, then yielding, before a waiting thread starts to sleep
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	private static final long SLEEP_NANOS = 50_000;
+
+	/**
+	 * How consumer threads wait when they have caught up with the desks
+	 */
+	public enum WaitStrategy {
+		/** Spin on the CPU. Lowest latency, but each consumer keeps a whole CPU busy */
+		BUSY_SPIN,
+		/** Spin briefly, then yield the CPU to other threads between checks */
+		YIELDING,
+		/** Spin, then yield, then sleep for 50us between checks. Uses little CPU, adds up to 50us of latency */
+		SLEEPING,
+		/** Spin briefly, then park until a desk publishes. Uses no CPU while idle, desks pay to wake the consumer */
+		BLOCKING
+	}
+
+	/**
+	 * What a desk does when the slowest consumer is a whole ring behind
+	 */
+	public enum BackPressure {
+		/** Wait for the consumer to make room, so no event is ever lost, but a stuck consumer stalls check-in */
+		BLOCK,
+		/** Drop the event, counted by {@link CheckInEventRing#getDropped()}, so check-in never waits */
+		DROP
+	}
+
+	/**
+	 * Handles check-in events, on the consumer's own thread
+	 */
+	public interface Consumer {
+		/**
+		 * @param event the check-in, only valid until this method returns
+		 * @param sequence the event's sequence number, counting from 0
+		 * @param endOfBatch true if this is the last event published so far, a good time to flush
+		 * @throws Exception counted by {@link CheckInEventRing#getConsumerFailures()}, the consumer carries on with the next event
+		 */
+		void onEvent(CheckInEvent event, long sequence, boolean endOfBatch) throws Exception;
+	}
+
+	private final CheckInEvent[] events;
+	private final int[] published; // the lap of the ring each slot was last published on
+	private final int mask;
+	private final int lapShift;
+	private final WaitStrategy waitStrategy;
+	private final BackPressure backPressure;
+
+	private final AtomicLong claimed = new AtomicLong(-1); // the last sequence number claimed by a desk
+	private volatile long gatingCache = -1; // the slowest consumer's sequence when last looked at
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder consumerFailures = new LongAdder();
+
+	private final List<ConsumerThread> consumers = new ArrayList<ConsumerThread>();
+	private volatile ConsumerThread[] running = new ConsumerThread[0];
+	private volatile boolean started;
+	private volatile boolean closed;
+
+	/**
+	 * Constructs a CheckInEventRing
+	 * @param size the number of events in the ring, a power of two
+	 * @param waitStrategy how consumers wait for events
+	 * @param backPressure what desks do when the ring is full
+	 */
+	public CheckInEventRing(int size, WaitStrategy waitStrategy, BackPressure backPressure) {
+		if (size < 1 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("The ring size must be a power of two: " + size);
+		}
+		this.events = new CheckInEvent[size];
+		for (int i = 0; i < size; i++) {
+			events[i] = new CheckInEvent();
+		}
+		this.published = new int[size];
+		Arrays.fill(published, -1);
+		this.mask = size - 1;
+		this.lapShift = Integer.numberOfTrailingZeros(size);
+		this.waitStrategy = waitStrategy;
+		this.backPressure = backPressure;
+	}
+
+	/**
+	 * Adds a consumer, which gets every event published after start, and none from before
+	 * @param name the name of the consumer's thread
+	 * @param consumer the consumer
+	 */
+	public synchronized void addConsumer(String name, Consumer consumer) {
+		if (started) {
+			throw new IllegalStateException("Consumers must be added before the ring is started");
+		}
+		consumers.add(new ConsumerThread(name, consumer));
+	}
+
+	/**
+	 * Starts the consumers' threads, and publishing, events published before this are dropped
+	 */
+	public synchronized void start() {
+		if (started) {
+			return;
+		}
+		running = consumers.toArray(new ConsumerThread[0]);
+		started = true;
+		for (ConsumerThread consumer : running) {
+			consumer.start();
+		}
+	}
+
+	/**
+	 * Publishes a check-in to every consumer. Safe to call from many desks at once.
+	 * @param bookingRefCode the booking reference of the passenger checked in
+	 * @param flight the flight they were checked in to
+	 * @param vol the volume of their baggage
+	 * @param weight the weight of their baggage
+	 * @param fee the fee they paid
+	 * @return true if the event was published, false if it was dropped because the ring was full, closed or not yet started
+	 */
+	public boolean publish(String bookingRefCode, Flight flight, float vol, float weight, float fee) {
+		long next;
+		int tries = 0;
+		while (true) {
+			if (closed || !started) { // started is set after running, so every consumer gates the desks from the first event
+				dropped.increment();
+				return false;
+			}
+			long current = claimed.get();
+			next = current + 1;
+			long wrapPoint = next - events.length; // the event last held by the slot, must have been consumed
+			if (wrapPoint > gatingCache) {
+				long slowest = slowestConsumer(current);
+				gatingCache = slowest;
+				if (wrapPoint > slowest) {
+					if (backPressure == BackPressure.DROP) {
+						dropped.increment();
+						return false;
+					}
+					idle(tries, null);
+					tries = Math.min(tries + 1, SPIN_TRIES + YIELD_TRIES);
+					continue;
+				}
+			}
+			if (claimed.compareAndSet(current, next)) {
+				break;
+			}
+		}
+
+		int slot = (int) (next & mask);
+		events[slot].set(bookingRefCode, flight, vol, weight, fee, System.nanoTime());
+		PUBLISHED.setRelease(published, slot, (int) (next >>> lapShift));
+
+		if (waitStrategy == WaitStrategy.BLOCKING) {
+			VarHandle.fullFence(); // publish before looking for parked consumers, the other half is in idle
+			for (ConsumerThread consumer : running) {
+				if (consumer.parked) {
+					LockSupport.unpark(consumer);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * returns the number of events dropped because the ring was full, closed or not yet started
+	 * @return the number dropped
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * returns the number of events published so far, including any a desk is still filling in
+	 * @return the number published
+	 */
+	public long getPublished() {
+		return claimed.get() + 1;
+	}
+
+	/**
+	 * returns the number of events consumers threw an exception for
+	 * @return the number of failures
+	 */
+	public long getConsumerFailures() {
+		return consumerFailures.sum();
+	}
+
+	/**
+	 * returns how many events the slowest consumer has still to handle
+	 * @return the backlog
+	 */
+	public long getBacklog() {
+		long current = claimed.get();
+		return current - slowestConsumer(current);
+	}
+
+	/**
+	 * Stops taking new events, lets every consumer finish the events already published, then stops the consumers
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (ConsumerThread consumer : running) {
+			LockSupport.unpark(consumer);
+		}
+		boolean interrupted = false;
+		for (ConsumerThread consumer : running) {
+			while (consumer.isAlive()) {
+				try {
+					consumer.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private long slowestConsumer(long current) {
+		long slowest = current; // with no consumers, nothing holds the desks up
+		for (ConsumerThread consumer : running) {
+			slowest = Math.min(slowest, consumer.sequence.get());
+		}
+		return slowest;
+	}
+
+	private boolean isPublished(long sequence) {
+		return (int) PUBLISHED.getAcquire(published, (int) (sequence & mask)) == (int) (sequence >>> lapShift);
+	}
+
+	/**
+	 * Waits a little, longer each try, before looking again
+	 * @param tries the number of times already waited
+	 * @param consumer the consumer thread waiting, or null for a desk waiting for room
+	 */
+	private void idle(int tries, ConsumerThread consumer) {
+		if (tries < SPIN_TRIES || (consumer != null && waitStrategy == WaitStrategy.BUSY_SPIN)) {
+			Thread.onSpinWait();
+		} else if (tries < SPIN_TRIES + YIELD_TRIES || (consumer != null && waitStrategy == WaitStrategy.YIELDING)) {
+			Thread.yield();
+		} else if (consumer != null && waitStrategy == WaitStrategy.BLOCKING) {
+			consumer.parked = true;
+			VarHandle.fullFence();
+			// look once more after saying we're parked, a desk publishing now will see the flag and unpark us
+			if (!isPublished(consumer.sequence.get() + 1) && !closed) {
+				LockSupport.park(this);
+			}
+			consumer.parked = false;
+		} else {
+			LockSupport.parkNanos(this, SLEEP_NANOS);
+		}
+	}
+
+	/**
+	 * Runs one consumer, handing it each event in turn
+	 */
+	private final class ConsumerThread extends Thread {
+		private final Consumer consumer;
+		final AtomicLong sequence = new AtomicLong(-1); // the last event this consumer has finished with
+		volatile boolean parked;
+
+		ConsumerThread(String name, Consumer consumer) {
+			super(name);
+			this.consumer = consumer;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			long next = sequence.get() + 1;
+			int tries = 0;
+			while (true) {
+				if (!isPublished(next)) {
+					if (closed && next > claimed.get()) {
+						return; // everything published has been handled
+					}
+					idle(tries, this);
+					tries = Math.min(tries + 1, SPIN_TRIES + YIELD_TRIES);
+					continue;
+				}
+				tries = 0;
+				// Take every event published so far in one go, the last of them ends the batch
+				long last = next;
+				long limit = claimed.get();
+				while (last < limit && isPublished(last + 1)) {
+					last++;
+				}
+				for (long s = next; s <= last; s++) {
+					try {
+						consumer.onEvent(events[(int) (s & mask)], s, s == last);
+					} catch (Exception e) {
+						consumerFailures.increment();
+					}
+				}
+				sequence.set(last); // the slots can now be reused
+				next = last + 1;
+			}
+		}
+	}
+}
@@ -1,15 +1,55 @@
 package ase1;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import ase1.data.CheckInEpochs;
+import ase1.data.CheckInView;
 import ase1.data.Flight;
 import ase1.data.FlightList;
+import ase1.data.FlightRollup;
+import ase1.data.Passenger;
 import ase1.data.PassengerList;
+import ase1.data.SnapshotFile;
 
+/**
+ * Handles the checking in of passengers to their flights.
+ * Can be shared by any number of check-in desks running on their own threads, the only locking
+ * is on the passenger being checked in and on their flight, so desks only wait for each other
+ * when they are working on the same booking or flight.
+ */
 public class CheckInHandler {
+	/** The file the combined report is written to by generateReports */
+	public static final String REPORT_FILE = "report.txt";
 	
-	private PassengerList passengers;
-	private FlightList flights;
+	private final PassengerList passengers;
+	private final FlightList flights;
+	private final ReportGenerator reports;
+	// Records each check-in so they can be replayed after a crash, null when not journaling
+	private volatile CheckInJournal journal;
+	// Prices excess baggage
+	private volatile FeeEngine feeEngine = new StandardFeeEngine();
+	// Every check-in is published here for consumers to react to, null when not publishing
+	private volatile CheckInEventRing events;
+	// Turn passengers away when their flight is full or their baggage won't fit, rather than going over the limits
+	private volatile boolean enforceLimits;
+	// Times and counts everything the handler does
+	private final CheckInMetrics metrics = new CheckInMetrics();
+	// Every check-in is recorded here too, for consistent views of the flights and passengers
+	private final CheckInEpochs epochs;
+	// Check-ins are routed through these once asked to, so only a flight's partition checks in to it, null when not routed
+	private volatile CheckInPartitions partitions;
+	// The files loaded from, followed by ingestBookings, null when loaded from a snapshot
+	private final Path flightFile;
+	private final Path passengerFile;
 	
 	/**
 	 * Constructor for the CheckInHandler.
@@ -17,8 +57,238 @@ public class CheckInHandler {
 	 * using the loadFlights and loadPassengers methods.
 	 */
 	public CheckInHandler() {
-		flights = new FlightList();
-		passengers = new PassengerList(flights);
+		this(Paths.get(FlightList.DEFAULT_FILE), Paths.get(PassengerList.DEFAULT_FILE));
+	}
+	
+	/**
+	 * Constructor for the CheckInHandler, loading the flights and passengers from the given files
+	 * rather than from the working directory.
+	 * 
+	 * @param	flightFile		The comma separated file of flights
+	 * @param	passengerFile	The comma separated file of passengers
+	 */
+	public CheckInHandler(Path flightFile, Path passengerFile) {
+		this(flightFile, passengerFile, PassengerList.Storage.HEAP);
+	}
+	
+	/**
+	 * Constructor for the CheckInHandler, loading the flights and passengers from the given files
+	 * and keeping the passengers in the given storage, {@link PassengerList.Storage#OFF_HEAP} for the largest lists.
+	 * 
+	 * @param	flightFile		The comma separated file of flights
+	 * @param	passengerFile	The comma separated file of passengers
+	 * @param	storage			Where to keep the passengers
+	 * @throws	UncheckedIOException	If either file could not be read.
+	 */
+	public CheckInHandler(Path flightFile, Path passengerFile, PassengerList.Storage storage) {
+		long start = System.nanoTime();
+		flights = new FlightList(flightFile);
+		long loaded = System.nanoTime();
+		metrics.loadFlights.record(loaded - start);
+		passengers = new PassengerList(flights, passengerFile, storage);
+		metrics.loadPassengers.record(System.nanoTime() - loaded);
+		reports = new ReportGenerator(flights.getValues(), Paths.get(REPORT_FILE));
+		epochs = new CheckInEpochs(flights, passengers);
+		this.flightFile = flightFile;
+		this.passengerFile = passengerFile;
+	}
+	
+	private CheckInHandler(FlightList flights, PassengerList passengers) {
+		this.flights = flights;
+		this.passengers = passengers;
+		this.reports = new ReportGenerator(flights.getValues(), Paths.get(REPORT_FILE));
+		this.epochs = new CheckInEpochs(flights, passengers);
+		this.flightFile = null;
+		this.passengerFile = null;
+	}
+	
+	/**
+	 * Creates a CheckInHandler from a snapshot written by {@link #saveSnapshot(Path)}.
+	 * Picks up where the saved handler was when the snapshot was taken, including who has checked in
+	 * and the totals on each flight, without reading the text files. Attaching the saved handler's journal
+	 * then replays the check-ins made since, so it carries on exactly where the saved handler stopped.
+	 * 
+	 * @param	snapshot	The snapshot file
+	 * @return	A handler holding the flights and passengers in the snapshot
+	 * @throws	IOException	If the snapshot can't be read
+	 */
+	public static CheckInHandler loadSnapshot(Path snapshot) throws IOException {
+		long start = System.nanoTime();
+		SnapshotFile file = SnapshotFile.load(snapshot);
+		CheckInHandler handler = new CheckInHandler(file.getFlights(), file.getPassengers());
+		handler.metrics.loadSnapshot.record(System.nanoTime() - start);
+		return handler;
+	}
+	
+	/**
+	 * Saves the flights, passengers, check-ins and flight totals to a binary snapshot,
+	 * so a restarted desk node can carry on using {@link #loadSnapshot(Path)}.
+	 * Desks can carry on checking in while it is saved. It is saved as of a view taken first (see {@link #getView()}),
+	 * so the check-ins and flight totals in it always agree. Check-ins made after the view are left out,
+	 * attach the journal to the restored handler to replay them.
+	 * 
+	 * @param	snapshot	Where to write the snapshot, replacing any snapshot already there
+	 * @throws	IOException	If the snapshot can't be written
+	 */
+	public void saveSnapshot(Path snapshot) throws IOException {
+		SnapshotFile.save(flights, passengers, epochs.view(), snapshot);
+	}
+	
+	/**
+	 * Replays a journal of check-ins on top of the loaded passengers and flights, then records every
+	 * check-in from here on to it.
+	 * Passengers already checked in, for example because they were in the snapshot this handler was
+	 * loaded from, are skipped, so replaying never counts a passenger's baggage twice.
+	 * 
+	 * @param	theJournal	The journal to replay and then append to
+	 * @return	The number of check-ins replayed from the journal
+	 * @throws	IOException	If the journal can't be read
+	 */
+	public int attachJournal(CheckInJournal theJournal) throws IOException {
+		int replayed = replayJournal(theJournal);
+		journal = theJournal;
+		return replayed;
+	}
+	
+	/**
+	 * Replays a journal of check-ins, without recording check-ins to it from here on, see {@link #attachJournal(CheckInJournal)}
+	 * 
+	 * @param	theJournal	The journal to replay
+	 * @return	The number of check-ins replayed from the journal
+	 * @throws	IOException	If the journal can't be read
+	 */
+	int replayJournal(CheckInJournal theJournal) throws IOException {
+		long start = System.nanoTime();
+		final int[] replayed = new int[1];
+		theJournal.replay((bookingRefCode, vol, weight, fee) -> {
+			Passenger passenger = passengers.getNotCheckedIn().get(bookingRefCode);
+			if(passenger != null && passengers.checkInPassenger(bookingRefCode)){
+				passenger.getFlight().addPassengerAndBaggage(vol, weight, fee);
+				epochs.record(passenger, vol, weight, fee);
+				replayed[0]++;
+			}
+		});
+		metrics.replayJournal.record(System.nanoTime() - start);
+		return replayed[0];
+	}
+	
+	/**
+	 * Adds the flights and passengers appended to the files since they were loaded, or since this was last called,
+	 * so bookings made during the day can be checked in without a restart. Only the new lines are read, and desks
+	 * carry on checking in while they are added. New flights are in the reports and views from here on.
+	 * Does nothing for a handler loaded from a snapshot, which has no files to follow. See {@link BookingFeed}
+	 * for calling this whenever the files change.
+	 * 
+	 * @throws	IOException	If a file can't be read, or is shorter than when it was last read
+	 * @throws	IllegalReferenceCodeException	If there were illegal or duplicate booking references in the new lines,
+	 * 											once every other passenger has been added.
+	 */
+	public synchronized void ingestBookings() throws IOException {
+		long start = System.nanoTime();
+		try {
+			// Flights first, so passengers booked on a new flight find it
+			flights.loadAppended(flight -> {
+				epochs.addFlight(flight);
+				reports.addFlight(flight);
+			});
+			passengers.loadAppended(flights, epochs);
+		} finally {
+			metrics.ingestBookings.record(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Gets the flights file this handler was loaded from.
+	 * 
+	 * @return	The file, or null if loaded from a snapshot
+	 */
+	Path getFlightFile() {
+		return flightFile;
+	}
+	
+	/**
+	 * Gets the passengers file this handler was loaded from.
+	 * 
+	 * @return	The file, or null if loaded from a snapshot
+	 */
+	Path getPassengerFile() {
+		return passengerFile;
+	}
+	
+	/**
+	 * Publishes every check-in from here on to a ring of events, for reporting, persistence and
+	 * monitoring to pick up on threads of their own.
+	 * 
+	 * @param	theEvents	The ring to publish to, or null to stop publishing
+	 */
+	public void setEventRing(CheckInEventRing theEvents) {
+		events = theEvents;
+	}
+	
+	/**
+	 * Sets how excess baggage is priced from here on, fees already charged are not changed.
+	 * Defaults to a {@link StandardFeeEngine}.
+	 * 
+	 * @param	theFeeEngine	The fee engine
+	 */
+	public void setFeeEngine(FeeEngine theFeeEngine) {
+		if(theFeeEngine == null){
+			throw new IllegalArgumentException("A fee engine is needed to price baggage");
+		}
+		feeEngine = theFeeEngine;
+	}
+	
+	/**
+	 * Sets whether passengers are turned away at check-in when their flight is full or their baggage would take
+	 * it over its maximum weight or volume. Off by default, when everyone is checked in and a flight over its
+	 * limits shows as exceeded in the reports. Each flight's limits are claimed without locking, so desks
+	 * racing for the last seat or the last of the baggage allowance never take the flight over.
+	 * 
+	 * @param	enforce	Whether to turn passengers away rather than go over the limits
+	 */
+	public void setEnforceLimits(boolean enforce) {
+		enforceLimits = enforce;
+	}
+	
+	/**
+	 * Gets whether passengers are turned away at check-in rather than taking their flight over its limits.
+	 * 
+	 * @return	True if limits are enforced
+	 */
+	public boolean isEnforcingLimits() {
+		return enforceLimits;
+	}
+	
+	/**
+	 * Gets the fee engine pricing excess baggage.
+	 * 
+	 * @return	The fee engine
+	 */
+	public FeeEngine getFeeEngine() {
+		return feeEngine;
+	}
+	
+	/**
+	 * Gets the timings and counts of everything this handler has done.
+	 * 
+	 * @return	The metrics, updated as the handler works
+	 */
+	public CheckInMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Registers this handler's metrics, passenger counts and flight loads with the platform MBean server,
+	 * as ase1:type=CheckInHandler with the name given, quoted, for JConsole or any other JMX client to watch.
+	 * 
+	 * @param	name	Tells this handler apart from any others in the same JVM
+	 * @return	The name registered under, for unregistering the MBean later
+	 * @throws	JMException	If the name is taken or the MBean can't be registered
+	 */
+	public ObjectName registerMBean(String name) throws JMException {
+		ObjectName objectName = new ObjectName("ase1:type=CheckInHandler,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new CheckInMBean(metrics, flights, passengers), objectName);
+		return objectName;
 	}
 	
 	/**
@@ -29,25 +299,60 @@ public class CheckInHandler {
 	 * @param	boookingReference	The booking reference code of the passenger
 	 * @param	lastName			Last name of the passenger, to check against that associated with booking reference
 	 * @return	A boolean to show if the last name provided matches that of passenger with booking reference
-	 * @throws	IllegalReferenceCodeException	If the booking reference does match a passenger that is to be checked in or any passenger on the system.
+	 * @throws	IllegalReferenceCodeException	If the booking reference does match a passenger that is to be checked in or any passenger on the system,
+	 * 											its status is ALREADY_CHECKED_IN or NOT_ON_RECORD.
 	 */
 	public boolean checkDetails(String bookingReference, String lastName) throws IllegalReferenceCodeException{
-		if( passengers.getNotCheckedIn().containsKey(bookingReference) ){	// Check that the booking reference provided matches, a passenger to be checked in
-			//Strings should compared with .equals in Java
-			if(passengers.getNotCheckedIn().get(bookingReference).getLastName().equals(lastName)){	// Checks if the passenger 
-				return true; // Return true to show that the details match with a passenger to be checked in.
-			}
-			else{
-				return false; // return false if they do not match,
-			}
+		CheckInResult.Status status = tryCheckDetails(bookingReference, lastName).getStatus();
+		switch(status){
+		case DETAILS_MATCH:
+			return true; // Return true to show that the details match with a passenger to be checked in.
+		case NAME_MISMATCH:
+			return false; // return false if they do not match,
+		case ALREADY_CHECKED_IN: // Throw an exception if the matching passenger is already checked in
+			metrics.thrown(status);
+			throw new IllegalReferenceCodeException(bookingReference+": Is already checked in.", status);
+		default: // Throw an exception if there is no passenger that matches this booking reference code
+			metrics.thrown(status);
+			throw new IllegalReferenceCodeException(bookingReference+": There is no booking reference on record.", status);
 		}
-		else if(passengers.getCheckedIn().containsKey(bookingReference)){ // Throw an exception if the matching passenger is already checked in
-			throw new IllegalReferenceCodeException(bookingReference+": Is already checked in.");
+	}
+	
+	/**
+	 * Checks the details of the passenger who wants to check in, without throwing for a booking reference
+	 * that is unknown or already checked in.
+	 * A single lookup, and nothing is allocated whatever the outcome.
+	 * 
+	 * @param	bookingReference	The booking reference code of the passenger
+	 * @param	lastName			Last name of the passenger, to check against that associated with booking reference
+	 * @return	DETAILS_MATCH, NAME_MISMATCH, ALREADY_CHECKED_IN or NOT_ON_RECORD
+	 */
+	public CheckInResult tryCheckDetails(String bookingReference, String lastName) {
+		if(metrics.isTimed(bookingReference)){
+			return timedLookUp(bookingReference, lastName); // Kept out of line, so untimed lookups stay short
 		}
-		else{ // Throw an exception if there is no passenger that matches this booking reference code
-			throw new IllegalReferenceCodeException(bookingReference+": There is no booking reference on record.");
+		CheckInResult result = lookUp(bookingReference, lastName);
+		metrics.count(result);
+		return result;
+	}
+	
+	private CheckInResult timedLookUp(String bookingReference, String lastName) {
+		long start = System.nanoTime();
+		CheckInResult result = lookUp(bookingReference, lastName);
+		metrics.record(metrics.checkDetails, result, System.nanoTime() - start);
+		return result;
+	}
+	
+	private CheckInResult lookUp(String bookingReference, String lastName) {
+		Passenger passenger = passengers.find(bookingReference);
+		if( passenger == null ){
+			return CheckInResult.NOT_ON_RECORD;
 		}
-		
+		if( passenger.isCheckedIn() ){
+			return CheckInResult.ALREADY_CHECKED_IN;
+		}
+		//Strings should compared with .equals in Java
+		return passenger.getLastName().equals(lastName) ? CheckInResult.DETAILS_MATCH : CheckInResult.NAME_MISMATCH;
 	}
 
 	/**
@@ -58,14 +363,89 @@ public class CheckInHandler {
 	 * @param	bookingReference	The booking reference of the passenger to be processed
 	 * @param	dimensions			The width, height and depth of the baggage in a single array.
 	 * @param	weight				The weight of the passengers baggage.
-	 * @return 	The fee due from the passenger for any excesses on the baggage, -1 represents there was an error with check in
-	 * @throws	IllegalReferenceCodeException	If there is no passenger with a matching booking reference code.
+	 * @return 	The fee due from the passenger for any excesses on the baggage, -1 represents there was an error with check in:
+	 * 			the passenger was turned away as their flight is full or over its baggage limits, see {@link #setEnforceLimits(boolean)}
+	 * @throws	IllegalReferenceCodeException	If there is no passenger with a matching booking reference code,
+	 * 											its status is ALREADY_CHECKED_IN or NOT_ON_RECORD.
+	 * @throws	UncheckedIOException	If the passenger was checked in but the check-in could not be written to the journal.
 	 */
 	public float processPassenger(String bookingReference, float[] dimensions, float weight) throws IllegalReferenceCodeException{
-		float fee;	// Fee due from passenger, calculated from the weight Fee, volume fee and the multiplier for the passengers flight
-		float weightFee = 0f, volFee = 0f;
-		float multiplier = 1f;
-
+		CheckInResult result = tryProcessPassenger(bookingReference, dimensions, weight);
+		switch(result.getStatus()){
+		case CHECKED_IN:
+			// Output the final fee due from the passenger,
+			return result.getFee();
+		case FLIGHT_FULL:
+		case OVER_WEIGHT:
+		case OVER_VOLUME:
+			return -1; // Turned away by their flight, they are still waiting to check in
+		case NOT_ON_RECORD:
+			metrics.thrown(result.getStatus());
+			throw new IllegalReferenceCodeException
+			("There is no passenger with this reference code: "+bookingReference, result.getStatus());
+		default:
+			// If for some reason the passenger cannot be checked in, we need to return an error
+			metrics.thrown(result.getStatus());
+			throw new IllegalReferenceCodeException
+			("There is no passenger with this booking reference to be checked in,\n they may be already checked in: "+bookingReference, result.getStatus());
+		}
+	}
+	
+	/**
+	 * Processes the passenger that wishes to be checked in, without throwing for a booking reference
+	 * that is unknown or already checked in. Otherwise the same as {@link #processPassenger(String, float[], float)}.
+	 * 
+	 * @param	bookingReference	The booking reference of the passenger to be processed
+	 * @param	dimensions			The width, height and depth of the baggage in a single array.
+	 * @param	weight				The weight of the passengers baggage.
+	 * @return	CHECKED_IN with the fee due, or ALREADY_CHECKED_IN or NOT_ON_RECORD, or with limits enforced
+	 * 			FLIGHT_FULL, OVER_WEIGHT or OVER_VOLUME, the passenger then still waiting to check in
+	 * @throws	UncheckedIOException	If the passenger was checked in but the check-in could not be written to the journal.
+	 * @throws	IllegalStateException	If check-ins are routed through {@link CheckInPartitions} that are being closed.
+	 */
+	public CheckInResult tryProcessPassenger(String bookingReference, float[] dimensions, float weight) {
+		CheckInPartitions thePartitions = partitions;
+		if(thePartitions != null){
+			return thePartitions.checkIn(bookingReference, dimensions, weight); // Checked in by the partition owning the flight
+		}
+		return processOnPartition(bookingReference, dimensions, weight, null);
+	}
+	
+	/**
+	 * Checks a passenger in on the calling thread, for a {@link CheckInPartitions} worker, or a desk when not partitioned
+	 * 
+	 * @param	bookingReference	The booking reference of the passenger to be processed
+	 * @param	dimensions			The width, height and depth of the baggage in a single array.
+	 * @param	weight				The weight of the passengers baggage.
+	 * @param	partitionJournal	The partition's own journal to record the check-in to, null for the handler's
+	 * @return	As for tryProcessPassenger
+	 */
+	CheckInResult processOnPartition(String bookingReference, float[] dimensions, float weight, CheckInJournal partitionJournal) {
+		CheckInJournal theJournal = partitionJournal != null ? partitionJournal : journal;
+		if(metrics.isTimed(bookingReference)){
+			return timedCheckIn(bookingReference, dimensions, weight, theJournal);
+		}
+		CheckInResult result = checkIn(bookingReference, dimensions, weight, theJournal);
+		metrics.count(result);
+		return result;
+	}
+	
+	private CheckInResult timedCheckIn(String bookingReference, float[] dimensions, float weight, CheckInJournal theJournal) {
+		long start = System.nanoTime();
+		CheckInResult result = checkIn(bookingReference, dimensions, weight, theJournal);
+		metrics.record(metrics.processPassenger, result, System.nanoTime() - start);
+		return result;
+	}
+	
+	private CheckInResult checkIn(String bookingReference, float[] dimensions, float weight, CheckInJournal theJournal) {
+		Passenger passenger = passengers.find(bookingReference);
+		if( passenger == null ){
+			return CheckInResult.NOT_ON_RECORD;
+		}
+		if( passenger.isCheckedIn() ){
+			return CheckInResult.ALREADY_CHECKED_IN; // Saves working out the fee, checking in below is what decides
+		}
+		
 		float vol = dimensions[0]*dimensions[1]*dimensions[2]; // Calculate the volume of the baggage
 		
 		// Cant have a negative value for a scalar like weight or volume, so it is assumed for now that this was a mistake
@@ -75,36 +455,161 @@ public class CheckInHandler {
 		if(weight<0) {weight*=-1;}
 		
 		
-		Flight flight = passengers.get(bookingReference).getFlight(); // Get the information on the flight the passenger is going on
-		multiplier = flight.getFeeMultiplier();
-		// Find the maximum baggage allowances for each passenger on that flight, 
-		// take into account some passengers may go beyond the limit!
-
-		float factorOfSafety = 0.8f;
-		float maxWeight = (float) (( flight.getMaxBaggageWeight() / flight.getPassengerCapacity() )*factorOfSafety);
-		float maxVol = (float) (( flight.getMaxBaggageVolume() / flight.getPassengerCapacity() )*factorOfSafety);
+		Flight flight = passenger.getFlight(); // Get the information on the flight the passenger is going on
+		// The flight's allowances and multiplier were worked out once, when its tariff was made
+		float fee = feeEngine.tariffFor(flight).fee(vol, weight);
 		
-		// basic calculation to find the fees from the excess
-		weightFee = weight-maxWeight;
-		volFee = vol-maxVol;
+		// Checking in is atomic, so only one desk can get past here for each passenger
+		if(!passengers.checkInPassenger(bookingReference)){ // Attempt to check in the passenger
+			return CheckInResult.ALREADY_CHECKED_IN; // Another desk got there first
+		}
+		if(!enforceLimits){
+			flight.addPassengerAndBaggage(vol,weight,fee);	// If they are checked in add baggage, and incrememnt number of passengers
+		}
+		else{
+			Flight.Admission admission = flight.tryAddPassengerAndBaggage(vol, weight, fee);
+			if(admission != Flight.Admission.ADMITTED){
+				passengers.cancelCheckIn(bookingReference); // Turned away, so nothing to journal or publish
+				return CheckInResult.turnedAway(admission);
+			}
+		}
+		epochs.record(passenger, vol, weight, fee);
+		if(theJournal != null){
+			try {
+				theJournal.append(bookingReference, vol, weight, fee); // Only returns once the check-in is safely recorded
+			} catch (IOException e) {
+				throw new UncheckedIOException("Checked in but could not journal: "+bookingReference, e);
+			}
+		}
+		CheckInEventRing theEvents = events;
+		if(theEvents != null){
+			theEvents.publish(bookingReference, flight, vol, weight, fee);
+		}
+		return new CheckInResult(CheckInResult.Status.CHECKED_IN, fee);
+	}
+	
+	/**
+	 * Checks in a batch of passengers, such as a group booking or the check-ins a kiosk saved up while offline.
+	 * Every booking reference is looked up first, then the passengers are taken a flight at a time: priced with
+	 * the flight's tariff, checked in, and added to the flight's totals in a single update. With a journal
+	 * attached, the whole batch is journaled together. A passenger who can't be checked in doesn't stop the others.
+	 * With limits enforced, each passenger is added to their flight on their own, so each can be turned away.
+	 * Once check-ins are routed through {@link CheckInPartitions}, each passenger is checked in by the partition
+	 * owning their flight instead, and journaled there on their own.
+	 * 
+	 * @param	bookingReferences	The booking references of the passengers to be processed
+	 * @param	dimensions			The width, height and depth of each passenger's baggage, three to a passenger
+	 * @param	weights				The weight of each passenger's baggage
+	 * @return	The result for each passenger, in the same order as the booking references
+	 * @throws	UncheckedIOException	If the passengers were checked in but the check-ins could not be written to the journal.
+	 * @throws	IllegalStateException	If check-ins are routed through {@link CheckInPartitions} that are being closed.
+	 */
+	public CheckInResult[] processPassengers(String[] bookingReferences, float[] dimensions, float[] weights) {
+		int count = bookingReferences.length;
+		if(dimensions.length < count*3 || weights.length < count){
+			throw new IllegalArgumentException("Need three dimensions and a weight for each of the "+count+" passengers");
+		}
+		CheckInPartitions thePartitions = partitions;
+		if(thePartitions != null){
+			return thePartitions.processAll(bookingReferences, dimensions, weights);
+		}
+		long started = System.nanoTime();
+		CheckInResult[] results = new CheckInResult[count];
 		
-		// If the passengers baggage is below the maximums, no fee is applied,
-		if (weightFee<0){ weightFee = 0; }
-		if (volFee<0){ volFee = 0; }
+		// Look everyone up, counting how many are going on each flight
+		// Each flight's group holds {passengers in the group, where the group starts in the arrays below, next free place}
+		Passenger[] found = new Passenger[count];
+		IdentityHashMap<Flight, int[]> groups = new IdentityHashMap<Flight, int[]>();
+		for(int i = 0; i < count; i++){
+			Passenger passenger = passengers.find(bookingReferences[i]);
+			if( passenger == null ){
+				results[i] = CheckInResult.NOT_ON_RECORD;
+			}
+			else if( passenger.isCheckedIn() ){
+				results[i] = CheckInResult.ALREADY_CHECKED_IN;
+			}
+			else{
+				found[i] = passenger;
+				groups.computeIfAbsent(passenger.getFlight(), flight -> new int[3])[0]++;
+			}
+		}
 		
-		fee = (weightFee+volFee)*multiplier;
+		// Put each flight's passengers next to each other
+		int waiting = 0;
+		for(int[] group : groups.values()){
+			group[1] = group[2] = waiting;
+			waiting += group[0];
+		}
+		int[] order = new int[waiting];
+		for(int i = 0; i < count; i++){
+			if(found[i] != null){
+				order[groups.get(found[i].getFlight())[2]++] = i;
+			}
+		}
 		
-		if(passengers.checkInPassenger(bookingReference)){ // Attempt to check in the passenger
-			flight.addPassengerAndBaggage(vol,weight,fee);	// If they are checked in add baggage, and incrememnt number of passengers
+		// A flight at a time, price and check in its passengers, then add them to the flight all at once.
+		// Passengers checked in are packed to the front of the arrays, ready to journal
+		String[] refs = new String[waiting];
+		Passenger[] checkedInPassengers = new Passenger[waiting];
+		float[] vols = new float[waiting];
+		float[] bagWeights = new float[waiting];
+		float[] fees = new float[waiting];
+		int checkedIn = 0;
+		boolean enforce = enforceLimits;
+		for(Map.Entry<Flight, int[]> entry : groups.entrySet()){
+			Flight flight = entry.getKey();
+			Tariff tariff = feeEngine.tariffFor(flight);
+			int start = entry.getValue()[1], end = start + entry.getValue()[0];
+			int groupStart = checkedIn;
+			for(int k = start; k < end; k++){
+				int i = order[k];
+				float vol = Math.abs(dimensions[i*3]*dimensions[i*3+1]*dimensions[i*3+2]);
+				float weight = Math.abs(weights[i]);
+				// Checking in is atomic, so only one desk can get past here for each passenger
+				if(!passengers.checkInPassenger(bookingReferences[i])){
+					results[i] = CheckInResult.ALREADY_CHECKED_IN; // Another desk, or earlier in this batch
+					continue;
+				}
+				float fee = tariff.fee(vol, weight);
+				if(enforce){
+					Flight.Admission admission = flight.tryAddPassengerAndBaggage(vol, weight, fee);
+					if(admission != Flight.Admission.ADMITTED){
+						passengers.cancelCheckIn(bookingReferences[i]); // Turned away, so left out of the batch
+						results[i] = CheckInResult.turnedAway(admission);
+						continue;
+					}
+				}
+				refs[checkedIn] = bookingReferences[i];
+				checkedInPassengers[checkedIn] = found[i];
+				vols[checkedIn] = vol;
+				bagWeights[checkedIn] = weight;
+				fees[checkedIn] = fee;
+				order[checkedIn++] = i;
+			}
+			if(!enforce){
+				flight.addPassengersAndBaggage(vols, bagWeights, fees, groupStart, checkedIn);
+			}
 		}
-		else{
-			// If for some reason the passenger cannot be checked in, we need to return an error
-			throw new IllegalReferenceCodeException
-			("There is no passenger with this booking reference to be checked in,\n they may be already checked in: "+bookingReference);
+		epochs.record(checkedInPassengers, vols, bagWeights, fees, 0, checkedIn);
+		
+		CheckInJournal theJournal = journal;
+		if(theJournal != null){
+			try {
+				theJournal.append(refs, vols, bagWeights, fees, 0, checkedIn); // Only returns once the check-ins are safely recorded
+			} catch (IOException e) {
+				throw new UncheckedIOException("Checked in but could not journal a batch of "+checkedIn, e);
+			}
 		}
-
-		// Output the final fee due from the passenger,
-		return fee;
+		CheckInEventRing theEvents = events;
+		for(int k = 0; k < checkedIn; k++){
+			int i = order[k];
+			results[i] = new CheckInResult(CheckInResult.Status.CHECKED_IN, fees[k]);
+			if(theEvents != null){
+				theEvents.publish(refs[k], found[i].getFlight(), vols[k], bagWeights[k], fees[k]);
+			}
+		}
+		metrics.record(metrics.processPassengers, results, System.nanoTime() - started);
+		return results;
 	}
 	
 	/**
@@ -116,10 +621,109 @@ public class CheckInHandler {
 	public int getNumToCheckIn() {
 		return passengers.getNumToCheckIn();
 	}
-	
+
+	/**
+	 * Takes a view of every flight's totals and every passenger's check-in at one moment, for dashboards.
+	 * Unlike reading each flight's totals in turn, the figures in a view always agree with each other.
+	 * Desks are never held up while a view is taken or read, see {@link CheckInEpochs}.
+	 *
+	 * @return	A view of the check-ins made up to now
+	 */
+	public CheckInView getView() {
+		return epochs.view();
+	}
+
+	/**
+	 * Gets a flight handled by this CheckInHandler, for example to show its totals.
+	 *
+	 * @param	flightCode	The code of the flight
+	 * @return	The flight, or null if there is no flight with that code
+	 */
+	public Flight getFlight(String flightCode) {
+		return flights.get(flightCode);
+	}
+
+	/**
+	 * Gets the running totals of each carrier's flights, for dashboards. Kept up to date as desks check in,
+	 * so reading them never goes through the flights, see {@link FlightRollup}.
+	 *
+	 * @return	The rollups, by carrier
+	 */
+	public Map<String, FlightRollup> getCarrierRollups() {
+		return flights.getCarrierRollups();
+	}
+
+	/**
+	 * Gets the running totals of the flights to each destination, for dashboards. Kept up to date as desks check in,
+	 * so reading them never goes through the flights, see {@link FlightRollup}.
+	 *
+	 * @return	The rollups, by destination
+	 */
+	public Map<String, FlightRollup> getDestinationRollups() {
+		return flights.getDestinationRollups();
+	}
+
+	/**
+	 * Searches for passengers by the start of their last name, ignoring case, for kiosks and agents
+	 * who don't have the booking reference. See {@link PassengerList#findByLastName(String, int)}.
+	 *
+	 * @param	lastNamePrefix	The start of the last name, or the whole of it
+	 * @param	limit			The most passengers to return
+	 * @return	The passengers found, in order of last name
+	 */
+	public List<Passenger> findPassengersByLastName(String lastNamePrefix, int limit) {
+		return passengers.findByLastName(lastNamePrefix, limit);
+	}
+
+	/**
+	 * Searches for passengers by the start of their booking reference, ignoring case, for kiosks and agents
+	 * with only part of it. See {@link PassengerList#findByBookingRef(String, int)}.
+	 *
+	 * @param	bookingRefPrefix	The start of the booking reference, up to the whole of it
+	 * @param	limit				The most passengers to return
+	 * @return	The passengers found, in order of booking reference
+	 */
+	public List<Passenger> findPassengersByBookingRef(String bookingRefPrefix, int limit) {
+		return passengers.findByBookingRef(bookingRefPrefix, limit);
+	}
+
+	/**
+	 * Routes every check-in through partitions from now on, see {@link CheckInPartitions#routeHandlerCheckIns()}.
+	 * 
+	 * @param	thePartitions	The partitions
+	 * @throws	IllegalStateException	If check-ins are already routed through other partitions
+	 */
+	synchronized void routeThrough(CheckInPartitions thePartitions) {
+		if(partitions != null){
+			throw new IllegalStateException("Check-ins are already routed through partitions");
+		}
+		partitions = thePartitions;
+	}
+
+	/**
+	 * Checks in on the calling thread again, once partitions check-ins were routed through have closed.
+	 * 
+	 * @param	thePartitions	The partitions that have closed
+	 */
+	synchronized void stopRouting(CheckInPartitions thePartitions) {
+		if(partitions == thePartitions){
+			partitions = null;
+		}
+	}
+
+	/**
+	 * Gets the passengers booked on this CheckInHandler's flights, for routing requests to {@link CheckInPartitions}.
+	 *
+	 * @return	The passengers
+	 */
+	PassengerList getPassengers() {
+		return passengers;
+	}
+
 	/**
 	 * Takes the reports from each individual flight and compiles them into one output.
-	 * Loops through all the flights and gets their reports to be displayed by the gui.
+	 * Only the flights whose totals have changed since the last call are formatted again,
+	 * and the report file is only rewritten when something has changed, see {@link ReportGenerator}.
 	 * 
 	 * @return The compilation of all the reports from all the flights. seperated by a two new lines
 	 */
@@ -131,22 +735,33 @@ public class CheckInHandler {
 		//		Total Baggage Volume: #
 		//		Total Excess Fees: #
 		//		Capacity Exceeded: yes/no
-		String finalReport = "";
-		for(Flight f: flights.getValues()){
-			finalReport += f.generateReport()+"\n";
-		}
-		
-		//write to file
-		try {
-			PrintWriter out = new PrintWriter("report.txt");
-			out.print(finalReport);
-			out.close();
-		} catch (FileNotFoundException e) {
-		}
-		
-		//return for GUI
-		return finalReport;
+		//write to file, and return for GUI
+		long start = System.nanoTime();
+		String report = reports.generate();
+		metrics.generateReports.record(System.nanoTime() - start);
+		return report;
+	}
 
+	/**
+	 * Closes out every flight once desks have stopped: writes each flight's final totals, whether it went over
+	 * its limits, and its manifest to a file of its own, closing out flights in parallel, see {@link FlightCloseOut}.
+	 * For progress while it runs, or a pool of its own, see {@link #prepareCloseOut(Path)}.
+	 *
+	 * @param	directory	Where each flight's file is written, created if need be
+	 * @return	What was written for each flight, with how long it took
+	 * @throws	IOException	If the directory or a flight's file can't be written
+	 */
+	public List<FlightCloseOut.Result> closeOut(Path directory) throws IOException {
+		return prepareCloseOut(directory).run();
+	}
 
+	/**
+	 * Prepares to close out every flight, without starting, so a listener or a pool of its own can be given.
+	 *
+	 * @param	directory	Where each flight's file is written, created if need be
+	 * @return	The close-out, started with {@link FlightCloseOut#run()}
+	 */
+	public FlightCloseOut prepareCloseOut(Path directory) {
+		return new FlightCloseOut(flights.getValues(), directory);
 	}
 }
@@ -0,0 +1,369 @@
+package ase1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import ase1.data.BookingRefCodec;
+
+/**
+ * Append-only journal of check-ins, so they survive a crash of the desk node.
+ * Each successful check-in is written as a fixed size record: packed booking reference, baggage volume,
+ * baggage weight, fee and a checksum. On startup the records are replayed on top of the loaded passengers
+ * and flights, see {@link CheckInHandler#attachJournal(CheckInJournal)}.
+ *
+ * How often the journal is forced to disk is set by its {@link SyncPolicy}. With group commit, desks
+ * that append while a force is in progress wait together and are all made durable by the next force,
+ * so the cost of an fsync is shared by every desk in the batch rather than paid once per passenger.
+ * Forcing every record keeps a single desk's wait short but caps throughput at the disk's fsyncs per second.
+ * Group commit is just as durable and gains more the more desks append at once, at the price of each desk
+ * waiting for its batch. Not forcing at all is fastest but trusts the operating system with the last writes.
+ * JournalBenchmark in the benchmarks compares them, the README has figures.
+ */
+public class CheckInJournal implements Closeable {
+	private static final int MAGIC = 0x4153454A; // "ASEJ"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	static final int RECORD_SIZE = 20;
+
+	/**
+	 * When appended records are forced to disk
+	 */
+	public enum SyncPolicy {
+		/**
+		 * Every record is forced before append returns. Safest, but each check-in waits for a full fsync
+		 * on its own, so throughput is limited to the number of fsyncs the disk can do per second.
+		 */
+		EVERY_RECORD,
+		/**
+		 * Records are forced in batches, append returns once the batch holding its record is on disk.
+		 * Just as safe as EVERY_RECORD for the desk, but with many desks one fsync covers many check-ins.
+		 */
+		GROUP_COMMIT,
+		/**
+		 * Records are written to the file in batches but never forced, the operating system decides when
+		 * they reach the disk. Fastest, but check-ins can be lost if the machine (not just the process) fails.
+		 */
+		NO_SYNC
+	}
+
+	/**
+	 * Handles a record read back from the journal
+	 */
+	public interface RecordHandler {
+		/**
+		 * @param bookingRefCode the booking reference of the passenger checked in
+		 * @param vol the volume of their baggage
+		 * @param weight the weight of their baggage
+		 * @param fee the fee they paid
+		 */
+		void checkedIn(String bookingRefCode, float vol, float weight, float fee);
+	}
+
+	private final Path file;
+	private final FileChannel channel;
+	private final SyncPolicy policy;
+	private final long maxDelayNanos;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition(); // signalled whenever a batch is written or fills up
+	private final CRC32C crc = new CRC32C();
+
+	// Records waiting to be written, swapped with the spare buffer while a batch is being written
+	private ByteBuffer pending;
+	private ByteBuffer writing;
+	private long appended;	// sequence number of the last record appended
+	private long durable;	// sequence number of the last record written (and forced, unless NO_SYNC)
+	private boolean flushing;
+	private boolean gathering; // a group commit leader is waiting for others to join its batch
+	private IOException failure;
+
+	/**
+	 * Opens a journal with group commit, in batches of up to 256 records.
+	 * @param file the journal file, created if it doesn't exist
+	 * @return the journal
+	 * @throws IOException if the journal can't be opened
+	 */
+	public static CheckInJournal open(Path file) throws IOException {
+		return new CheckInJournal(file, SyncPolicy.GROUP_COMMIT, 256, 0);
+	}
+
+	/**
+	 * Opens a journal, ready to append after the last complete record.
+	 * A record only partly written when the node stopped is cut off.
+	 * @param file the journal file, created if it doesn't exist
+	 * @param policy when records are forced to disk
+	 * @param maxBatch the most records written and forced together
+	 * @param maxDelayMicros how long the first desk in a batch waits for others to join it before forcing,
+	 * 0 to force straight away, which still batches any desks that arrive during the previous force
+	 * @throws IOException if the journal can't be opened, or isn't a journal
+	 */
+	public CheckInJournal(Path file, SyncPolicy policy, int maxBatch, long maxDelayMicros) throws IOException {
+		if (maxBatch < 1) {
+			throw new IllegalArgumentException("maxBatch must be at least 1: " + maxBatch);
+		}
+		this.file = file;
+		this.policy = policy;
+		this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+		this.pending = ByteBuffer.allocateDirect(maxBatch * RECORD_SIZE);
+		this.writing = ByteBuffer.allocateDirect(maxBatch * RECORD_SIZE);
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		if (channel.size() < HEADER_SIZE) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+			header.flip();
+			channel.truncate(0);
+			channel.write(header, 0);
+			channel.force(true);
+		}
+		channel.truncate(replay(null));
+		channel.position(channel.size());
+	}
+
+	/**
+	 * Reads back every complete record in the journal, in the order they were appended
+	 * @param handler given each record in turn, may be null just to find the end of the journal
+	 * @return the offset just after the last complete record
+	 * @throws IOException if the journal can't be read, or isn't a journal
+	 */
+	public long replay(RecordHandler handler) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(RECORD_SIZE * 4096);
+		long position = 0;
+		channel.read(buf, position);
+		buf.flip();
+		if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+			throw new IOException(file + " is not a check-in journal");
+		}
+		position = HEADER_SIZE;
+		CRC32C check = new CRC32C();
+		while (true) {
+			if (buf.remaining() < RECORD_SIZE) {
+				buf.compact();
+				if (channel.read(buf, position + buf.position()) <= 0 && buf.position() < RECORD_SIZE) {
+					return position;
+				}
+				buf.flip();
+				if (buf.remaining() < RECORD_SIZE) {
+					return position; // a record cut off part way through
+				}
+			}
+			int start = buf.position();
+			int code = buf.getInt();
+			float vol = buf.getFloat();
+			float weight = buf.getFloat();
+			float fee = buf.getFloat();
+			int sum = buf.getInt();
+			check.reset();
+			check.update(buf.duplicate().position(start).limit(start + RECORD_SIZE - 4));
+			if ((int) check.getValue() != sum || code < 0) {
+				return position; // torn or corrupt, nothing after it can be trusted
+			}
+			if (handler != null) {
+				handler.checkedIn(BookingRefCodec.decode(code), vol, weight, fee);
+			}
+			position += RECORD_SIZE;
+		}
+	}
+
+	/**
+	 * Appends a check-in to the journal, returning once it is as durable as the sync policy promises.
+	 * Safe to call from many desks at once.
+	 * @param bookingRefCode the booking reference of the passenger checked in
+	 * @param vol the volume of their baggage
+	 * @param weight the weight of their baggage
+	 * @param fee the fee they paid
+	 * @throws IOException if the journal can't be written, after which it refuses any more appends
+	 */
+	public void append(String bookingRefCode, float vol, float weight, float fee) throws IOException {
+		int code = encode(bookingRefCode);
+		lock.lock();
+		try {
+			awaitDurable(put(code, vol, weight, fee));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Appends a batch of check-ins to the journal, returning once they are all as durable as the sync
+	 * policy promises. The records are appended together, so they wait for the disk once between them
+	 * rather than once each.
+	 * @param bookingRefCodes the booking references of the passengers checked in
+	 * @param vols the volume of each passenger's baggage
+	 * @param weights the weight of each passenger's baggage
+	 * @param fees the fee each passenger paid
+	 * @param from the first check-in in the arrays to append
+	 * @param to one past the last check-in to append
+	 * @throws IOException if the journal can't be written, after which it refuses any more appends
+	 */
+	public void append(String[] bookingRefCodes, float[] vols, float[] weights, float[] fees, int from, int to) throws IOException {
+		for (int i = from; i < to; i++) {
+			encode(bookingRefCodes[i]); // check them all first, so a bad one leaves nothing half appended
+		}
+		if (from >= to) {
+			return;
+		}
+		lock.lock();
+		try {
+			long sequence = 0;
+			for (int i = from; i < to; i++) {
+				sequence = put(BookingRefCodec.encode(bookingRefCodes[i]), vols[i], weights[i], fees[i]);
+			}
+			awaitDurable(sequence);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static int encode(String bookingRefCode) {
+		int code = BookingRefCodec.encode(bookingRefCode);
+		if (code == BookingRefCodec.INVALID) {
+			throw new IllegalReferenceCodeException("Cannot journal an illegal booking reference: " + bookingRefCode);
+		}
+		return code;
+	}
+
+	/**
+	 * Adds a record to the pending batch, first writing out the batch if it is full.
+	 * Must be called holding the lock.
+	 * @return the sequence number of the record
+	 */
+	private long put(int code, float vol, float weight, float fee) throws IOException {
+		// With EVERY_RECORD each force holds just one desk's records, so wait for the previous one to finish
+		while (!pending.hasRemaining() || (policy == SyncPolicy.EVERY_RECORD && flushing)) {
+			checkFailure();
+			if (!flushing && !gathering) {
+				flush(policy != SyncPolicy.NO_SYNC);
+			} else {
+				changed.awaitUninterruptibly();
+			}
+		}
+		checkFailure();
+		int start = pending.position();
+		pending.putInt(code).putFloat(vol).putFloat(weight).putFloat(fee);
+		crc.reset();
+		crc.update(pending.duplicate().position(start).limit(start + RECORD_SIZE - 4));
+		pending.putInt((int) crc.getValue());
+		if (!pending.hasRemaining()) {
+			changed.signalAll(); // a gathering leader can stop waiting
+		}
+		return ++appended;
+	}
+
+	/**
+	 * Waits until a record is as durable as the sync policy promises, forcing it to disk if nobody else is.
+	 * Must be called holding the lock.
+	 * @param sequence the sequence number of the record
+	 */
+	private void awaitDurable(long sequence) throws IOException {
+		if (policy == SyncPolicy.NO_SYNC) {
+			return; // written when the batch fills up, or on sync or close
+		}
+		try {
+			while (durable < sequence) {
+				checkFailure();
+				if (flushing || gathering) {
+					changed.awaitUninterruptibly();
+					continue;
+				}
+				if (policy == SyncPolicy.GROUP_COMMIT && maxDelayNanos > 0) {
+					// Become the leader of this batch, and give other desks a moment to join it
+					gathering = true;
+					try {
+						long remaining = maxDelayNanos;
+						while (remaining > 0 && pending.hasRemaining()) {
+							remaining = changed.awaitNanos(remaining);
+						}
+					} finally {
+						gathering = false;
+					}
+				}
+				flush(true);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the journal", e);
+		}
+	}
+
+	/**
+	 * Writes everything appended so far and forces it to disk, whatever the sync policy
+	 * @throws IOException if the journal can't be written
+	 */
+	public void sync() throws IOException {
+		lock.lock();
+		try {
+			while (flushing || gathering) {
+				changed.awaitUninterruptibly();
+			}
+			checkFailure();
+			flush(true);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Syncs and closes the journal
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			sync();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes the pending records, with the lock released while writing so other desks can keep appending.
+	 * Must be called holding the lock, and only when no other flush is in progress.
+	 * @param force whether to force the records to disk once written
+	 */
+	private void flush(boolean force) throws IOException {
+		flushing = true;
+		ByteBuffer batch = pending;
+		pending = writing;
+		writing = batch;
+		long sequence = appended;
+		lock.unlock();
+		IOException error = null;
+		try {
+			batch.flip();
+			while (batch.hasRemaining()) {
+				channel.write(batch);
+			}
+			if (force) {
+				channel.force(false);
+			}
+		} catch (IOException e) {
+			error = e;
+		} finally {
+			batch.clear();
+			lock.lock();
+			flushing = false;
+			if (error == null) {
+				durable = sequence;
+			} else {
+				failure = error;
+			}
+			changed.signalAll();
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw new IOException("Journal " + file + " failed earlier, check-ins are no longer being recorded", failure);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package ase1;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import ase1.data.Flight;
+import ase1.data.FlightList;
+import ase1.data.PassengerList;
+
+/**
+ * Exposes a handler's metrics, counts and flight loads through JMX
+ */
+class CheckInMBean implements CheckInMXBean {
+	private final CheckInMetrics metrics;
+	private final FlightList flights;
+	private final PassengerList passengers;
+
+	CheckInMBean(CheckInMetrics metrics, FlightList flights, PassengerList passengers) {
+		this.metrics = metrics;
+		this.flights = flights;
+		this.passengers = passengers;
+	}
+
+	@Override
+	public int getNumToCheckIn() {
+		return passengers.getNumToCheckIn();
+	}
+
+	@Override
+	public int getNumCheckedIn() {
+		return passengers.getNumCheckedIn();
+	}
+
+	@Override
+	public LatencyStats getCheckDetailsLatency() {
+		return metrics.getCheckDetailsLatency();
+	}
+
+	@Override
+	public LatencyStats getProcessPassengerLatency() {
+		return metrics.getProcessPassengerLatency();
+	}
+
+	@Override
+	public LatencyStats getProcessPassengersLatency() {
+		return metrics.getProcessPassengersLatency();
+	}
+
+	@Override
+	public LatencyStats getGenerateReportsLatency() {
+		return metrics.getGenerateReportsLatency();
+	}
+
+	@Override
+	public LatencyStats getLoadFlightsLatency() {
+		return metrics.getLoadFlightsLatency();
+	}
+
+	@Override
+	public LatencyStats getLoadPassengersLatency() {
+		return metrics.getLoadPassengersLatency();
+	}
+
+	@Override
+	public LatencyStats getLoadSnapshotLatency() {
+		return metrics.getLoadSnapshotLatency();
+	}
+
+	@Override
+	public LatencyStats getReplayJournalLatency() {
+		return metrics.getReplayJournalLatency();
+	}
+
+	@Override
+	public LatencyStats getIngestBookingsLatency() {
+		return metrics.getIngestBookingsLatency();
+	}
+
+	@Override
+	public Map<String, Long> getOutcomes() {
+		Map<String, Long> outcomes = new LinkedHashMap<String, Long>();
+		for (CheckInResult.Status status : CheckInResult.Status.values()) {
+			outcomes.put(status.name(), metrics.getOutcomeCount(status));
+		}
+		return outcomes;
+	}
+
+	@Override
+	public Map<String, Long> getErrors() {
+		Map<String, Long> errors = new LinkedHashMap<String, Long>();
+		errors.put(CheckInResult.Status.NOT_ON_RECORD.name(), metrics.getNotOnRecordErrors());
+		errors.put(CheckInResult.Status.ALREADY_CHECKED_IN.name(), metrics.getAlreadyCheckedInErrors());
+		return errors;
+	}
+
+	@Override
+	public Map<String, FlightLoad> getFlightLoads() {
+		Collection<Flight> all = flights.getValues();
+		Map<String, FlightLoad> loads = new TreeMap<String, FlightLoad>();
+		for (Flight flight : all) {
+			loads.put(flight.getFlightCode(), new FlightLoad(flight));
+		}
+		return loads;
+	}
+
+	@Override
+	public FlightLoad flightLoad(String flightCode) {
+		Flight flight = flights.get(flightCode);
+		return flight == null ? null : new FlightLoad(flight);
+	}
+}
@@ -0,0 +1,60 @@
+package ase1;
+
+import java.util.Map;
+
+/**
+ * The metrics of a {@link CheckInHandler} as seen through JMX, registered with {@link CheckInHandler#registerMBean(String)}.
+ * Latencies are in nanoseconds, and their sampleCount is the number of operations timed.
+ */
+public interface CheckInMXBean {
+	int getNumToCheckIn();
+
+	int getNumCheckedIn();
+
+	/**
+	 * @return the latencies of the lookups sampled, one booking reference in every ase1.latencySampling, so
+	 * sampleCount is the number sampled, not the number of lookups, which getOutcomes has
+	 */
+	LatencyStats getCheckDetailsLatency();
+
+	/**
+	 * @return the latencies of the check-ins sampled, one booking reference in every ase1.latencySampling, so
+	 * sampleCount is the number sampled, not the number of check-ins, which getOutcomes has
+	 */
+	LatencyStats getProcessPassengerLatency();
+
+	LatencyStats getProcessPassengersLatency();
+
+	LatencyStats getGenerateReportsLatency();
+
+	LatencyStats getLoadFlightsLatency();
+
+	LatencyStats getLoadPassengersLatency();
+
+	LatencyStats getLoadSnapshotLatency();
+
+	LatencyStats getReplayJournalLatency();
+
+	LatencyStats getIngestBookingsLatency();
+
+	/**
+	 * @return the number of lookups and check-ins that turned out each way, by CheckInResult.Status
+	 */
+	Map<String, Long> getOutcomes();
+
+	/**
+	 * @return the number of IllegalReferenceCodeExceptions thrown, by reason
+	 */
+	Map<String, Long> getErrors();
+
+	/**
+	 * @return how full each flight is, by flight code
+	 */
+	Map<String, FlightLoad> getFlightLoads();
+
+	/**
+	 * @param flightCode the flight
+	 * @return how full the flight is, or null if there is no such flight
+	 */
+	FlightLoad flightLoad(String flightCode);
+}
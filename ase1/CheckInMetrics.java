@@ -0,0 +1,251 @@
+package ase1;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Counts and times everything a {@link CheckInHandler} does: how long lookups, check-ins, reports and
+ * loads take, how each lookup and check-in turned out, and how often an {@link IllegalReferenceCodeException}
+ * was thrown and why. Read it directly, or through JMX with {@link CheckInHandler#registerMBean(String)}.
+ *
+ * Recording allocates nothing, so it stays on at full load. Every lookup and check-in is counted, each
+ * thread in counters of its own with plain stores: even an uncontended LongAdder increment is a locked
+ * instruction, which waits for the lookup's cache misses and measurably slowed lookups. Reading the clock
+ * waits for them too, so only the lookups and check-ins of one booking reference in every
+ * {@code ase1.latencySampling} (a power of two, 256 unless set) are timed, picked by the reference's hash
+ * so choosing costs no shared or per-thread state. Batches, reports and loads are rare and slow, and are
+ * always timed.
+ */
+public final class CheckInMetrics {
+	private static final int SAMPLE_MASK = Integer.highestOneBit(Math.max(1, Integer.getInteger("ase1.latencySampling", 256))) - 1;
+
+	private static final VarHandle COUNT = MethodHandles.arrayElementVarHandle(long[].class);
+	// Where each count is kept in a thread's counters: the outcomes by CheckInResult.Status, then the exceptions
+	private static final int NOT_ON_RECORD_ERRORS = CheckInResult.Status.values().length;
+	private static final int ALREADY_CHECKED_IN_ERRORS = NOT_ON_RECORD_ERRORS + 1;
+	private static final int PAD = 8; // a cache line either side, so threads don't write to each other's lines
+
+	final LatencyRecorder checkDetails = new LatencyRecorder();
+	final LatencyRecorder processPassenger = new LatencyRecorder();
+	final LatencyRecorder processPassengers = new LatencyRecorder();
+	final LatencyRecorder generateReports = new LatencyRecorder();
+	final LatencyRecorder loadFlights = new LatencyRecorder();
+	final LatencyRecorder loadPassengers = new LatencyRecorder();
+	final LatencyRecorder loadSnapshot = new LatencyRecorder();
+	final LatencyRecorder replayJournal = new LatencyRecorder();
+	final LatencyRecorder ingestBookings = new LatencyRecorder();
+
+	private final ThreadLocal<Counters> counters = ThreadLocal.withInitial(this::newCounters);
+	private final List<Counters> allCounters = new ArrayList<Counters>();
+	// The counts of threads that have finished, folded together so their counters can go
+	private final long[] finished = new long[ALREADY_CHECKED_IN_ERRORS + 1];
+	private int foldAt = 64;
+
+	/**
+	 * One thread's counts, only ever written by that thread
+	 */
+	private static final class Counters {
+		final long[] counts = new long[PAD + ALREADY_CHECKED_IN_ERRORS + 1 + PAD];
+		final WeakReference<Thread> owner = new WeakReference<Thread>(Thread.currentThread());
+
+		void increment(int index) {
+			COUNT.setOpaque(counts, PAD + index, (long) COUNT.getOpaque(counts, PAD + index) + 1);
+		}
+
+		long get(int index) {
+			return (long) COUNT.getOpaque(counts, PAD + index);
+		}
+
+		boolean isFinished() {
+			Thread thread = owner.get();
+			return thread == null || !thread.isAlive();
+		}
+	}
+
+	CheckInMetrics() {
+	}
+
+	/**
+	 * Makes the counters for a thread counting for the first time, first folding away those of finished
+	 * threads whenever the number of counters has doubled, so threads that come and go don't pile up
+	 */
+	private synchronized Counters newCounters() {
+		if (allCounters.size() >= foldAt) {
+			for (Iterator<Counters> it = allCounters.iterator(); it.hasNext();) {
+				Counters old = it.next();
+				if (old.isFinished()) {
+					for (int i = 0; i < finished.length; i++) {
+						finished[i] += old.get(i);
+					}
+					it.remove();
+				}
+			}
+			foldAt = Math.max(64, allCounters.size() * 2);
+		}
+		Counters theCounters = new Counters();
+		allCounters.add(theCounters);
+		return theCounters;
+	}
+
+	/**
+	 * Adds up a count across every thread. Counts still being made may or may not be included.
+	 */
+	private synchronized long sum(int index) {
+		long sum = finished[index];
+		for (Counters theCounters : allCounters) {
+			sum += theCounters.get(index);
+		}
+		return sum;
+	}
+
+	/**
+	 * Decides whether a lookup or check-in is one of those timed
+	 * @param bookingReference the booking reference being looked up or checked in
+	 * @return true to time it and record it with record, false to just count it
+	 */
+	boolean isTimed(String bookingReference) {
+		return bookingReference != null && (bookingReference.hashCode() & SAMPLE_MASK) == 0;
+	}
+
+	/**
+	 * Counts a lookup or check-in that wasn't timed
+	 * @param result how it turned out
+	 */
+	void count(CheckInResult result) {
+		counters.get().increment(result.getStatus().ordinal());
+	}
+
+	/**
+	 * Records a lookup or check-in that was timed
+	 * @param timer the operation's recorder
+	 * @param result how it turned out
+	 * @param nanos how long it took
+	 */
+	void record(LatencyRecorder timer, CheckInResult result, long nanos) {
+		timer.record(nanos);
+		count(result);
+	}
+
+	/**
+	 * Records a batch of check-ins
+	 * @param timer the batch's recorder
+	 * @param results how each passenger in the batch turned out
+	 * @param nanos how long the whole batch took
+	 */
+	void record(LatencyRecorder timer, CheckInResult[] results, long nanos) {
+		timer.record(nanos);
+		Counters theCounters = counters.get();
+		for (CheckInResult result : results) {
+			theCounters.increment(result.getStatus().ordinal());
+		}
+	}
+
+	/**
+	 * Counts an IllegalReferenceCodeException about to be thrown for a lookup or check-in
+	 * @param status why it is being thrown, NOT_ON_RECORD or ALREADY_CHECKED_IN
+	 */
+	void thrown(CheckInResult.Status status) {
+		counters.get().increment(status == CheckInResult.Status.ALREADY_CHECKED_IN ? ALREADY_CHECKED_IN_ERRORS : NOT_ON_RECORD_ERRORS);
+	}
+
+	/**
+	 * returns how long checkDetails and tryCheckDetails have taken, for the calls sampled
+	 * @return the latencies
+	 */
+	public LatencyStats getCheckDetailsLatency() {
+		return checkDetails.snapshot();
+	}
+
+	/**
+	 * returns how long processPassenger and tryProcessPassenger have taken, for the calls sampled
+	 * @return the latencies
+	 */
+	public LatencyStats getProcessPassengerLatency() {
+		return processPassenger.snapshot();
+	}
+
+	/**
+	 * returns how long each batch given to processPassengers has taken
+	 * @return the latencies, one per batch
+	 */
+	public LatencyStats getProcessPassengersLatency() {
+		return processPassengers.snapshot();
+	}
+
+	/**
+	 * returns how long generateReports has taken
+	 * @return the latencies
+	 */
+	public LatencyStats getGenerateReportsLatency() {
+		return generateReports.snapshot();
+	}
+
+	/**
+	 * returns how long loading the flights file took
+	 * @return the latencies, one per load
+	 */
+	public LatencyStats getLoadFlightsLatency() {
+		return loadFlights.snapshot();
+	}
+
+	/**
+	 * returns how long loading the passengers file took
+	 * @return the latencies, one per load
+	 */
+	public LatencyStats getLoadPassengersLatency() {
+		return loadPassengers.snapshot();
+	}
+
+	/**
+	 * returns how long loading from a snapshot took
+	 * @return the latencies, one per load
+	 */
+	public LatencyStats getLoadSnapshotLatency() {
+		return loadSnapshot.snapshot();
+	}
+
+	/**
+	 * returns how long replaying journals took
+	 * @return the latencies, one per journal
+	 */
+	public LatencyStats getReplayJournalLatency() {
+		return replayJournal.snapshot();
+	}
+
+	/**
+	 * returns how long adding the flights and passengers appended to the files took
+	 * @return the latencies, one per call to ingestBookings
+	 */
+	public LatencyStats getIngestBookingsLatency() {
+		return ingestBookings.snapshot();
+	}
+
+	/**
+	 * returns the number of lookups and check-ins that turned out a given way, whether or not they threw
+	 * @param status the outcome
+	 * @return the number
+	 */
+	public long getOutcomeCount(CheckInResult.Status status) {
+		return sum(status.ordinal());
+	}
+
+	/**
+	 * returns the number of IllegalReferenceCodeExceptions thrown because there was no passenger with the booking reference
+	 * @return the number thrown
+	 */
+	public long getNotOnRecordErrors() {
+		return sum(NOT_ON_RECORD_ERRORS);
+	}
+
+	/**
+	 * returns the number of IllegalReferenceCodeExceptions thrown because the passenger had already checked in
+	 * @return the number thrown
+	 */
+	public long getAlreadyCheckedInErrors() {
+		return sum(ALREADY_CHECKED_IN_ERRORS);
+	}
+}
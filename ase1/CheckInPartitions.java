@@ -0,0 +1,344 @@
+package ase1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import ase1.data.Flight;
+import ase1.data.Passenger;
+
+/**
+ * Shards check-in across partitions, each owned by a single worker thread, for deployments with more desks
+ * than one handler's shared flights can take.
+ *
+ * Flights, and the passengers booked on them, are shared out between the partitions by flight code.
+ * A router looks the passenger up, without locking, and places the request on the queue of the partition
+ * that owns their flight, where the partition's worker runs it through the {@link CheckInHandler}.
+ * Requests for one flight are handled in the order they were placed. The handler's own check-ins still run
+ * on their callers' threads unless {@link #routeHandlerCheckIns()} is called, so desks using the handler
+ * directly keep checking in to every flight alongside the partitions. Bookings added during the day, see
+ * {@link CheckInHandler#ingestBookings()}, add to a flight's totals from the thread adding them.
+ *
+ * Given journals, each partition appends to its own, so partitions don't wait for each other's writes;
+ * otherwise they all append to the handler's journal, if one is attached, as desks would. Metrics and
+ * views are recorded per thread as they are for desks, and an attached event ring is shared by the partitions.
+ *
+ * Queues are lock free: desks add to them with a compare and set, and a worker with nothing to do spins
+ * briefly, then yields, then parks until a desk adds a request. Booking references with no passenger, or
+ * a passenger with no flight, belong to no partition and are answered on the caller's thread.
+ *
+ * Each request is handed to another thread, so partitions can only pay off with a CPU for each partition as
+ * well as for the desks. They have only been measured on one CPU, where they were slower than desks calling
+ * the handler directly; that check-ins scale with the number of partitions is untested.
+ */
+public class CheckInPartitions implements Closeable {
+	// Rounds of busy spinning, then yielding, before an idle worker parks
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+
+	private final CheckInHandler handler;
+	private final Partition[] partitions;
+	private volatile boolean closed;
+
+	/**
+	 * A request waiting on a partition's queue, completed by the partition's worker
+	 */
+	private static final class Request extends CompletableFuture<CheckInResult> {
+		final String bookingReference;
+		final String lastName; // null when checking in rather than checking details
+		final float[] dimensions;
+		final float weight;
+
+		Request(String bookingReference, String lastName, float[] dimensions, float weight) {
+			this.bookingReference = bookingReference;
+			this.lastName = lastName;
+			this.dimensions = dimensions;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * Starts a worker thread for each of the partitions the handler's flights are shared out between,
+	 * appending to the handler's journal if one is attached
+	 * @param handler the handler to check in with
+	 * @param count the number of partitions, typically the number of CPUs free for check-in
+	 */
+	public CheckInPartitions(CheckInHandler handler, int count) {
+		this(handler, count, null);
+	}
+
+	/**
+	 * Replays a journal for each partition, then starts a worker thread for each partition, appending to its own
+	 * journal. The handler's own journal, if attached, is only written by check-ins made through the handler.
+	 * Give the journals in the same order after a restart; the partitions don't close them.
+	 * @param handler the handler to check in with
+	 * @param journals a journal for each partition, replayed then appended to
+	 * @throws IOException if a journal can't be read
+	 */
+	public CheckInPartitions(CheckInHandler handler, CheckInJournal[] journals) throws IOException {
+		this(handler, journals.length, replay(handler, journals));
+	}
+
+	private CheckInPartitions(CheckInHandler handler, int count, CheckInJournal[] journals) {
+		if (count < 1) {
+			throw new IllegalArgumentException("Need at least one partition: " + count);
+		}
+		this.handler = handler;
+		partitions = new Partition[count];
+		for (int i = 0; i < count; i++) {
+			partitions[i] = new Partition("check-in-partition-" + i, journals == null ? null : journals[i]);
+		}
+		for (Partition partition : partitions) {
+			partition.start();
+		}
+	}
+
+	private static CheckInJournal[] replay(CheckInHandler handler, CheckInJournal[] journals) throws IOException {
+		for (CheckInJournal journal : journals) {
+			handler.replayJournal(journal);
+		}
+		return journals;
+	}
+
+	/**
+	 * Routes the handler's own check-ins, one at a time or in batches, through the partitions until they close,
+	 * so only a flight's partition checks passengers in to it and the compare and sets on its passengers and
+	 * totals aren't contended by desks. Every handler check-in then waits on a partition's worker.
+	 * @throws IllegalStateException if the partitions are closed, or the handler's check-ins are already routed
+	 * through other partitions
+	 */
+	public void routeHandlerCheckIns() {
+		if (closed) {
+			throw new IllegalStateException("The partitions are closed");
+		}
+		handler.routeThrough(this);
+		if (closed) {
+			handler.stopRouting(this); // closed as we started routing, and close may already have stopped it
+			throw new IllegalStateException("The partitions are closed");
+		}
+	}
+
+	/**
+	 * returns the number of partitions
+	 * @return the number of partitions
+	 */
+	public int getPartitionCount() {
+		return partitions.length;
+	}
+
+	/**
+	 * returns the partition that owns a flight, worked out from its code alone, so flights added
+	 * to the handler later are owned too, and the same way on every node
+	 * @param flight the flight
+	 * @return the partition, from 0
+	 */
+	public int getPartition(Flight flight) {
+		// the code's hash is cached, and upper case codes are not copied
+		int hash = flight.getFlightCode().toUpperCase().hashCode() * 0x9E3779B9; // codes differing only in the last character spread out
+		return (int) (((hash >>> 1) * (long) partitions.length) >>> 31);
+	}
+
+	/**
+	 * Checks a passenger's details on the partition that owns their flight, see {@link CheckInHandler#tryCheckDetails(String, String)}.
+	 * Sees every check-in already placed for the flight.
+	 *
+	 * @param	bookingReference	The booking reference code of the passenger
+	 * @param	lastName			Last name of the passenger, to check against that associated with booking reference
+	 * @return	Completed with DETAILS_MATCH, NAME_MISMATCH, ALREADY_CHECKED_IN or NOT_ON_RECORD
+	 * @throws	IllegalStateException	If the partitions have been closed
+	 */
+	public CompletableFuture<CheckInResult> submitCheckDetails(String bookingReference, String lastName) {
+		if (lastName == null) {
+			throw new IllegalArgumentException("A last name is needed to check details");
+		}
+		return route(new Request(bookingReference, lastName, null, 0));
+	}
+
+	/**
+	 * Checks a passenger in on the partition that owns their flight, see {@link CheckInHandler#tryProcessPassenger(String, float[], float)}.
+	 * The dimensions are read by the partition's worker, so must not be changed until the result is complete.
+	 *
+	 * @param	bookingReference	The booking reference of the passenger to be processed
+	 * @param	dimensions			The width, height and depth of the baggage in a single array.
+	 * @param	weight				The weight of the passengers baggage.
+	 * @return	Completed with CHECKED_IN and the fee due, or ALREADY_CHECKED_IN or NOT_ON_RECORD,
+	 * 			or exceptionally if the check-in could not be journaled
+	 * @throws	IllegalStateException	If the partitions have been closed
+	 */
+	public CompletableFuture<CheckInResult> submitProcessPassenger(String bookingReference, float[] dimensions, float weight) {
+		return route(new Request(bookingReference, null, dimensions, weight));
+	}
+
+	/**
+	 * Checks a passenger's details on the partition that owns their flight, waiting for the result.
+	 *
+	 * @param	bookingReference	The booking reference code of the passenger
+	 * @param	lastName			Last name of the passenger, to check against that associated with booking reference
+	 * @return	DETAILS_MATCH, NAME_MISMATCH, ALREADY_CHECKED_IN or NOT_ON_RECORD
+	 * @throws	IllegalStateException	If the partitions have been closed
+	 */
+	public CheckInResult tryCheckDetails(String bookingReference, String lastName) {
+		return submitCheckDetails(bookingReference, lastName).join();
+	}
+
+	/**
+	 * Checks a passenger in on the partition that owns their flight, waiting for the result.
+	 *
+	 * @param	bookingReference	The booking reference of the passenger to be processed
+	 * @param	dimensions			The width, height and depth of the baggage in a single array.
+	 * @param	weight				The weight of the passengers baggage.
+	 * @return	CHECKED_IN with the fee due, or ALREADY_CHECKED_IN or NOT_ON_RECORD
+	 * @throws	java.util.concurrent.CompletionException	If the passenger was checked in but the check-in could not be written to the journal.
+	 * @throws	IllegalStateException	If the partitions have been closed
+	 */
+	public CheckInResult tryProcessPassenger(String bookingReference, float[] dimensions, float weight) {
+		return submitProcessPassenger(bookingReference, dimensions, weight).join();
+	}
+
+	/**
+	 * Checks a passenger in for the handler, waiting for the result, with the exceptions the handler throws
+	 */
+	CheckInResult checkIn(String bookingReference, float[] dimensions, float weight) {
+		return await(submitProcessPassenger(bookingReference, dimensions, weight));
+	}
+
+	/**
+	 * Checks in a batch for the handler, each passenger on the partition that owns their flight
+	 * @return the result for each passenger, in the same order as the booking references
+	 */
+	CheckInResult[] processAll(String[] bookingReferences, float[] dimensions, float[] weights) {
+		List<CompletableFuture<CheckInResult>> pending = new ArrayList<CompletableFuture<CheckInResult>>(bookingReferences.length);
+		for (int i = 0; i < bookingReferences.length; i++) {
+			pending.add(submitProcessPassenger(bookingReferences[i], Arrays.copyOfRange(dimensions, i * 3, i * 3 + 3), weights[i]));
+		}
+		CheckInResult[] results = new CheckInResult[pending.size()];
+		for (int i = 0; i < results.length; i++) {
+			results[i] = await(pending.get(i));
+		}
+		return results;
+	}
+
+	private static CheckInResult await(CompletableFuture<CheckInResult> result) {
+		try {
+			return result.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause(); // as the handler would have thrown it
+			}
+			throw e;
+		}
+	}
+
+	private Request route(Request request) {
+		if (closed) {
+			throw new IllegalStateException("The partitions are closed");
+		}
+		Passenger passenger = handler.getPassengers().find(request.bookingReference);
+		if (passenger == null || passenger.getFlight() == null) {
+			run(request, null); // nothing for a partition to own, and no flight to write to
+			return request;
+		}
+		Partition partition = partitions[getPartition(passenger.getFlight())];
+		partition.queue.offer(request);
+		if (closed && partition.queue.remove(request)) {
+			// closed as it was placed, and the worker may already have finished
+			throw new IllegalStateException("The partitions are closed");
+		}
+		VarHandle.fullFence(); // place the request before looking for a parked worker, the other half is in idle
+		if (partition.parked) {
+			LockSupport.unpark(partition);
+		}
+		return request;
+	}
+
+	private void run(Request request, CheckInJournal journal) {
+		try {
+			request.complete(request.lastName != null
+					? handler.tryCheckDetails(request.bookingReference, request.lastName)
+					: handler.processOnPartition(request.bookingReference, request.dimensions, request.weight, journal));
+		} catch (RuntimeException e) {
+			request.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Stops taking requests, lets each partition finish the requests already placed, then stops the workers
+	 * and, if its check-ins were routed through them, has the handler check in on its callers' threads again.
+	 * Check-ins given to the handler while closing then throw IllegalStateException.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Partition partition : partitions) {
+			LockSupport.unpark(partition);
+		}
+		boolean interrupted = false;
+		for (Partition partition : partitions) {
+			while (partition.isAlive()) {
+				try {
+					partition.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		handler.stopRouting(this);
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A partition's worker, running the requests on its queue in order
+	 */
+	private final class Partition extends Thread {
+		final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<Request>();
+		final CheckInJournal journal; // null to append to the handler's
+		volatile boolean parked;
+
+		Partition(String name, CheckInJournal journal) {
+			super(name);
+			this.journal = journal;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			int tries = 0;
+			while (true) {
+				Request request = queue.poll();
+				if (request != null) {
+					CheckInPartitions.this.run(request, journal);
+					tries = 0;
+				} else if (closed && queue.isEmpty()) {
+					return; // everything placed before closing has been handled
+				} else {
+					idle(tries++);
+				}
+			}
+		}
+
+		private void idle(int tries) {
+			if (tries < SPIN_TRIES) {
+				Thread.onSpinWait();
+			} else if (tries < SPIN_TRIES + YIELD_TRIES) {
+				Thread.yield();
+			} else {
+				parked = true;
+				VarHandle.fullFence();
+				// look once more after saying we're parked, a desk placing a request now will see the flag and unpark us
+				if (queue.isEmpty() && !closed) {
+					LockSupport.park(this);
+				}
+				parked = false;
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package ase1;
+
+import ase1.data.Flight;
+
+/**
+ * The outcome of checking a passenger's details or checking them in, returned by the non-throwing
+ * methods of {@link CheckInHandler}.
+ * Mistyped and already used booking references are everyday results at a kiosk, so they are reported
+ * with a status rather than an exception. The results that carry nothing but their status are shared,
+ * so a miss allocates nothing at all.
+ */
+public final class CheckInResult {
+	/**
+	 * What happened
+	 */
+	public enum Status {
+		/** The last name matches the passenger, who is waiting to check in */
+		DETAILS_MATCH,
+		/** The booking reference is waiting to check in, but under a different last name */
+		NAME_MISMATCH,
+		/** The passenger has now been checked in, the fee is set */
+		CHECKED_IN,
+		/** The passenger had already checked in */
+		ALREADY_CHECKED_IN,
+		/** There is no passenger with the booking reference */
+		NOT_ON_RECORD,
+		/** Turned away, every seat on the flight is taken, only when limits are enforced */
+		FLIGHT_FULL,
+		/** Turned away, the baggage would take the flight over its maximum weight, only when limits are enforced */
+		OVER_WEIGHT,
+		/** Turned away, the baggage would take the flight over its maximum volume, only when limits are enforced */
+		OVER_VOLUME
+	}
+
+	static final CheckInResult DETAILS_MATCH = new CheckInResult(Status.DETAILS_MATCH, 0f);
+	static final CheckInResult NAME_MISMATCH = new CheckInResult(Status.NAME_MISMATCH, 0f);
+	static final CheckInResult ALREADY_CHECKED_IN = new CheckInResult(Status.ALREADY_CHECKED_IN, 0f);
+	static final CheckInResult NOT_ON_RECORD = new CheckInResult(Status.NOT_ON_RECORD, 0f);
+	static final CheckInResult FLIGHT_FULL = new CheckInResult(Status.FLIGHT_FULL, 0f);
+	static final CheckInResult OVER_WEIGHT = new CheckInResult(Status.OVER_WEIGHT, 0f);
+	static final CheckInResult OVER_VOLUME = new CheckInResult(Status.OVER_VOLUME, 0f);
+
+	private final Status status;
+	private final float fee;
+
+	CheckInResult(Status status, float fee) {
+		this.status = status;
+		this.fee = fee;
+	}
+
+	/**
+	 * The result for a passenger their flight turned away
+	 * @param admission why the flight turned them away
+	 * @return FLIGHT_FULL, OVER_WEIGHT or OVER_VOLUME
+	 */
+	static CheckInResult turnedAway(Flight.Admission admission) {
+		switch (admission) {
+		case FLIGHT_FULL:
+			return FLIGHT_FULL;
+		case OVER_WEIGHT:
+			return OVER_WEIGHT;
+		case OVER_VOLUME:
+			return OVER_VOLUME;
+		default:
+			throw new IllegalArgumentException("Not turned away: " + admission);
+		}
+	}
+
+	/**
+	 * returns what happened
+	 * @return the status
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * returns the fee due for excess baggage, only set when the status is CHECKED_IN
+	 * @return the fee, or 0 for any other status
+	 */
+	public float getFee() {
+		return fee;
+	}
+
+	/**
+	 * returns whether the details matched or the passenger was checked in
+	 * @return true for DETAILS_MATCH and CHECKED_IN
+	 */
+	public boolean isSuccess() {
+		return status == Status.DETAILS_MATCH || status == Status.CHECKED_IN;
+	}
+
+	@Override
+	public String toString() {
+		return status == Status.CHECKED_IN ? status + " fee " + fee : status.toString();
+	}
+}
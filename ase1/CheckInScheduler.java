@@ -0,0 +1,348 @@
+package ase1;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import ase1.data.Flight;
+import ase1.data.Passenger;
+
+/**
+ * Queues arriving passengers for a number of check-in desks, each desk served by a thread of its own
+ * that checks the passenger's details then checks them in through a {@link CheckInHandler}.
+ *
+ * Every desk takes from one shared queue, and only once it is free, so no desk stands idle while passengers
+ * wait and nobody is left behind a slow passenger at a desk they were placed at up front. Queues of their own
+ * for each desk, with or without idle desks stealing from them, never waited less in DeskQueueSimulation.
+ *
+ * Passengers whose flight closes within the priority window of their arrival, see {@link #setCloseTime(String, long)},
+ * go in a priority lane served before anyone else, the flight closing soonest first, and in the order they
+ * arrived for flights closing at the same time. Everyone else is served in the order they arrived.
+ *
+ * Both lanes are behind one lock, held only to add or take a passenger. How long each desk's passengers
+ * waited, and how many were left queued when it took each of them, are kept per desk, see {@link #getDeskStats(int)}.
+ */
+public class CheckInScheduler implements Closeable {
+	private final CheckInHandler handler;
+	private final Desk[] desks;
+	private final long priorityWindowMillis;
+	private final ConcurrentHashMap<String, Long> closeTimes = new ConcurrentHashMap<String, Long>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition arrived = lock.newCondition(); // signalled for each passenger queued, and on closing
+	private final ArrayDeque<Arrival> queue = new ArrayDeque<Arrival>();
+	private final PriorityQueue<Arrival> priorityLane = new PriorityQueue<Arrival>();
+	private long arrivals; // numbers the arrivals, guarded by lock
+	private boolean closed; // guarded by lock
+	private final LatencyRecorder waits = new LatencyRecorder();
+	private final LatencyRecorder priorityWaits = new LatencyRecorder();
+
+	/**
+	 * A passenger waiting to be served, completed by the desk that serves them
+	 */
+	private static final class Arrival extends CompletableFuture<CheckInResult> implements Comparable<Arrival> {
+		final String bookingReference;
+		final String lastName;
+		final float[] dimensions;
+		final float weight;
+		final long arrivedNanos = System.nanoTime();
+		final long closeTime; // when their flight closes, only for the priority lane
+		long sequence; // keeps arrivals for flights closing at the same time in order, set once queued
+
+		Arrival(String bookingReference, String lastName, float[] dimensions, float weight, long closeTime) {
+			this.bookingReference = bookingReference;
+			this.lastName = lastName;
+			this.dimensions = dimensions;
+			this.weight = weight;
+			this.closeTime = closeTime;
+		}
+
+		boolean isPriority() {
+			return closeTime != Long.MAX_VALUE;
+		}
+
+		@Override
+		public int compareTo(Arrival other) {
+			int byClose = Long.compare(closeTime, other.closeTime);
+			return byClose != 0 ? byClose : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	/**
+	 * Opens the desks, with no priority lane
+	 * @param handler the handler to check in with
+	 * @param desks the number of desks
+	 */
+	public CheckInScheduler(CheckInHandler handler, int desks) {
+		this(handler, desks, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Opens the desks, with a priority lane for passengers whose flight is about to close
+	 * @param handler the handler to check in with
+	 * @param desks the number of desks
+	 * @param priorityWindow how soon before their flight closes a passenger goes in the priority lane, 0 for no priority lane
+	 * @param unit the unit of the priority window
+	 */
+	public CheckInScheduler(CheckInHandler handler, int desks, long priorityWindow, TimeUnit unit) {
+		if (desks < 1) {
+			throw new IllegalArgumentException("Need at least one desk: " + desks);
+		}
+		this.handler = handler;
+		this.priorityWindowMillis = unit.toMillis(priorityWindow);
+		this.desks = new Desk[desks];
+		for (int i = 0; i < desks; i++) {
+			this.desks[i] = new Desk(i);
+		}
+		for (Desk desk : this.desks) {
+			desk.start();
+		}
+	}
+
+	/**
+	 * Sets when check-in for a flight closes, its passengers arriving within the priority window before then
+	 * go in the priority lane
+	 * @param flightCode the flight
+	 * @param closeTimeMillis when check-in closes, in milliseconds since the epoch
+	 */
+	public void setCloseTime(String flightCode, long closeTimeMillis) {
+		closeTimes.put(flightCode.toUpperCase(), closeTimeMillis);
+	}
+
+	/**
+	 * returns the number of desks
+	 * @return the number of desks
+	 */
+	public int getDeskCount() {
+		return desks.length;
+	}
+
+	/**
+	 * Queues a passenger arriving for check-in. A desk checks their details, then checks them in if the details match.
+	 * The dimensions are read by the desk, so must not be changed until the result is complete.
+	 *
+	 * @param	bookingReference	The booking reference of the passenger
+	 * @param	lastName			Last name of the passenger, to check against that associated with booking reference
+	 * @param	dimensions			The width, height and depth of the baggage in a single array.
+	 * @param	weight				The weight of the passengers baggage.
+	 * @return	Completed with CHECKED_IN and the fee due, or NAME_MISMATCH, ALREADY_CHECKED_IN or NOT_ON_RECORD,
+	 * 			or with limits enforced FLIGHT_FULL, OVER_WEIGHT or OVER_VOLUME, or exceptionally if the check-in
+	 * 			could not be journaled
+	 * @throws	IllegalStateException	If the desks have been closed
+	 */
+	public CompletableFuture<CheckInResult> submit(String bookingReference, String lastName, float[] dimensions, float weight) {
+		if (lastName == null) {
+			throw new IllegalArgumentException("A last name is needed to check details");
+		}
+		Arrival arrival = new Arrival(bookingReference, lastName, dimensions, weight, closeTime(bookingReference));
+		lock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("The desks are closed");
+			}
+			arrival.sequence = arrivals++;
+			if (arrival.isPriority()) {
+				priorityLane.add(arrival);
+			} else {
+				queue.add(arrival);
+			}
+			arrived.signal();
+		} finally {
+			lock.unlock();
+		}
+		return arrival;
+	}
+
+	/**
+	 * Works out when a passenger's flight closes, if it is within the priority window from now
+	 * @return the close time, or Long.MAX_VALUE if they don't go in the priority lane
+	 */
+	private long closeTime(String bookingReference) {
+		if (priorityWindowMillis <= 0 || closeTimes.isEmpty()) {
+			return Long.MAX_VALUE;
+		}
+		Passenger passenger = handler.getPassengers().find(bookingReference);
+		Flight flight = passenger == null ? null : passenger.getFlight();
+		Long closes = flight == null ? null : closeTimes.get(flight.getFlightCode().toUpperCase());
+		if (closes == null || closes - System.currentTimeMillis() > priorityWindowMillis) {
+			return Long.MAX_VALUE;
+		}
+		return closes;
+	}
+
+	/**
+	 * Serves a passenger at a desk: checks their details, then checks them in if they match.
+	 * Called on the desk's thread, a subclass can do more at the desk around it.
+	 *
+	 * @param	desk				The desk serving the passenger, from 0
+	 * @param	bookingReference	The booking reference of the passenger
+	 * @param	lastName			Last name of the passenger
+	 * @param	dimensions			The width, height and depth of the baggage in a single array.
+	 * @param	weight				The weight of the passengers baggage.
+	 * @return	CHECKED_IN with the fee due, or NAME_MISMATCH, ALREADY_CHECKED_IN or NOT_ON_RECORD,
+	 * 			or with limits enforced FLIGHT_FULL, OVER_WEIGHT or OVER_VOLUME
+	 */
+	protected CheckInResult serve(int desk, String bookingReference, String lastName, float[] dimensions, float weight) {
+		CheckInResult details = handler.tryCheckDetails(bookingReference, lastName);
+		if (details.getStatus() != CheckInResult.Status.DETAILS_MATCH) {
+			return details;
+		}
+		return handler.tryProcessPassenger(bookingReference, dimensions, weight);
+	}
+
+	/**
+	 * returns the number of passengers waiting for a desk, in either lane
+	 * @return the queue depth
+	 */
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return queue.size() + priorityLane.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * returns the number of passengers waiting in the priority lane
+	 * @return the priority lane's depth
+	 */
+	public int getPriorityQueueDepth() {
+		lock.lock();
+		try {
+			return priorityLane.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * returns what a desk has done so far
+	 * @param desk the desk, from 0
+	 * @return the passengers it served, how long they waited, and how many were queued when it took them
+	 */
+	public DeskStats getDeskStats(int desk) {
+		Desk theDesk = desks[desk];
+		LatencyStats waitTime = theDesk.waits.snapshot();
+		lock.lock();
+		try {
+			return new DeskStats(desk, theDesk.served, waitTime,
+					theDesk.served == 0 ? 0 : (double) theDesk.depthTotal / theDesk.served, theDesk.maxDepth);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * returns how long every passenger served waited, from arriving to reaching a desk
+	 * @return the waiting times
+	 */
+	public LatencyStats getWaitTime() {
+		return waits.snapshot();
+	}
+
+	/**
+	 * returns how long the passengers in the priority lane waited, from arriving to reaching a desk
+	 * @return the waiting times
+	 */
+	public LatencyStats getPriorityWaitTime() {
+		return priorityWaits.snapshot();
+	}
+
+	/**
+	 * Stops taking arrivals, lets the desks serve everyone already queued, then stops the desks' threads
+	 */
+	@Override
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			arrived.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		boolean interrupted = false;
+		for (Desk desk : desks) {
+			while (desk.isAlive()) {
+				try {
+					desk.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * A desk's thread, taking the priority lane's first passenger when there is one, otherwise whoever
+	 * has waited longest
+	 */
+	private final class Desk extends Thread {
+		final int index;
+		final LatencyRecorder waits = new LatencyRecorder();
+		// guarded by lock
+		long served;
+		long depthTotal;
+		int maxDepth;
+
+		Desk(int index) {
+			super("check-in-desk-" + index);
+			this.index = index;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			Arrival arrival;
+			while ((arrival = take()) != null) {
+				long waited = System.nanoTime() - arrival.arrivedNanos;
+				waits.record(waited);
+				CheckInScheduler.this.waits.record(waited);
+				if (arrival.isPriority()) {
+					priorityWaits.record(waited);
+				}
+				try {
+					arrival.complete(serve(index, arrival.bookingReference, arrival.lastName, arrival.dimensions, arrival.weight));
+				} catch (RuntimeException e) {
+					arrival.completeExceptionally(e);
+				}
+			}
+		}
+
+		/**
+		 * Waits for the next passenger
+		 * @return the passenger, or null once closed with nobody left waiting
+		 */
+		private Arrival take() {
+			lock.lock();
+			try {
+				while (true) {
+					Arrival arrival = priorityLane.poll();
+					if (arrival == null) {
+						arrival = queue.poll();
+					}
+					if (arrival != null) {
+						int depth = queue.size() + priorityLane.size();
+						served++;
+						depthTotal += depth;
+						maxDepth = Math.max(maxDepth, depth);
+						return arrival;
+					}
+					if (closed) {
+						return null; // everyone queued before closing has been served
+					}
+					arrived.awaitUninterruptibly();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
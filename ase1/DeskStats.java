@@ -0,0 +1,67 @@
+package ase1;
+
+/**
+ * What one of a {@link CheckInScheduler}'s desks has done, read at one moment: how many passengers it has served,
+ * how long they waited to reach it, and how many were queued behind each of them when the desk took them.
+ */
+public final class DeskStats {
+	private final int desk;
+	private final long served;
+	private final LatencyStats waitTime;
+	private final double meanQueueDepth;
+	private final int maxQueueDepth;
+
+	DeskStats(int desk, long served, LatencyStats waitTime, double meanQueueDepth, int maxQueueDepth) {
+		this.desk = desk;
+		this.served = served;
+		this.waitTime = waitTime;
+		this.meanQueueDepth = meanQueueDepth;
+		this.maxQueueDepth = maxQueueDepth;
+	}
+
+	/**
+	 * returns which desk these are for
+	 * @return the desk, from 0
+	 */
+	public int getDesk() {
+		return desk;
+	}
+
+	/**
+	 * returns the number of passengers the desk has served
+	 * @return the number served
+	 */
+	public long getServed() {
+		return served;
+	}
+
+	/**
+	 * returns how long the passengers the desk served waited, from arriving to reaching the desk
+	 * @return the waiting times
+	 */
+	public LatencyStats getWaitTime() {
+		return waitTime;
+	}
+
+	/**
+	 * returns the mean number of passengers left waiting, in either lane, when the desk took one
+	 * @return the mean queue depth
+	 */
+	public double getMeanQueueDepth() {
+		return meanQueueDepth;
+	}
+
+	/**
+	 * returns the most passengers left waiting, in either lane, when the desk took one
+	 * @return the largest queue depth
+	 */
+	public int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("desk %d: %d served, wait mean %.2fms p99 %.2fms, queue depth mean %.1f max %d",
+				desk, served, waitTime.getMeanNanos() / 1e6, waitTime.getP99Nanos() / 1e6, meanQueueDepth, maxQueueDepth);
+	}
+}
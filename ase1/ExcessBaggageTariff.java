@@ -0,0 +1,77 @@
+package ase1;
+
+/**
+ * The usual tariff: each passenger has an allowance of volume and weight, and pays the flight's
+ * fee multiplier for every unit of volume and weight over it.
+ */
+public class ExcessBaggageTariff implements Tariff {
+	private final float maxVol;
+	private final float maxWeight;
+	private final float multiplier;
+
+	/**
+	 * Constructs an ExcessBaggageTariff
+	 * @param maxVol the volume of baggage each passenger may bring without paying
+	 * @param maxWeight the weight of baggage each passenger may bring without paying
+	 * @param multiplier the fee for each unit of volume or weight over the allowance
+	 */
+	public ExcessBaggageTariff(float maxVol, float maxWeight, float multiplier) {
+		this.maxVol = maxVol;
+		this.maxWeight = maxWeight;
+		this.multiplier = multiplier;
+	}
+
+	/**
+	 * returns the volume of baggage each passenger may bring without paying
+	 * @return the volume allowance
+	 */
+	public float getMaxVolume() {
+		return maxVol;
+	}
+
+	/**
+	 * returns the weight of baggage each passenger may bring without paying
+	 * @return the weight allowance
+	 */
+	public float getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * returns the fee for each unit of volume or weight over the allowance
+	 * @return the fee multiplier
+	 */
+	public float getMultiplier() {
+		return multiplier;
+	}
+
+	@Override
+	public float fee(float vol, float weight) {
+		// basic calculation to find the fees from the excess
+		float weightFee = weight - maxWeight;
+		float volFee = vol - maxVol;
+
+		// If the passengers baggage is below the maximums, no fee is applied,
+		if (weightFee < 0) { weightFee = 0; }
+		if (volFee < 0) { volFee = 0; }
+
+		return (weightFee + volFee) * multiplier;
+	}
+
+	@Override
+	public void fees(float[] dimensions, float[] weights, float[] fees, int count) {
+		// The same formula, with the allowances in locals for the whole loop
+		float maxVol = this.maxVol, maxWeight = this.maxWeight, multiplier = this.multiplier;
+		for (int i = 0, d = 0; i < count; i++, d += 3) {
+			float vol = Math.abs(dimensions[d] * dimensions[d + 1] * dimensions[d + 2]);
+			float weightFee = Math.max(Math.abs(weights[i]) - maxWeight, 0f);
+			float volFee = Math.max(vol - maxVol, 0f);
+			fees[i] = (weightFee + volFee) * multiplier;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "allowance " + maxVol + " volume, " + maxWeight + " weight, multiplier " + multiplier;
+	}
+}
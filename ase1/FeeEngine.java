@@ -0,0 +1,18 @@
+package ase1;
+
+import ase1.data.Flight;
+
+/**
+ * Decides how each flight prices excess baggage, so carriers can have different rules.
+ * Set on a {@link CheckInHandler} with {@link CheckInHandler#setFeeEngine(FeeEngine)}.
+ * Engines are asked for a tariff on every check-in, so they should hand back one they made earlier,
+ * and must be safe to use from many desks at once.
+ */
+public interface FeeEngine {
+	/**
+	 * Gets the tariff for a flight
+	 * @param flight the flight
+	 * @return how the flight prices excess baggage
+	 */
+	Tariff tariffFor(Flight flight);
+}
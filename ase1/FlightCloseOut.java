@@ -0,0 +1,317 @@
+package ase1;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import ase1.data.Flight;
+import ase1.data.FlightTotals;
+import ase1.data.Passenger;
+
+/**
+ * Closes out every flight at the end of the day: its final totals, whether it went over its passenger capacity,
+ * baggage weight or baggage volume, and its manifest, written to a file of its own named after the flight code.
+ * Any character of the code other than a letter, digit, '-' or '_' is written as %XX for each of its UTF-8 bytes,
+ * so a code such as "../AB1" can't put a file outside the directory, and no two codes share a file.
+ *
+ * Flights are closed out in parallel on a fork-join pool, split in half until each task has one flight, so a
+ * worker that finishes its flights early steals from the others and a few large flights don't hold up the rest.
+ * Each file is built in memory then written through a channel in one go. How long each flight took and what
+ * was written for it comes back in a {@link Result}, and a listener can be told as each flight is done.
+ *
+ * The manifest lists the flight's passengers in booking reference order, in the layout of the passengers
+ * file, so it can be loaded again. Close out after desks have stopped, a passenger checked in during
+ * close-out may be in their flight's totals but not shown as checked in on the manifest, or the other way round.
+ */
+public class FlightCloseOut {
+	private static final Comparator<Passenger> BY_BOOKING_REF = Comparator.comparing(Passenger::getBookingRefCode);
+
+	private final Flight[] flights;
+	private final Path directory;
+	private final AtomicInteger closed = new AtomicInteger();
+	private volatile Consumer<? super Result> listener;
+
+	/**
+	 * What was written for one flight
+	 */
+	public static final class Result {
+		private final String flightCode;
+		private final FlightTotals totals;
+		private final boolean overCapacity;
+		private final boolean overWeight;
+		private final boolean overVolume;
+		private final int booked;
+		private final int checkedIn;
+		private final Path file;
+		private final long bytes;
+		private final long nanos;
+
+		Result(String flightCode, FlightTotals totals, boolean overCapacity, boolean overWeight, boolean overVolume,
+				int booked, int checkedIn, Path file, long bytes, long nanos) {
+			this.flightCode = flightCode;
+			this.totals = totals;
+			this.overCapacity = overCapacity;
+			this.overWeight = overWeight;
+			this.overVolume = overVolume;
+			this.booked = booked;
+			this.checkedIn = checkedIn;
+			this.file = file;
+			this.bytes = bytes;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * returns the flight code
+		 * @return the flight code
+		 */
+		public String getFlightCode() {
+			return flightCode;
+		}
+
+		/**
+		 * returns the flight's final totals
+		 * @return the totals
+		 */
+		public FlightTotals getTotals() {
+			return totals;
+		}
+
+		/**
+		 * returns whether more passengers checked in than the flight has seats
+		 * @return true if the flight is over its passenger capacity
+		 */
+		public boolean isOverCapacity() {
+			return overCapacity;
+		}
+
+		/**
+		 * returns whether the baggage checked in weighs more than the flight can take
+		 * @return true if the flight is over its baggage weight
+		 */
+		public boolean isOverWeight() {
+			return overWeight;
+		}
+
+		/**
+		 * returns whether the baggage checked in takes more room than the flight has
+		 * @return true if the flight is over its baggage volume
+		 */
+		public boolean isOverVolume() {
+			return overVolume;
+		}
+
+		/**
+		 * returns the number of passengers on the manifest
+		 * @return the number of passengers booked
+		 */
+		public int getBooked() {
+			return booked;
+		}
+
+		/**
+		 * returns the number of passengers on the manifest who checked in
+		 * @return the number checked in
+		 */
+		public int getCheckedIn() {
+			return checkedIn;
+		}
+
+		/**
+		 * returns the file the flight was written to
+		 * @return the file
+		 */
+		public Path getFile() {
+			return file;
+		}
+
+		/**
+		 * returns the size of the flight's file
+		 * @return the number of bytes written
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * returns how long closing out the flight took, from reading its totals to its file being written
+		 * @return the time taken in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+	}
+
+	/**
+	 * Prepares to close out the given flights, nothing is written until {@link #run()}
+	 * @param flights the flights, with their manifests kept by the passenger list they were booked through
+	 * @param directory where each flight's file is written, created if need be
+	 */
+	public FlightCloseOut(Collection<Flight> flights, Path directory) {
+		this.flights = flights.toArray(new Flight[0]);
+		this.directory = directory;
+	}
+
+	/**
+	 * Sets a listener told about each flight as soon as it is closed out, on the thread that closed it out
+	 * @param listener the listener, or null for none
+	 */
+	public void setListener(Consumer<? super Result> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * returns the number of flights to close out
+	 * @return the number of flights
+	 */
+	public int getFlightCount() {
+		return flights.length;
+	}
+
+	/**
+	 * returns the number of flights closed out so far, for showing progress while running
+	 * @return the number of flights done
+	 */
+	public int getFlightsClosed() {
+		return closed.get();
+	}
+
+	/**
+	 * Closes out every flight on the common fork-join pool
+	 * @return what was written for each flight, in the order the flights were given
+	 * @throws IOException if the directory or a flight's file can't be written, the other flights may have been written
+	 */
+	public List<Result> run() throws IOException {
+		return run(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Closes out every flight on the given pool
+	 * @param pool the pool, its parallelism is how many flights are closed out at once
+	 * @return what was written for each flight, in the order the flights were given
+	 * @throws IOException if the directory or a flight's file can't be written, the other flights may have been written
+	 */
+	public List<Result> run(ForkJoinPool pool) throws IOException {
+		Files.createDirectories(directory);
+		Result[] results = new Result[flights.length];
+		if (flights.length > 0) {
+			try {
+				pool.invoke(new CloseOutTask(results, 0, flights.length));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Names the file for a flight, escaping everything in its code but letters, digits, '-' and '_'
+	 * @param flightCode the flight code
+	 * @return the file name, the escaped code then .txt
+	 */
+	static String fileName(String flightCode) {
+		StringBuilder name = new StringBuilder(flightCode.length() + 4);
+		for (byte b : flightCode.getBytes(StandardCharsets.UTF_8)) {
+			int c = b & 0xFF;
+			if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_') {
+				name.append((char) c);
+			} else {
+				name.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+						.append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+			}
+		}
+		return name.append(".txt").toString();
+	}
+
+	/**
+	 * Closes out one flight: reads its totals, sorts its manifest, and writes its file
+	 */
+	private Result closeOut(Flight flight) throws IOException {
+		long start = System.nanoTime();
+		FlightTotals totals = flight.getTotals();
+		boolean overCapacity = flight.isOverCapacity(totals);
+		boolean overWeight = flight.isOverWeight(totals);
+		boolean overVolume = flight.isOverVolume(totals);
+		Passenger[] manifest = flight.getManifest().getPassengers().toArray(new Passenger[0]);
+		Arrays.sort(manifest, BY_BOOKING_REF);
+
+		StringBuilder out = new StringBuilder(256 + manifest.length * 48);
+		flight.appendReport(out);
+		out.append("Over capacity: ").append(overCapacity ? "yes" : "no").append('\n');
+		out.append("Over weight: ").append(overWeight ? "yes" : "no").append('\n');
+		out.append("Over volume: ").append(overVolume ? "yes" : "no").append('\n');
+		int checkedIn = 0;
+		StringBuilder lines = new StringBuilder(manifest.length * 40);
+		for (Passenger passenger : manifest) {
+			boolean in = passenger.isCheckedIn();
+			if (in) {
+				checkedIn++;
+			}
+			lines.append(passenger.getBookingRefCode()).append(',').append(passenger.getFirstName()).append(',')
+					.append(passenger.getLastName()).append(',').append(flight.getFlightCode()).append(',').append(in).append('\n');
+		}
+		out.append("Booked: ").append(manifest.length).append(", checked in: ").append(checkedIn).append('\n');
+		out.append("Manifest:\n").append(lines);
+
+		Path file = directory.resolve(fileName(flight.getFlightCode()));
+		ByteBuffer bytes = ByteBuffer.wrap(out.toString().getBytes(StandardCharsets.UTF_8));
+		long size = bytes.remaining();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+		}
+		Result result = new Result(flight.getFlightCode(), totals, overCapacity, overWeight, overVolume,
+				manifest.length, checkedIn, file, size, System.nanoTime() - start);
+		closed.incrementAndGet();
+		Consumer<? super Result> told = listener;
+		if (told != null) {
+			told.accept(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Splits the flights in half until there is one left, then closes it out
+	 */
+	private final class CloseOutTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Result[] results;
+		private final int from;
+		private final int to;
+
+		CloseOutTask(Result[] results, int from, int to) {
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new CloseOutTask(results, from, mid), new CloseOutTask(results, mid, to));
+				return;
+			}
+			try {
+				results[from] = closeOut(flights[from]);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
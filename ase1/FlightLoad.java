@@ -0,0 +1,99 @@
+package ase1;
+
+import ase1.data.Flight;
+import ase1.data.FlightTotals;
+
+/**
+ * How full a flight is, for monitoring: passengers against capacity, baggage against the flight's limits,
+ * and fees taken. The totals are all read at the same moment.
+ */
+public final class FlightLoad {
+	private final String flightCode;
+	private final String carrier;
+	private final int passengerCapacity;
+	private final int checkedIn;
+	private final int toCheckIn;
+	private final float baggageWeight;
+	private final float maxBaggageWeight;
+	private final float baggageVolume;
+	private final float maxBaggageVolume;
+	private final float fees;
+
+	FlightLoad(Flight flight) {
+		FlightTotals totals = flight.getTotals();
+		this.flightCode = flight.getFlightCode();
+		this.carrier = flight.getCarrier();
+		this.passengerCapacity = flight.getPassengerCapacity();
+		this.checkedIn = totals.getPassengers();
+		this.toCheckIn = flight.getManifest().getNumToCheckIn();
+		this.baggageWeight = totals.getWeight();
+		this.maxBaggageWeight = flight.getMaxBaggageWeight();
+		this.baggageVolume = totals.getVolume();
+		this.maxBaggageVolume = flight.getMaxBaggageVolume();
+		this.fees = totals.getFees();
+	}
+
+	public String getFlightCode() {
+		return flightCode;
+	}
+
+	public String getCarrier() {
+		return carrier;
+	}
+
+	public int getPassengerCapacity() {
+		return passengerCapacity;
+	}
+
+	/**
+	 * returns the number of passengers checked in
+	 * @return the number checked in
+	 */
+	public int getCheckedIn() {
+		return checkedIn;
+	}
+
+	/**
+	 * returns the number of passengers booked on the flight still to check in
+	 * @return the number still to check in
+	 */
+	public int getToCheckIn() {
+		return toCheckIn;
+	}
+
+	/**
+	 * returns the share of seats taken by passengers checked in
+	 * @return passengers checked in over capacity
+	 */
+	public float getLoadFactor() {
+		return passengerCapacity == 0 ? 0 : checkedIn / (float) passengerCapacity;
+	}
+
+	public float getBaggageWeight() {
+		return baggageWeight;
+	}
+
+	/**
+	 * returns the share of the flight's baggage weight limit used
+	 * @return baggage weight over the limit
+	 */
+	public float getBaggageWeightUsed() {
+		return maxBaggageWeight == 0 ? 0 : baggageWeight / maxBaggageWeight;
+	}
+
+	public float getBaggageVolume() {
+		return baggageVolume;
+	}
+
+	/**
+	 * returns the share of the flight's baggage volume limit used
+	 * @return baggage volume over the limit
+	 */
+	public float getBaggageVolumeUsed() {
+		return maxBaggageVolume == 0 ? 0 : baggageVolume / maxBaggageVolume;
+	}
+
+	public float getFees() {
+		return fees;
+	}
+}
@@ -8,6 +8,16 @@ public class IllegalReferenceCodeException extends RuntimeException{
 	//eclipse seems to want this line
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Whether these exceptions are created without a stack trace unless asked for one, set with
+	 * -Dase1.stacklessExceptions=true. Filling in the stack trace is most of the cost of a mistyped
+	 * booking reference at a kiosk, and the trace says nothing the message doesn't.
+	 */
+	public static final boolean STACKLESS_BY_DEFAULT = Boolean.getBoolean("ase1.stacklessExceptions");
+
+	// Why a check-in was refused, null when thrown for anything else, such as a duplicate in a file
+	private final CheckInResult.Status status;
+
 	/**
      * Constructor for IllegalReferenceCodeException, when there is an issue with the booking reference code.
      * Used for issues with duplicate reference codes or provided reference codes not being present.
@@ -15,6 +25,40 @@ public class IllegalReferenceCodeException extends RuntimeException{
      * @param   message more specific information on the error, provided by the method throwing the error.
      */
     public IllegalReferenceCodeException(String message){
-        super("Error: " + message);
+        this(message, !STACKLESS_BY_DEFAULT);
     }
+
+	/**
+	 * Constructor for IllegalReferenceCodeException, choosing whether to record the stack trace.
+	 * 
+	 * @param	message			more specific information on the error, provided by the method throwing the error.
+	 * @param	withStackTrace	false to skip filling in the stack trace, which makes the exception much cheaper to create
+	 */
+	public IllegalReferenceCodeException(String message, boolean withStackTrace){
+		this(message, null, withStackTrace);
+	}
+
+	/**
+	 * Constructor for IllegalReferenceCodeException, when checking a passenger's details or checking them in is refused.
+	 * 
+	 * @param	message	more specific information on the error, provided by the method throwing the error.
+	 * @param	status	why it was refused, ALREADY_CHECKED_IN or NOT_ON_RECORD
+	 */
+	public IllegalReferenceCodeException(String message, CheckInResult.Status status){
+		this(message, status, !STACKLESS_BY_DEFAULT);
+	}
+
+	private IllegalReferenceCodeException(String message, CheckInResult.Status status, boolean withStackTrace){
+		super("Error: " + message, null, true, withStackTrace);
+		this.status = status;
+	}
+
+	/**
+	 * Gets why a check-in was refused, so callers need not read the message.
+	 * 
+	 * @return	ALREADY_CHECKED_IN or NOT_ON_RECORD when thrown by checkDetails or processPassenger, otherwise null
+	 */
+	public CheckInResult.Status getStatus(){
+		return status;
+	}
 }
\ No newline at end of file
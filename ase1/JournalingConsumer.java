@@ -0,0 +1,45 @@
+package ase1;
+
+import java.io.IOException;
+
+/**
+ * Journals check-ins from a {@link CheckInEventRing}, off the desks' threads.
+ * Events are gathered until the end of each batch, then appended to the journal together, so a burst
+ * of check-ins waits for the disk once. Unlike a journal attached to the {@link CheckInHandler},
+ * a desk doesn't wait for its check-in to be journaled, so the last few check-ins before a crash can be lost.
+ */
+public class JournalingConsumer implements CheckInEventRing.Consumer {
+	private final CheckInJournal journal;
+	private final String[] refs;
+	private final float[] vols;
+	private final float[] weights;
+	private final float[] fees;
+	private int count;
+
+	/**
+	 * Constructs a JournalingConsumer
+	 * @param journal the journal to append to
+	 * @param maxBatch the most check-ins appended together
+	 */
+	public JournalingConsumer(CheckInJournal journal, int maxBatch) {
+		this.journal = journal;
+		this.refs = new String[maxBatch];
+		this.vols = new float[maxBatch];
+		this.weights = new float[maxBatch];
+		this.fees = new float[maxBatch];
+	}
+
+	@Override
+	public void onEvent(CheckInEvent event, long sequence, boolean endOfBatch) throws IOException {
+		refs[count] = event.getBookingRefCode();
+		vols[count] = event.getBaggageVolume();
+		weights[count] = event.getBaggageWeight();
+		fees[count] = event.getFee();
+		count++;
+		if (endOfBatch || count == refs.length) {
+			int batch = count;
+			count = 0; // a failed batch isn't tried again, the journal refuses everything after a failure
+			journal.append(refs, vols, weights, fees, 0, batch);
+		}
+	}
+}
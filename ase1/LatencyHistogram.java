@@ -0,0 +1,125 @@
+package ase1;
+
+/**
+ * Counts latencies in buckets that are 1/64th of a power of two wide, so every percentile is within
+ * about 1.5% of the true value, from a nanosecond up to hours, in a fixed 30KB.
+ * Not thread safe, each thread records into its own histogram and they are added together at the end.
+ * {@link LatencyRecorder} counts into the same buckets for threads recording at once, and reads them back
+ * through a histogram.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long max;
+	private double total;
+
+	/**
+	 * Records one latency
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts[bucket(nanos)]++;
+		count++;
+		total += nanos;
+		if (nanos > max) {
+			max = nanos;
+		}
+	}
+
+	/**
+	 * Adds another histogram's latencies to this one
+	 * @param other the histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		total += other.total;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Adds latencies counted elsewhere into one bucket
+	 * @param bucket the bucket, from bucket
+	 * @param n how many latencies fell in it
+	 */
+	void addToBucket(int bucket, long n) {
+		counts[bucket] += n;
+		count += n;
+	}
+
+	/**
+	 * Adds the total and longest of latencies added with addToBucket
+	 * @param totalNanos their total in nanoseconds
+	 * @param maxNanos the longest in nanoseconds
+	 */
+	void addTotals(double totalNanos, long maxNanos) {
+		total += totalNanos;
+		max = Math.max(max, maxNanos);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public double getMean() {
+		return count == 0 ? 0 : total / count;
+	}
+
+	/**
+	 * returns the latency below which a share of the recorded latencies fall
+	 * @param percentile the share, for example 0.99
+	 * @return the latency in nanoseconds, the top of the bucket it falls in
+	 */
+	public long getPercentile(double percentile) {
+		long wanted = (long) Math.ceil(percentile * count);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= wanted && counts[i] > 0) {
+				return Math.min(bucketTop(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * returns the count, mean, percentiles and maximum of the latencies recorded so far
+	 * @return the statistics
+	 */
+	public LatencyStats toStats() {
+		return new LatencyStats(count, getMean(), getPercentile(0.5), getPercentile(0.99), getPercentile(0.999), max);
+	}
+
+	// Values below SUB_BUCKETS get a bucket each, above that each power of two is split into SUB_BUCKETS
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int power = 63 - Long.numberOfLeadingZeros(value); // at least SUB_BUCKET_BITS
+		int shift = power - SUB_BUCKET_BITS;
+		int sub = (int) (value >>> shift) - SUB_BUCKETS;
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	private static long bucketTop(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((sub + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,58 @@
+package ase1;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long an operation takes, in the buckets of a {@link LatencyHistogram}, so any percentile is
+ * within about 1.5% of the true value. Each bucket is a LongAdder, so desks recording at the same time
+ * don't fight over a counter. A bucket's adder is only made the first time a latency falls in it, as most
+ * never see one, so recording never allocates once the buckets in use have their adders and they have spread out.
+ */
+final class LatencyRecorder {
+	private final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<LongAdder>(LatencyHistogram.BUCKETS);
+	private final LongAdder totalNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	LatencyRecorder() {
+	}
+
+	/**
+	 * Records one operation
+	 * @param nanos how long it took
+	 */
+	void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		int bucket = LatencyHistogram.bucket(nanos);
+		LongAdder adder = buckets.get(bucket);
+		if (adder == null) {
+			buckets.compareAndSet(bucket, null, new LongAdder());
+			adder = buckets.get(bucket);
+		}
+		adder.increment();
+		totalNanos.add(nanos);
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * Reads the recorded latencies. Operations recorded while reading may or may not be included.
+	 * @return the count, mean, percentiles and maximum
+	 */
+	LatencyStats snapshot() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < buckets.length(); i++) {
+			LongAdder adder = buckets.get(i);
+			if (adder != null) {
+				histogram.addToBucket(i, adder.sum());
+			}
+		}
+		histogram.addTotals(totalNanos.sum(), maxNanos.get());
+		return histogram.toStats();
+	}
+}
@@ -0,0 +1,80 @@
+package ase1;
+
+/**
+ * How long an operation has taken, read from its recorder at one moment.
+ * Percentiles are the top of the {@link LatencyHistogram} bucket they fall in, so they are at most about 1.5% high.
+ * Lookups and check-ins are sampled, see {@link CheckInMetrics}, so their statistics are of the calls timed,
+ * not of every call.
+ */
+public final class LatencyStats {
+	private final long sampleCount;
+	private final double meanNanos;
+	private final long p50Nanos;
+	private final long p99Nanos;
+	private final long p999Nanos;
+	private final long maxNanos;
+
+	LatencyStats(long sampleCount, double meanNanos, long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+		this.sampleCount = sampleCount;
+		this.meanNanos = meanNanos;
+		this.p50Nanos = p50Nanos;
+		this.p99Nanos = p99Nanos;
+		this.p999Nanos = p999Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	/**
+	 * returns the number of operations timed, which for sampled operations is the number sampled rather than
+	 * the number of calls
+	 * @return the sample count
+	 */
+	public long getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * returns the mean time taken
+	 * @return the mean in nanoseconds
+	 */
+	public double getMeanNanos() {
+		return meanNanos;
+	}
+
+	/**
+	 * returns the median time taken
+	 * @return the 50th percentile in nanoseconds
+	 */
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	/**
+	 * returns the time 99% of operations took no longer than
+	 * @return the 99th percentile in nanoseconds
+	 */
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	/**
+	 * returns the time 99.9% of operations took no longer than
+	 * @return the 99.9th percentile in nanoseconds
+	 */
+	public long getP999Nanos() {
+		return p999Nanos;
+	}
+
+	/**
+	 * returns the longest time taken
+	 * @return the maximum in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("samples %d, mean %.2fus, p50 %.2fus, p99 %.2fus, p99.9 %.2fus, max %.2fus", sampleCount,
+				meanNanos / 1000.0, p50Nanos / 1000.0, p99Nanos / 1000.0, p999Nanos / 1000.0, maxNanos / 1000.0);
+	}
+}
@@ -0,0 +1,132 @@
+package ase1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+
+import ase1.data.Flight;
+
+/**
+ * Builds the combined report of all flights, redoing only the flights whose totals have changed.
+ * Each flight's report is kept along with the update count it was made at (see {@link Flight#getUpdateCount()}),
+ * so refreshing a dashboard while desks check in to a handful of flights only formats those few flights.
+ * The report file is streamed out through a channel, and only rewritten when something has changed.
+ */
+class ReportGenerator {
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	private final Path file;
+	private Flight[] flights;
+	private long[] reportedAt;
+	private String[] reports;
+	private byte[][] reportBytes;
+	private final StringBuilder scratch = new StringBuilder(256);
+	private ByteBuffer writeBuffer;
+
+	private String lastReport;
+	private boolean fileStale = true;
+
+	/**
+	 * Constructs a generator for the given flights, nothing is formatted until the first report
+	 * @param flights the flights, reported in this order
+	 * @param file where the report is written
+	 */
+	ReportGenerator(Collection<Flight> flights, Path file) {
+		this.file = file;
+		this.flights = flights.toArray(new Flight[0]);
+		this.reportedAt = new long[this.flights.length];
+		this.reports = new String[this.flights.length];
+		this.reportBytes = new byte[this.flights.length][];
+		Arrays.fill(reportedAt, -1);
+	}
+
+	/**
+	 * Adds a flight loaded since the generator was made, reported after the others
+	 * @param flight the flight
+	 */
+	synchronized void addFlight(Flight flight) {
+		int i = flights.length;
+		flights = Arrays.copyOf(flights, i + 1);
+		reportedAt = Arrays.copyOf(reportedAt, i + 1);
+		reports = Arrays.copyOf(reports, i + 1);
+		reportBytes = Arrays.copyOf(reportBytes, i + 1);
+		flights[i] = flight;
+		reportedAt[i] = -1;
+	}
+
+	/**
+	 * Brings the report up to date and writes it to the file if it has changed
+	 * @return the report of every flight, each followed by a blank line
+	 */
+	synchronized String generate() {
+		boolean changed = false;
+		int length = 0;
+		for (int i = 0; i < flights.length; i++) {
+			if (flights[i].getUpdateCount() != reportedAt[i]) {
+				scratch.setLength(0);
+				reportedAt[i] = flights[i].appendReport(scratch);
+				scratch.append('\n');
+				reports[i] = scratch.toString();
+				reportBytes[i] = reports[i].getBytes(StandardCharsets.UTF_8);
+				changed = true;
+			}
+			length += reports[i].length();
+		}
+
+		if (changed || lastReport == null) {
+			StringBuilder report = new StringBuilder(length);
+			for (String flightReport : reports) {
+				report.append(flightReport);
+			}
+			lastReport = report.toString();
+			fileStale = true;
+		}
+		if (fileStale) {
+			fileStale = !writeFile();
+		}
+		return lastReport;
+	}
+
+	/**
+	 * Streams each flight's report into the file through a reused direct buffer
+	 * @return false if the file couldn't be written, it is tried again next time
+	 */
+	private boolean writeFile() {
+		if (writeBuffer == null) {
+			writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+		}
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			writeBuffer.clear();
+			for (byte[] bytes : reportBytes) {
+				int offset = 0;
+				while (offset < bytes.length) {
+					if (!writeBuffer.hasRemaining()) {
+						drain(out);
+					}
+					int n = Math.min(writeBuffer.remaining(), bytes.length - offset);
+					writeBuffer.put(bytes, offset, n);
+					offset += n;
+				}
+			}
+			drain(out);
+			return true;
+		} catch (IOException e) {
+			// As before, failing to write the file doesn't stop the report going to the GUI
+			return false;
+		}
+	}
+
+	private void drain(FileChannel out) throws IOException {
+		writeBuffer.flip();
+		while (writeBuffer.hasRemaining()) {
+			out.write(writeBuffer);
+		}
+		writeBuffer.clear();
+	}
+}
@@ -0,0 +1,68 @@
+package ase1;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import ase1.data.Flight;
+
+/**
+ * The standard fee engine: every flight has an {@link ExcessBaggageTariff}, with each passenger allowed
+ * a share of the flight's maximum baggage volume and weight, scaled down by a safety factor so the flight
+ * keeps some room for passengers who bring more. Carriers can be given a safety factor of their own.
+ * Each flight's tariff is made the first time it is asked for and kept.
+ */
+public class StandardFeeEngine implements FeeEngine {
+	/** The safety factor used when none is given */
+	public static final float DEFAULT_SAFETY_FACTOR = 0.8f;
+
+	private final float safetyFactor;
+	private final ConcurrentHashMap<String, Float> carrierSafetyFactors = new ConcurrentHashMap<String, Float>();
+	// The tariffs made so far, by flight code, replaced with an empty map whenever a safety factor changes
+	private volatile ConcurrentHashMap<String, Tariff> tariffs = new ConcurrentHashMap<String, Tariff>();
+
+	/**
+	 * Constructs a StandardFeeEngine with the default safety factor
+	 */
+	public StandardFeeEngine() {
+		this(DEFAULT_SAFETY_FACTOR);
+	}
+
+	/**
+	 * Constructs a StandardFeeEngine
+	 * @param safetyFactor the share of each passenger's even split of the flight's baggage limits they may bring without paying
+	 */
+	public StandardFeeEngine(float safetyFactor) {
+		this.safetyFactor = safetyFactor;
+	}
+
+	/**
+	 * Gives a carrier a safety factor of its own.
+	 * Tariffs are made again the next time they are asked for, fees already charged are not changed.
+	 * @param carrier the carrier
+	 * @param factor the safety factor for the carrier's flights
+	 */
+	public synchronized void setSafetyFactor(String carrier, float factor) {
+		carrierSafetyFactors.put(carrier, factor);
+		// Dropping every tariff, rather than picking out the carrier's, means a tariff being made
+		// with the old factor at this moment can only end up in the map being thrown away
+		tariffs = new ConcurrentHashMap<String, Tariff>();
+	}
+
+	@Override
+	public Tariff tariffFor(Flight flight) {
+		ConcurrentHashMap<String, Tariff> made = tariffs;
+		Tariff tariff = made.get(flight.getFlightCode());
+		if (tariff == null) {
+			tariff = made.computeIfAbsent(flight.getFlightCode(), code -> makeTariff(flight));
+		}
+		return tariff;
+	}
+
+	private Tariff makeTariff(Flight flight) {
+		float factorOfSafety = carrierSafetyFactors.getOrDefault(flight.getCarrier(), safetyFactor);
+		// Find the maximum baggage allowances for each passenger on that flight, 
+		// take into account some passengers may go beyond the limit!
+		float maxWeight = ( flight.getMaxBaggageWeight() / flight.getPassengerCapacity() )*factorOfSafety;
+		float maxVol = ( flight.getMaxBaggageVolume() / flight.getPassengerCapacity() )*factorOfSafety;
+		return new ExcessBaggageTariff(maxVol, maxWeight, flight.getFeeMultiplier());
+	}
+}
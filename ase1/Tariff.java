@@ -0,0 +1,31 @@
+package ase1;
+
+/**
+ * How one flight prices excess baggage, as worked out by a {@link FeeEngine}.
+ * Everything that depends only on the flight is worked out when the tariff is made,
+ * so pricing a passenger is just the formula itself.
+ */
+public interface Tariff {
+	/**
+	 * Prices one passenger's baggage
+	 * @param vol the volume of the baggage, never negative
+	 * @param weight the weight of the baggage, never negative
+	 * @return the fee due
+	 */
+	float fee(float vol, float weight);
+
+	/**
+	 * Prices many passengers' baggage at once, for example to re-price every check-in when a tariff changes.
+	 * Allocates nothing. As at the desk, negative dimensions and weights are taken as positive.
+	 * @param dimensions the width, height and depth of each passenger's baggage, three to a passenger
+	 * @param weights the weight of each passenger's baggage
+	 * @param fees filled in with the fee due from each passenger
+	 * @param count the number of passengers to price
+	 */
+	default void fees(float[] dimensions, float[] weights, float[] fees, int count) {
+		for (int i = 0; i < count; i++) {
+			int d = i * 3;
+			fees[i] = fee(Math.abs(dimensions[d] * dimensions[d + 1] * dimensions[d + 2]), Math.abs(weights[i]));
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package ase1.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs booking reference codes into ints.
+ * A booking reference is three lower case letters followed by four digits, e.g. "dav0001",
+ * which only has 26*26*26*10000 possible values, so it fits in an int without any collisions.
+ * Codes are packed as the letters read as a base 26 number, followed by the four digits.
+ */
+public final class BookingRefCodec {
+	/** Returned by encode when the code is not a valid booking reference */
+	public static final int INVALID = -1;
+
+	/** The number of characters in a booking reference code */
+	public static final int LENGTH = 7;
+
+	private BookingRefCodec() {
+	}
+
+	/**
+	 * Packs a booking reference code into an int.
+	 * Does not allocate, so it can be used on every lookup.
+	 * @param bookingRefCode the booking reference code, e.g. "dav0001"
+	 * @return the packed code, or INVALID if it doesn't match [a-z]{3}[0-9]{4}
+	 */
+	public static int encode(CharSequence bookingRefCode) {
+		if (bookingRefCode == null || bookingRefCode.length() != LENGTH) {
+			return INVALID;
+		}
+		int code = 0;
+		for (int i = 0; i < 3; i++) {
+			char c = bookingRefCode.charAt(i);
+			if (c < 'a' || c > 'z') {
+				return INVALID;
+			}
+			code = code * 26 + (c - 'a');
+		}
+		for (int i = 3; i < LENGTH; i++) {
+			char c = bookingRefCode.charAt(i);
+			if (c < '0' || c > '9') {
+				return INVALID;
+			}
+			code = code * 10 + (c - '0');
+		}
+		return code;
+	}
+
+	/**
+	 * Packs a booking reference code held as ASCII bytes, such as a field read from a file
+	 * @param buf the bytes
+	 * @param offset where the code starts
+	 * @param length how many bytes long the code is
+	 * @return the packed code, or INVALID if it doesn't match [a-z]{3}[0-9]{4}
+	 */
+	public static int encode(ByteBuffer buf, int offset, int length) {
+		if (length != LENGTH) {
+			return INVALID;
+		}
+		int code = 0;
+		for (int i = 0; i < 3; i++) {
+			int c = buf.get(offset + i);
+			if (c < 'a' || c > 'z') {
+				return INVALID;
+			}
+			code = code * 26 + (c - 'a');
+		}
+		for (int i = 3; i < LENGTH; i++) {
+			int c = buf.get(offset + i);
+			if (c < '0' || c > '9') {
+				return INVALID;
+			}
+			code = code * 10 + (c - '0');
+		}
+		return code;
+	}
+
+	/**
+	 * checks a booking reference code is in the right format
+	 * @param bookingRefCode the booking reference code
+	 * @return true if it matches [a-z]{3}[0-9]{4}
+	 */
+	public static boolean isValid(CharSequence bookingRefCode) {
+		return encode(bookingRefCode) != INVALID;
+	}
+
+	/**
+	 * Unpacks an int made by encode back into the booking reference code
+	 * @param code the packed code
+	 * @return the booking reference code
+	 */
+	public static String decode(int code) {
+		char[] chars = new char[LENGTH];
+		for (int i = LENGTH - 1; i >= 3; i--) {
+			chars[i] = (char) ('0' + code % 10);
+			code /= 10;
+		}
+		for (int i = 2; i >= 0; i--) {
+			chars[i] = (char) ('a' + code % 26);
+			code /= 26;
+		}
+		return new String(chars);
+	}
+}
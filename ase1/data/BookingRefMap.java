@@ -0,0 +1,253 @@
+package ase1.data;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Open addressing hash map from packed booking reference codes to {@link Passenger}s, where a
+ * {@link PassengerList} keeps its passengers unless they are kept off the heap.
+ * Keys are the ints made by {@link BookingRefCodec}, kept in a plain int array next to the passengers,
+ * so a lookup never hashes a String, boxes a key or allocates, and each passenger costs two array
+ * slots rather than a HashMap node.
+ *
+ * Lookups don't lock. Adding and removing are synchronized on the map, they only happen when loading
+ * or changing bookings, check-in itself only changes the state held in the passenger.
+ * A removed passenger leaves a tombstone, and a slot is only ever reused for the same key,
+ * so a reader can never see a key paired with another passenger.
+ */
+class BookingRefMap implements PassengerIndex {
+	private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Passenger[].class);
+
+	// Marks a slot whose passenger has been removed, keeps the probe chain through it unbroken
+	private static final Passenger TOMBSTONE = new Passenger("aaa0000", null, null, null);
+
+	private static final int MIN_CAPACITY = 16;
+
+	/**
+	 * The arrays of a map, replaced as a whole when the map grows,
+	 * so a reader always sees keys and values of the same size.
+	 * Keys are stored as the packed code plus one, so that zero marks an empty slot.
+	 */
+	private static final class Table {
+		final int[] keys;
+		final Passenger[] values;
+		final int mask;
+
+		Table(int capacity) {
+			keys = new int[capacity];
+			values = new Passenger[capacity];
+			mask = capacity - 1;
+		}
+	}
+
+	private volatile Table table;
+	private int size;
+	private int used; // slots holding either a passenger or a tombstone
+
+	BookingRefMap() {
+		this(0);
+	}
+
+	/**
+	 * Constructs a map with room for the given number of passengers before it has to grow
+	 * @param expectedSize the number of passengers expected
+	 */
+	BookingRefMap(int expectedSize) {
+		table = new Table(capacityFor(expectedSize));
+	}
+
+	/**
+	 * finds the passenger for a packed booking reference code
+	 * @param code the packed code
+	 * @return the passenger, or null if there isn't one
+	 */
+	@Override
+	public Passenger get(int code) {
+		if (code == BookingRefCodec.INVALID) {
+			return null;
+		}
+		int key = code + 1;
+		Table t = table;
+		for (int i = hash(key) & t.mask; ; i = (i + 1) & t.mask) {
+			int k = t.keys[i];
+			if (k == key) {
+				// null if the passenger is still being added, which counts as not there yet
+				Passenger value = (Passenger) VALUES.getAcquire(t.values, i);
+				return value == TOMBSTONE ? null : value;
+			}
+			if (k == 0) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * finds the passenger for a booking reference code
+	 * @param bookingRefCode the booking reference code
+	 * @return the passenger, or null if there isn't one
+	 */
+	@Override
+	public Passenger get(Object bookingRefCode) {
+		return (bookingRefCode instanceof CharSequence) ? get(BookingRefCodec.encode((CharSequence) bookingRefCode)) : null;
+	}
+
+	/**
+	 * Adds a passenger, unless there is already one with the same key.
+	 * The passenger's check-in state is only set once it is known they can be added,
+	 * and before anyone else can see them.
+	 * @param code the packed booking reference code
+	 * @param passenger the passenger to add
+	 * @param state the check-in state to add them with
+	 * @return the passenger already in the map, or null if this one was added
+	 */
+	@Override
+	public synchronized Passenger putIfAbsent(int code, Passenger passenger, int state) {
+		int key = code + 1;
+		Table t = table;
+		int i = hash(key) & t.mask;
+		int k;
+		while ((k = t.keys[i]) != 0) {
+			if (k == key) {
+				Passenger current = t.values[i];
+				if (current != TOMBSTONE) {
+					return current;
+				}
+				// A tombstone for the same key can be reused, readers would see the same key either way
+				passenger.setCheckInState(state);
+				VALUES.setRelease(t.values, i, passenger);
+				size++;
+				return null;
+			}
+			i = (i + 1) & t.mask;
+		}
+		passenger.setCheckInState(state);
+		t.keys[i] = key;
+		VALUES.setRelease(t.values, i, passenger);
+		size++;
+		if (++used > maxUsed(t)) {
+			resize(capacityFor(size));
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the passenger for a key, only if it is the given passenger
+	 * @param code the packed booking reference code
+	 * @param passenger the passenger expected to be in the map
+	 * @return true if the passenger was removed
+	 */
+	@Override
+	public synchronized boolean remove(int code, Passenger passenger) {
+		int key = code + 1;
+		Table t = table;
+		int k;
+		for (int i = hash(key) & t.mask; (k = t.keys[i]) != 0; i = (i + 1) & t.mask) {
+			if (k == key) {
+				if (t.values[i] != passenger) {
+					return false;
+				}
+				VALUES.setRelease(t.values, i, TOMBSTONE);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * returns the number of passengers in the map
+	 * @return the number of passengers
+	 */
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Iterates over the passengers, skipping removed ones.
+	 * Never fails when the map changes, passengers added while iterating may or may not be seen.
+	 */
+	@Override
+	public Iterator<Passenger> iterator() {
+		final Table t = table;
+		return new Iterator<Passenger>() {
+			private int index = -1;
+			private Passenger next = advance();
+
+			private Passenger advance() {
+				while (++index < t.values.length) {
+					Passenger value = (Passenger) VALUES.getAcquire(t.values, index);
+					if (value != null && value != TOMBSTONE) {
+						return value;
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Passenger next() {
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				Passenger value = next;
+				next = advance();
+				return value;
+			}
+		};
+	}
+
+	/**
+	 * Copies the live passengers into new arrays, dropping tombstones, then publishes them.
+	 * @param capacity the capacity of the new arrays
+	 */
+	private void resize(int capacity) {
+		Table old = table;
+		Table t = new Table(capacity);
+		for (int j = 0; j < old.values.length; j++) {
+			Passenger value = old.values[j];
+			if (value != null && value != TOMBSTONE) {
+				int i = hash(old.keys[j]) & t.mask;
+				while (t.keys[i] != 0) {
+					i = (i + 1) & t.mask;
+				}
+				t.keys[i] = old.keys[j];
+				t.values[i] = value;
+			}
+		}
+		used = size;
+		table = t; // volatile write publishes the filled arrays
+	}
+
+	/**
+	 * The most slots that can be used before growing, keeps the table at most 75% full
+	 */
+	private static int maxUsed(Table t) {
+		return (int) ((t.mask + 1L) * 3 / 4);
+	}
+
+	/**
+	 * The power of two capacity that holds a number of passengers below the maximum load
+	 */
+	private static int capacityFor(int expectedSize) {
+		long wanted = Math.max(MIN_CAPACITY, (long) expectedSize * 4 / 3 + 1);
+		if (wanted >= (1 << 30)) {
+			return 1 << 30;
+		}
+		return Integer.highestOneBit((int) wanted - 1) << 1;
+	}
+
+	/**
+	 * Spreads the packed codes, which are sequential for similar booking references, across the table
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
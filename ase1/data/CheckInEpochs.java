@@ -0,0 +1,375 @@
+package ase1.data;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Numbers views in epochs, so readers such as dashboards can take a {@link CheckInView} of every
+ * flight's totals and every passenger's check-in at one moment, without ever holding desks up.
+ *
+ * Each desk thread records its check-ins, once they are done, in a log of its own, with plain stores
+ * then a release store of how many it has written: no lock, and no atomic instruction to wait for the
+ * check-in's cache misses. Taking a view starts the next epoch, adds every check-in logged since the
+ * last view to the totals kept for views, stamps each of those passengers with the epoch, and
+ * publishes a new immutable view. A check-in is either wholly logged or not logged at all, so a view
+ * never has half of one, and everything a view shows comes from the same set of check-ins, so its
+ * figures always agree with each other. So logs don't grow without end when nobody takes views, a desk
+ * that has filled a few chunks of its log adds what it has logged to the totals itself, but only if no
+ * view is being taken at the time, the next view is then published with them. A desk never adds what other
+ * desks have logged, that is left to them and to whoever takes views. A thread recording its first check-in
+ * takes over the log of a thread that has finished, if there is one, so however many threads come and go
+ * there are never more logs than threads that have checked in at once.
+ *
+ * Only the check-ins recorded here are in views. Passengers loaded already checked in, and the totals
+ * they were loaded with, are where every view starts from. Flights and bookings added later, from lines
+ * appended to the files, are added to the totals while views wait, so they are in the next view.
+ */
+public final class CheckInEpochs {
+	/** The epoch of everything loaded before any check-in was recorded */
+	static final int BASE = 1;
+	private static final int CHUNK_SIZE = 1024;
+	// How many chunks a desk fills between adding what has been logged to the totals itself
+	private static final int CHUNKS_PER_CATCH_UP = 4;
+
+	private final PassengerList passengers;
+	// Only touched while holding the lock, like the totals
+	private final Map<Flight, Integer> flightIndex = new IdentityHashMap<Flight, Integer>();
+	// Replaced rather than changed when a flight is added, as views keep the one they were published with
+	private Map<String, Integer> codeIndex = new HashMap<String, Integer>();
+
+	private final ThreadLocal<Log> log = ThreadLocal.withInitial(this::newLog);
+	private final List<Log> logs = new ArrayList<Log>(); // guarded by itself, not the lock, so no desk waits for a view
+
+	private final ReentrantLock lock = new ReentrantLock();
+	// The totals as of the latest view, and check-ins added since, only touched while holding the lock
+	private int[] checkedIn;
+	private int[] toCheckIn;
+	private long[] volume;
+	private long[] weight;
+	private long[] fees;
+	private long[] updates;
+	private int numCheckedIn;
+	private int numToCheckIn;
+	private int epoch = BASE;
+	private boolean caughtUp; // check-ins, bookings or flights have been added since the latest view was published
+
+	private volatile CheckInView latest;
+
+	/**
+	 * One thread's check-ins, written only by that thread and read only by whoever is taking a view
+	 */
+	private static final class Log {
+		// replaced, while holding logs, when another thread takes the log over
+		volatile WeakReference<Thread> owner = new WeakReference<Thread>(Thread.currentThread());
+		Chunk writing; // the owner's
+		int filled; // the owner's, the number of chunks filled
+		Chunk reading; // the view taker's, the first chunk with check-ins not yet in a view
+		int read;
+
+		Log() {
+			writing = reading = new Chunk();
+		}
+
+		boolean isFinished() {
+			return isFinished(owner);
+		}
+
+		static boolean isFinished(WeakReference<Thread> owner) {
+			Thread thread = owner.get();
+			return thread == null || !thread.isAlive();
+		}
+	}
+
+	/**
+	 * A run of check-ins, each a passenger and the volume, weight and fee of their check-in
+	 */
+	private static final class Chunk {
+		final Passenger[] passengers = new Passenger[CHUNK_SIZE];
+		final float[] values = new float[CHUNK_SIZE * 3];
+		final AtomicInteger written = new AtomicInteger(); // how many are complete, set with release once each is
+		volatile Chunk next; // set by the owner once this one is full
+
+		void add(Passenger passenger, float vol, float weight, float fee) {
+			int i = written.getPlain();
+			passengers[i] = passenger;
+			values[i * 3] = vol;
+			values[i * 3 + 1] = weight;
+			values[i * 3 + 2] = fee;
+			written.setRelease(i + 1);
+		}
+	}
+
+	/**
+	 * Constructs a CheckInEpochs, starting from the flights and passengers as they are now.
+	 * Nothing should be checking in while it is made.
+	 * @param flights the flights
+	 * @param passengers the passengers booked on them
+	 */
+	public CheckInEpochs(FlightList flights, PassengerList passengers) {
+		this.passengers = passengers;
+		Collection<Flight> all = flights.getValues();
+		checkedIn = new int[all.size()];
+		toCheckIn = new int[all.size()];
+		volume = new long[all.size()];
+		weight = new long[all.size()];
+		fees = new long[all.size()];
+		updates = new long[all.size()];
+		int i = 0;
+		for (Flight flight : all) {
+			FlightTotals totals = flight.getTotals();
+			flightIndex.put(flight, i);
+			codeIndex.put(flight.getFlightCode(), i);
+			checkedIn[i] = totals.getPassengers();
+			toCheckIn[i] = flight.getManifest().getNumToCheckIn();
+			volume[i] = totals.getVolumeFixed();
+			weight[i] = totals.getWeightFixed();
+			fees[i] = totals.getFeesFixed();
+			updates[i] = totals.getUpdateCount();
+			i++;
+		}
+		numCheckedIn = passengers.getNumCheckedIn();
+		numToCheckIn = passengers.getNumToCheckIn();
+		latest = publish();
+	}
+
+	/**
+	 * Gives a thread recording for the first time a log, taking over that of a finished thread if there is one.
+	 * The finished thread wrote nothing more once it ended, and everything it wrote is seen once it is seen to
+	 * have ended, so the new owner carries on where it left off, and what it left is still read by the next view.
+	 */
+	private Log newLog() {
+		synchronized (logs) {
+			for (Log theLog : logs) {
+				if (theLog.isFinished()) {
+					theLog.owner = new WeakReference<Thread>(Thread.currentThread());
+					return theLog;
+				}
+			}
+			Log theLog = new Log();
+			logs.add(theLog);
+			return theLog;
+		}
+	}
+
+	/**
+	 * Records a check-in, once the passenger is checked in and their flight's totals are updated
+	 * @param passenger the passenger checked in
+	 * @param vol the volume of their baggage
+	 * @param weight the weight of their baggage
+	 * @param fee the fee they paid
+	 */
+	public void record(Passenger passenger, float vol, float weight, float fee) {
+		Log theLog = log.get();
+		Chunk chunk = theLog.writing;
+		if (chunk.written.getPlain() == CHUNK_SIZE) {
+			chunk = new Chunk();
+			theLog.writing.next = chunk;
+			theLog.writing = chunk;
+			if (++theLog.filled % CHUNKS_PER_CATCH_UP == 0) {
+				catchUp(theLog);
+			}
+		}
+		chunk.add(passenger, vol, weight, fee);
+	}
+
+	/**
+	 * Adds what a desk has logged so far to the totals, unless a view is being taken, which will do it
+	 * @param theLog the desk's own log, never another's, so a desk only ever does its own share
+	 */
+	private void catchUp(Log theLog) {
+		if (lock.tryLock()) {
+			try {
+				caughtUp |= drain(theLog, epoch + 1);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Adds a flight loaded since the epochs were made, in the next view
+	 * @param flight the flight, with nobody booked on it yet
+	 */
+	public void addFlight(Flight flight) {
+		lock.lock();
+		try {
+			if (flightIndex.containsKey(flight)) {
+				return;
+			}
+			int i = checkedIn.length;
+			checkedIn = Arrays.copyOf(checkedIn, i + 1);
+			toCheckIn = Arrays.copyOf(toCheckIn, i + 1);
+			volume = Arrays.copyOf(volume, i + 1);
+			weight = Arrays.copyOf(weight, i + 1);
+			fees = Arrays.copyOf(fees, i + 1);
+			updates = Arrays.copyOf(updates, i + 1);
+			flightIndex.put(flight, i);
+			Map<String, Integer> codes = new HashMap<String, Integer>(codeIndex);
+			codes.put(flight.getFlightCode(), i);
+			codeIndex = codes;
+			caughtUp = true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Holds views off while passengers booked since the epochs were made are added, see {@link #booked}.
+	 * Desks carry on checking in. Must be followed by {@link #endBookings()}.
+	 * @return the epoch of the next view, the first a passenger booked already checked in is checked in for
+	 */
+	int beginBookings() {
+		lock.lock();
+		return epoch + 1;
+	}
+
+	/**
+	 * Adds a passenger booked since the epochs were made to the totals, in the next view.
+	 * Only between beginBookings and endBookings, once they are in the passenger list.
+	 * @param passenger the passenger
+	 * @param isCheckedIn whether they were booked already checked in
+	 */
+	void booked(Passenger passenger, boolean isCheckedIn) {
+		Integer i = passenger.getFlight() == null ? null : flightIndex.get(passenger.getFlight());
+		if (isCheckedIn) {
+			if (i != null) {
+				checkedIn[i]++;
+				updates[i]++; // as their flight's totals counted them, with no baggage
+			}
+			numCheckedIn++;
+		} else {
+			if (i != null) {
+				toCheckIn[i]++;
+			}
+			numToCheckIn++;
+		}
+		caughtUp = true;
+	}
+
+	/**
+	 * Lets views be taken again after adding bookings
+	 */
+	void endBookings() {
+		lock.unlock();
+	}
+
+	/**
+	 * Records a batch of check-ins, as if recorded one at a time
+	 * @param checkedIn the passengers checked in
+	 * @param vols the volume of each passenger's baggage
+	 * @param weights the weight of each passenger's baggage
+	 * @param fees the fee each passenger paid
+	 * @param from the first passenger in the arrays to record
+	 * @param to one past the last passenger to record
+	 */
+	public void record(Passenger[] checkedIn, float[] vols, float[] weights, float[] fees, int from, int to) {
+		for (int i = from; i < to; i++) {
+			record(checkedIn[i], vols[i], weights[i], fees[i]);
+		}
+	}
+
+	/**
+	 * Takes a view of every check-in recorded up to now.
+	 * Desks carry on checking in throughout, a view being taken by another reader is waited for.
+	 * @return the view
+	 */
+	public CheckInView view() {
+		lock.lock();
+		try {
+			// check-ins already added by a desk catching up were stamped with the next epoch too
+			int next = epoch + 1;
+			if (drainAll(next) | caughtUp) {
+				caughtUp = false;
+				epoch = next;
+				latest = publish();
+			}
+			return latest;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the check-ins logged since they were last drained to the totals, only while holding the lock
+	 * @return true if there were any
+	 */
+	private boolean drainAll(int next) {
+		Log[] all;
+		synchronized (logs) {
+			all = logs.toArray(new Log[0]);
+		}
+		boolean any = false;
+		for (Log theLog : all) {
+			// once its thread has finished, nothing more will be logged, so the log can go once read,
+			// unless another thread has taken it over meanwhile
+			WeakReference<Thread> owner = theLog.owner;
+			boolean finished = Log.isFinished(owner);
+			any |= drain(theLog, next);
+			if (finished) {
+				synchronized (logs) {
+					if (theLog.owner == owner) {
+						logs.remove(theLog);
+					}
+				}
+			}
+		}
+		return any;
+	}
+
+	/**
+	 * Adds the check-ins logged since the log was last drained to the totals kept for views
+	 * @return true if there were any
+	 */
+	private boolean drain(Log theLog, int next) {
+		boolean any = false;
+		Chunk chunk = theLog.reading;
+		int i = theLog.read;
+		while (true) {
+			int written = chunk.written.getAcquire();
+			for (; i < written; i++) {
+				apply(chunk.passengers[i], chunk.values[i * 3], chunk.values[i * 3 + 1], chunk.values[i * 3 + 2], next);
+				any = true;
+			}
+			Chunk following = chunk.next;
+			if (i < CHUNK_SIZE || following == null) {
+				break;
+			}
+			chunk = following; // the full chunk is no longer needed
+			i = 0;
+		}
+		theLog.reading = chunk;
+		theLog.read = i;
+		return any;
+	}
+
+	/**
+	 * Adds a recorded check-in to the totals kept for views
+	 */
+	private void apply(Passenger passenger, float vol, float weight, float fee, int next) {
+		Integer i = passenger.getFlight() == null ? null : flightIndex.get(passenger.getFlight());
+		if (i != null) {
+			checkedIn[i]++;
+			toCheckIn[i]--;
+			volume[i] += FlightTotals.toFixed(vol);
+			this.weight[i] += FlightTotals.toFixed(weight);
+			fees[i] += FlightTotals.toFixed(fee);
+			updates[i]++;
+		}
+		numCheckedIn++;
+		numToCheckIn--;
+		passenger.setViewEpoch(next);
+	}
+
+	private CheckInView publish() {
+		return new CheckInView(epoch, passengers, codeIndex, checkedIn.clone(), toCheckIn.clone(), volume.clone(),
+				weight.clone(), fees.clone(), updates.clone(), numCheckedIn, numToCheckIn);
+	}
+}
@@ -0,0 +1,116 @@
+package ase1.data;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Every flight's totals and every passenger's check-in at one moment, taken by {@link CheckInEpochs#view()}.
+ * A check-in is either wholly in the view, in its flight's totals, the counts and the passenger's
+ * check-in, or not in it at all, so the figures always agree with each other. The view never changes
+ * once taken, and reading it never holds desks up, with one exception: removing a passenger from the
+ * {@link PassengerList} isn't recorded in epochs, so the counts and totals of every view go on including them,
+ * but {@link #isCheckedIn(String)} answers false for them from the moment they are removed, in views taken before too.
+ */
+public final class CheckInView {
+	private final int epoch;
+	private final PassengerList passengers;
+	private final Map<String, Integer> codeIndex;
+	private final int[] checkedIn;
+	private final int[] toCheckIn;
+	private final long[] volume;
+	private final long[] weight;
+	private final long[] fees;
+	private final long[] updates;
+	private final int numCheckedIn;
+	private final int numToCheckIn;
+
+	CheckInView(int epoch, PassengerList passengers, Map<String, Integer> codeIndex, int[] checkedIn, int[] toCheckIn,
+			long[] volume, long[] weight, long[] fees, long[] updates, int numCheckedIn, int numToCheckIn) {
+		this.epoch = epoch;
+		this.passengers = passengers;
+		this.codeIndex = codeIndex;
+		this.checkedIn = checkedIn;
+		this.toCheckIn = toCheckIn;
+		this.volume = volume;
+		this.weight = weight;
+		this.fees = fees;
+		this.updates = updates;
+		this.numCheckedIn = numCheckedIn;
+		this.numToCheckIn = numToCheckIn;
+	}
+
+	/**
+	 * returns the epoch the view was taken at, later views have higher epochs
+	 * @return the epoch
+	 */
+	public int getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * returns the codes of the flights in the view
+	 * @return the flight codes, in no particular order
+	 */
+	public Set<String> getFlightCodes() {
+		return Collections.unmodifiableSet(codeIndex.keySet());
+	}
+
+	/**
+	 * returns a flight's totals as of the view
+	 * @param flightCode the flight
+	 * @return the totals, or null if there is no such flight
+	 */
+	public FlightTotals getTotals(String flightCode) {
+		Integer i = codeIndex.get(flightCode);
+		return i == null ? null : new FlightTotals(checkedIn[i], volume[i], weight[i], fees[i], updates[i]);
+	}
+
+	/**
+	 * returns the number of passengers on a flight still to check in as of the view
+	 * @param flightCode the flight
+	 * @return the number still to check in, or 0 if there is no such flight
+	 */
+	public int getNumToCheckIn(String flightCode) {
+		Integer i = codeIndex.get(flightCode);
+		return i == null ? 0 : toCheckIn[i];
+	}
+
+	/**
+	 * returns the number of passengers checked in as of the view
+	 * @return the number checked in
+	 */
+	public int getNumCheckedIn() {
+		return numCheckedIn;
+	}
+
+	/**
+	 * returns the number of passengers still to check in as of the view
+	 * @return the number still to check in
+	 */
+	public int getNumToCheckIn() {
+		return numToCheckIn;
+	}
+
+	/**
+	 * returns whether a passenger had checked in as of the view. Looks the passenger up as they are now,
+	 * so a passenger removed since the view was taken is answered for as if they had never been booked
+	 * @param bookingRefCode the passenger's booking reference
+	 * @return true if they had, false if they hadn't or there is no such passenger now
+	 */
+	public boolean isCheckedIn(String bookingRefCode) {
+		Passenger passenger = passengers.find(bookingRefCode);
+		return passenger != null && passenger.isCheckedIn() && includes(passenger);
+	}
+
+	/**
+	 * returns whether a passenger's check-in is in the view, for a passenger who has checked in
+	 * @param passenger the passenger
+	 * @return true if their check-in is in the view's totals and counts
+	 */
+	boolean includes(Passenger passenger) {
+		// stamped with the epoch of the first view to include the check-in, 0 until then
+		int checkedInAt = passenger.getViewEpoch();
+		return checkedInAt != 0 && checkedInAt <= epoch;
+	}
+}
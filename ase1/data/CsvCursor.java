@@ -0,0 +1,211 @@
+package ase1.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Walks the lines and comma separated fields of a chunk of a text file, straight from the bytes.
+ * One cursor is used for a whole chunk, moving along it line by line, so nothing is allocated
+ * per line unless a field is asked for as a String.
+ */
+final class CsvCursor {
+	private final ByteBuffer buf;
+	private final int limit;
+	private byte[] scratch = new byte[64];
+
+	private int pos;		// start of the next line
+	private int lineEnd;	// end of the current line, without the line break
+	private int fieldStart;
+	private int fieldEnd;
+
+	/**
+	 * Constructs a cursor at the start of a chunk
+	 * @param buf the chunk, from position 0 to its limit
+	 */
+	CsvCursor(ByteBuffer buf) {
+		this.buf = buf;
+		this.limit = buf.limit();
+	}
+
+	/**
+	 * Moves on to the next line that isn't blank
+	 * @return false if there are no lines left
+	 */
+	boolean nextLine() {
+		while (pos < limit) {
+			int end = pos;
+			while (end < limit && buf.get(end) != '\n') {
+				end++;
+			}
+			int start = pos;
+			pos = end + 1;
+			if (end > start && buf.get(end - 1) == '\r') {
+				end--;
+			}
+			if (end > start) {
+				lineEnd = end;
+				fieldStart = start;
+				fieldEnd = start - 1; // nextField starts from just after here
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Moves on to the next field in the line, a missing field is treated as empty
+	 * @return this cursor, so the field can be read straight away
+	 */
+	CsvCursor nextField() {
+		int start = Math.min(fieldEnd + 1, lineEnd);
+		int end = start;
+		while (end < lineEnd && buf.get(end) != ',') {
+			end++;
+		}
+		fieldStart = start;
+		fieldEnd = end;
+		return this;
+	}
+
+	/**
+	 * returns the current field as a String
+	 * @return the field
+	 */
+	String asString() {
+		int length = fieldEnd - fieldStart;
+		if (scratch.length < length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+		for (int i = 0; i < length; i++) {
+			scratch[i] = buf.get(fieldStart + i);
+		}
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Packs the current field as a booking reference code, see {@link BookingRefCodec}
+	 * @return the packed code, or BookingRefCodec.INVALID if it isn't a valid booking reference
+	 */
+	int asBookingRef() {
+		return BookingRefCodec.encode(buf, fieldStart, fieldEnd - fieldStart);
+	}
+
+	/**
+	 * Hashes the bytes of the current field, the same way as {@link #hash(byte[])}
+	 * @return the hash
+	 */
+	int fieldHash() {
+		int h = 0;
+		for (int i = fieldStart; i < fieldEnd; i++) {
+			h = 31 * h + buf.get(i);
+		}
+		return h;
+	}
+
+	/**
+	 * Hashes some bytes, so they can be matched against a field with {@link #fieldHash()}
+	 * @param bytes the bytes
+	 * @return the hash
+	 */
+	static int hash(byte[] bytes) {
+		int h = 0;
+		for (byte b : bytes) {
+			h = 31 * h + b;
+		}
+		return h;
+	}
+
+	/**
+	 * Compares the current field to some bytes
+	 * @param bytes the bytes to compare against
+	 * @return true if the field holds exactly these bytes
+	 */
+	boolean fieldEquals(byte[] bytes) {
+		if (fieldEnd - fieldStart != bytes.length) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (buf.get(fieldStart + i) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the current field as a boolean, the same way as Boolean.parseBoolean
+	 * @return true if the field is "true", ignoring case
+	 */
+	boolean asBoolean() {
+		if (fieldEnd - fieldStart != 4) {
+			return false;
+		}
+		return (buf.get(fieldStart) | 0x20) == 't' && (buf.get(fieldStart + 1) | 0x20) == 'r'
+				&& (buf.get(fieldStart + 2) | 0x20) == 'u' && (buf.get(fieldStart + 3) | 0x20) == 'e';
+	}
+
+	/**
+	 * Reads the current field as an int
+	 * @return the value
+	 * @throws NumberFormatException if the field isn't a whole number
+	 */
+	int asInt() {
+		int i = fieldStart;
+		boolean negative = i < fieldEnd && buf.get(i) == '-';
+		if (negative || (i < fieldEnd && buf.get(i) == '+')) {
+			i++;
+		}
+		if (i == fieldEnd || fieldEnd - i > 9) {
+			return Integer.parseInt(asString()); // empty or too long to be sure of, let parseInt decide
+		}
+		int value = 0;
+		for (; i < fieldEnd; i++) {
+			int c = buf.get(i) - '0';
+			if (c < 0 || c > 9) {
+				return Integer.parseInt(asString());
+			}
+			value = value * 10 + c;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Reads the current field as a float.
+	 * Plain decimals with up to seven digits are worked out directly, both the digits and the power of ten
+	 * are exact as floats so one division gives the same rounding as Float.parseFloat.
+	 * Anything else is handed to Float.parseFloat.
+	 * @return the value
+	 * @throws NumberFormatException if the field isn't a number
+	 */
+	float asFloat() {
+		int i = fieldStart;
+		boolean negative = i < fieldEnd && buf.get(i) == '-';
+		if (negative) {
+			i++;
+		}
+		int mantissa = 0;
+		int digits = 0;
+		int decimals = -1;
+		for (; i < fieldEnd; i++) {
+			int c = buf.get(i);
+			if (c == '.' && decimals < 0) {
+				decimals = 0;
+			} else if (c >= '0' && c <= '9' && digits < 7) {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (decimals >= 0) {
+					decimals++;
+				}
+			} else {
+				return Float.parseFloat(asString());
+			}
+		}
+		if (digits == 0) {
+			return Float.parseFloat(asString());
+		}
+		float value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+		return negative ? -value : value;
+	}
+
+	private static final float[] POWERS_OF_TEN = { 1f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f };
+}
@@ -1,23 +1,61 @@
 package ase1.data;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A flight and the running totals of the passengers and baggage checked in to it.
+ * The description and limits never change. The totals are one immutable {@link FlightTotals}, with baggage and fees
+ * in fixed point, that desks replace with a compare and set, so they update them without ever taking a lock,
+ * readers get every total from the same moment in a single read,
+ * and {@link #tryAddPassengerAndBaggage} can turn a passenger away when the flight is full
+ * or over its baggage limits, at the moment they check in, which the handler does when limits are enforced.
+ * Every change to the totals is also added to the {@link FlightRollup}s of the flight's carrier and destination.
+ */
 public class Flight {
+	/**
+	 * The outcome of trying to add a passenger and their baggage to a flight
+	 */
+	public enum Admission {
+		/** The passenger and baggage were added */
+		ADMITTED,
+		/** Every seat is taken, nothing was added */
+		FLIGHT_FULL,
+		/** The baggage would take the flight over its maximum weight, nothing was added */
+		OVER_WEIGHT,
+		/** The baggage would take the flight over its maximum volume, nothing was added */
+		OVER_VOLUME
+	}
+
 	//flight description
-	private String flightCode;
-	private String destination;
-	private String carrier;
+	private final String flightCode;
+	private final String destination;
+	private final String carrier;
 	
 	//limits per passengers
-	private float maxBaggageVolume;
-	private float maxBaggageWeight;
-	private float feeMultiplier;
+	private final float maxBaggageVolume;
+	private final float maxBaggageWeight;
+	private final float feeMultiplier;
+	
+	//limits in fixed point, to compare against the totals
+	private final long maxBaggageVolumeFixed;
+	private final long maxBaggageWeightFixed;
 	
-	//passengers/volume/weight up to date
-	private int   currentTotalPassengers;
-	private float currentTotalBaggageVolume;
-	private float currentTotalBaggageWeight;
-	private float currentTotalFees;
+	//passengers/volume/weight/fees up to date, volume/weight/fees in fixed point, and the number of updates,
+	//all replaced together so no reader ever sees an update half done
+	private final AtomicReference<FlightTotals> totals = new AtomicReference<FlightTotals>(new FlightTotals(0, 0, 0, 0, 0));
 	
 	//total limits in the aircraft
-	private int passengerCapacity; 
+	private final int passengerCapacity; 
+	
+	//the rollups of the carrier and destination, set by the FlightList before desks can reach the flight
+	private FlightRollup carrierRollup;
+	private FlightRollup destinationRollup;
+	//set the first time the totals go over a limit, so the flight is only counted over its limits once
+	private final AtomicBoolean overLimits = new AtomicBoolean();
+	
+	//the passengers booked on the flight, kept by the PassengerList
+	private final FlightManifest manifest = new FlightManifest();
 	
 	/**
 	 * Constructs a Flight object
@@ -40,11 +78,8 @@ public class Flight {
 		this.maxBaggageVolume = maxVol;
 		this.maxBaggageWeight = maxWeight;
 		this.feeMultiplier = feeMultiplier;
-
-		this.currentTotalPassengers = 0;
-		this.currentTotalBaggageVolume = 0;
-		this.currentTotalBaggageWeight = 0;
-		this.currentTotalFees = 0;
+		this.maxBaggageVolumeFixed = FlightTotals.toFixed(maxVol);
+		this.maxBaggageWeightFixed = FlightTotals.toFixed(maxWeight);
 	}
 	
 	/**
@@ -103,20 +138,259 @@ public class Flight {
 		return feeMultiplier;
 	}
 	
+	/**
+	 * returns the manifest of passengers booked on the flight
+	 * @return the manifest
+	 */
+	public FlightManifest getManifest() {
+		return manifest;
+	}
+
+	/**
+	 * returns the number of passengers checked in
+	 * @return the number of passengers checked in
+	 */
+	public int getCurrentTotalPassengers() {
+		return totals.get().getPassengers();
+	}
+
+	/**
+	 * returns the total volume of baggage checked in
+	 * @return the total baggage volume
+	 */
+	public float getCurrentTotalBaggageVolume() {
+		return totals.get().getVolume();
+	}
+
+	/**
+	 * returns the total weight of baggage checked in
+	 * @return the total baggage weight
+	 */
+	public float getCurrentTotalBaggageWeight() {
+		return totals.get().getWeight();
+	}
+
+	/**
+	 * returns the total excess baggage fees taken
+	 * @return the total fees
+	 */
+	public float getCurrentTotalFees() {
+		return totals.get().getFees();
+	}
+	
+	/**
+	 * Reads all the running totals together, so they agree with each other.
+	 * A single read, it never waits for desks however busy the flight is, and desks never wait for it.
+	 * @return the totals
+	 */
+	public FlightTotals getTotals() {
+		return totals.get();
+	}
+	
+	/**
+	 * sets the running totals, used when restoring a flight from a snapshot
+	 * @param passengers the number of passengers checked in
+	 * @param vol the total baggage volume, in fixed point
+	 * @param weight the total baggage weight, in fixed point
+	 * @param fees the total fees, in fixed point
+	 */
+	void restoreTotals(int passengers, long vol, long weight, long fees) {
+		FlightTotals current;
+		do {
+			current = totals.get();
+		} while (!totals.compareAndSet(current, new FlightTotals(passengers, vol, weight, fees, current.getUpdateCount() + 1)));
+	}
+	
+	/**
+	 * adds the flight, and the totals it has so far, to its carrier's and destination's rollups,
+	 * before desks can reach it
+	 * @param carrier the carrier's rollup
+	 * @param destination the destination's rollup
+	 */
+	void rollUpInto(FlightRollup carrier, FlightRollup destination) {
+		FlightTotals totals = getTotals();
+		boolean over = isOverLimits(totals.getPassengers(), totals.getVolumeFixed(), totals.getWeightFixed());
+		if (over) {
+			overLimits.set(true);
+		}
+		carrier.addFlight(totals, over);
+		destination.addFlight(totals, over);
+		this.carrierRollup = carrier;
+		this.destinationRollup = destination;
+	}
+	
 	/**
 	 * adds an item of baggage to the Flight
+	 * always adds, even if it takes the flight over its limits, which then shows in the report
 	 * @param vol the volume of the baggage
 	 * @param weight the weight of the baggage
 	 * @param fee any excess baggage fees incurred
 	 */
 	public void addPassengerAndBaggage(float vol, float weight,float fee) {
-		//update weight and vol with this passenger's data
-		this.currentTotalBaggageWeight+=weight;
-		this.currentTotalBaggageVolume+=vol;
-		this.currentTotalFees+=fee;
-		
-		//add a passenger to the current count
-		this.currentTotalPassengers++;
+		long volFixed = FlightTotals.toFixed(vol);
+		long weightFixed = FlightTotals.toFixed(weight);
+		long feeFixed = FlightTotals.toFixed(fee);
+		//add a passenger, and their weight, vol and fee, to the current totals
+		FlightTotals updated = add(1, volFixed, weightFixed, feeFixed);
+		rollUp(1, volFixed, weightFixed, feeFixed);
+		checkLimits(updated.getPassengers(), updated.getVolumeFixed(), updated.getWeightFixed());
+	}
+	
+	/**
+	 * adds a group of passengers and their baggage to the Flight in one update, for batch check-in
+	 * the totals come out exactly as if each passenger had been added on their own
+	 * @param vols the volume of each passenger's baggage
+	 * @param weights the weight of each passenger's baggage
+	 * @param fees the excess baggage fees incurred by each passenger
+	 * @param from the first passenger in the arrays to add
+	 * @param to one past the last passenger to add
+	 */
+	public void addPassengersAndBaggage(float[] vols, float[] weights, float[] fees, int from, int to) {
+		if (from >= to) {
+			return;
+		}
+		long vol = 0, weight = 0, fee = 0;
+		for (int i = from; i < to; i++) {
+			vol += FlightTotals.toFixed(vols[i]);
+			weight += FlightTotals.toFixed(weights[i]);
+			fee += FlightTotals.toFixed(fees[i]);
+		}
+		FlightTotals updated = add(to - from, vol, weight, fee);
+		rollUp(to - from, vol, weight, fee);
+		checkLimits(updated.getPassengers(), updated.getVolumeFixed(), updated.getWeightFixed());
+	}
+	
+	/**
+	 * Adds a passenger and their baggage, only if there is a seat left and the baggage fits within the flight's limits.
+	 * The seat, weight and volume are checked against one reading of the totals and claimed together in a single
+	 * compare and set, so desks racing for the last seat or the last of the baggage allowance never take the flight over,
+	 * and a passenger turned away never holds anything another desk could have had.
+	 * @param vol the volume of the baggage
+	 * @param weight the weight of the baggage
+	 * @param fee any excess baggage fees incurred
+	 * @return ADMITTED if they were added, otherwise why not
+	 */
+	public Admission tryAddPassengerAndBaggage(float vol, float weight, float fee) {
+		long volFixed = FlightTotals.toFixed(vol);
+		long weightFixed = FlightTotals.toFixed(weight);
+		long feeFixed = FlightTotals.toFixed(fee);
+		FlightTotals current;
+		do {
+			current = totals.get();
+			if (current.getPassengers() >= passengerCapacity) {
+				return Admission.FLIGHT_FULL;
+			}
+			if (isOverWeight(current.getWeightFixed() + weightFixed)) {
+				return Admission.OVER_WEIGHT;
+			}
+			if (isOverVolume(current.getVolumeFixed() + volFixed)) {
+				return Admission.OVER_VOLUME;
+			}
+		} while (!totals.compareAndSet(current, current.plus(1, volFixed, weightFixed, feeFixed)));
+		rollUp(1, volFixed, weightFixed, feeFixed); // never takes the flight over its limits
+		return Admission.ADMITTED;
+	}
+	
+	/**
+	 * Adds to the totals with a compare and set, however far over the limits it takes them
+	 * @return the totals after the change
+	 */
+	private FlightTotals add(int passengers, long vol, long weight, long fee) {
+		FlightTotals current, updated;
+		do {
+			current = totals.get();
+			updated = current.plus(passengers, vol, weight, fee);
+		} while (!totals.compareAndSet(current, updated));
+		return updated;
+	}
+	
+	/**
+	 * Adds a change to the totals to the carrier's and destination's rollups, if the flight is in them
+	 */
+	private void rollUp(int passengers, long vol, long weight, long fee) {
+		FlightRollup carrier = carrierRollup;
+		if (carrier != null) {
+			carrier.add(passengers, vol, weight, fee);
+			destinationRollup.add(passengers, vol, weight, fee);
+		}
+	}
+	
+	/**
+	 * Counts the flight in its rollups as over its limits the first time any total goes over,
+	 * a compare and set makes sure only one desk counts it
+	 */
+	private void checkLimits(int passengers, long vol, long weight) {
+		if (!overLimits.get() && isOverLimits(passengers, vol, weight) && overLimits.compareAndSet(false, true)) {
+			FlightRollup carrier = carrierRollup;
+			if (carrier != null) {
+				carrier.flightOverLimits();
+				destinationRollup.flightOverLimits();
+			}
+		}
+	}
+	
+	/**
+	 * returns whether totals are over any of the flight's limits, as the report's Exceeded line shows
+	 * @param totals the totals, such as from getTotals
+	 * @return true if over its passenger capacity, baggage weight or baggage volume
+	 */
+	public boolean isOverLimits(FlightTotals totals) {
+		return isOverLimits(totals.getPassengers(), totals.getVolumeFixed(), totals.getWeightFixed());
+	}
+	
+	/**
+	 * returns whether totals are over the flight's passenger capacity
+	 * @param totals the totals, such as from getTotals
+	 * @return true if more passengers are checked in than it has seats
+	 */
+	public boolean isOverCapacity(FlightTotals totals) {
+		return isOverCapacity(totals.getPassengers());
+	}
+	
+	/**
+	 * returns whether totals are over the flight's maximum baggage weight
+	 * @param totals the totals, such as from getTotals
+	 * @return true if the baggage weighs more than the flight can take
+	 */
+	public boolean isOverWeight(FlightTotals totals) {
+		return isOverWeight(totals.getWeightFixed());
+	}
+	
+	/**
+	 * returns whether totals are over the flight's maximum baggage volume
+	 * @param totals the totals, such as from getTotals
+	 * @return true if the baggage takes more room than the flight has
+	 */
+	public boolean isOverVolume(FlightTotals totals) {
+		return isOverVolume(totals.getVolumeFixed());
+	}
+	
+	/**
+	 * Whether totals are over any of the flight's limits, as the report's Exceeded line shows
+	 */
+	private boolean isOverLimits(int passengers, long vol, long weight) {
+		return isOverVolume(vol) || isOverWeight(weight) || isOverCapacity(passengers);
+	}
+	
+	private boolean isOverCapacity(int passengers) {
+		return passengers > this.passengerCapacity;
+	}
+	
+	private boolean isOverWeight(long weight) {
+		return weight > this.maxBaggageWeightFixed;
+	}
+	
+	private boolean isOverVolume(long vol) {
+		return vol > this.maxBaggageVolumeFixed;
+	}
+	
+	/**
+	 * returns the number of times the totals have changed, a report made at the same
+	 * update count as this one would still be up to date
+	 * @return the update count
+	 */
+	public long getUpdateCount() {
+		return totals.get().getUpdateCount();
 	}
 	
 	/**
@@ -125,22 +399,34 @@ public class Flight {
 	 */
 	public String generateReport()
 	{
-		StringBuilder report = new StringBuilder();
+		StringBuilder report = new StringBuilder(160);
+		appendReport(report);
+		return report.toString();
+	}
 
-		String excess = "no";
-		if( ( this.currentTotalBaggageVolume > this.maxBaggageVolume ) || ( this.currentTotalBaggageWeight > this.maxBaggageWeight )|| ( this.currentTotalPassengers > this.passengerCapacity ) ){
-			excess = "yes";
-		}
+	/**
+	 * Appends a summary of the Flight information to a StringBuilder
+	 * the totals are read together with getTotals, so they all come from the same moment
+	 * @param report where to append the summary
+	 * @return the update count the report was made at, see {@link #getUpdateCount()}
+	 */
+	public long appendReport(StringBuilder report)
+	{
+		FlightTotals totals = getTotals();
+		String excess = isOverLimits(totals.getPassengers(), totals.getVolumeFixed(), totals.getWeightFixed()) ? "yes" : "no";
 
-		report.append(String.format("Flight code: %s\n",this.flightCode));
-		report.append(String.format("Number of Passengers: %d\n", this.currentTotalPassengers));
-		report.append(String.format("Total Baggage Weight: %.2f\n", this.currentTotalBaggageWeight));
-		report.append(String.format("Total Baggage Volume: %.2f\n", this.currentTotalBaggageVolume));
-		report.append(String.format("Total Excess Fees: %.2f\n", this.currentTotalFees));
-		report.append(String.format("Exceeded: %s\n",excess));
-		
+		// Same layout as String.format("Total Baggage Weight: %.2f\n", ...) and so on, without parsing a format each time
+		report.append("Flight code: ").append(this.flightCode).append('\n');
+		report.append("Number of Passengers: ").append(totals.getPassengers()).append('\n');
+		report.append("Total Baggage Weight: ");
+		ReportFormat.appendTwoDecimals(report, totals.getWeightFixed());
+		report.append("\nTotal Baggage Volume: ");
+		ReportFormat.appendTwoDecimals(report, totals.getVolumeFixed());
+		report.append("\nTotal Excess Fees: ");
+		ReportFormat.appendTwoDecimals(report, totals.getFeesFixed());
+		report.append("\nExceeded: ").append(excess).append('\n');
 
-		return report.toString();
+		return totals.getUpdateCount();
 	}
 	/**
 	 * Compares if to Flights are equal
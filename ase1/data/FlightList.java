@@ -1,56 +1,228 @@
 package ase1.data;
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Scanner;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+/**
+ * The flights, looked up by flight code.
+ * Flights appended to the file after it was loaded can be added with {@link #loadAppended(Consumer)} while desks
+ * carry on, looking a flight up never locks.
+ * Each flight's totals are also rolled up by carrier and by destination, see {@link FlightRollup}.
+ */
 public class FlightList {
-	HashMap<String, Flight> flights;
-	
+	/** The file flights are loaded from when no other file is given */
+	public static final String DEFAULT_FILE = "flight.txt";
+
+	ConcurrentHashMap<String, Flight> flights;
+
+	// Flight codes as bytes in an open addressing table, so the passenger loader
+	// can find a passenger's flight straight from the bytes of the file.
+	// Replaced as a whole when flights are added, so a reader always sees codes and flights that match
+	private volatile CodeTable codes;
+
+	// The totals of each carrier's and each destination's flights, kept up to date by the flights themselves
+	private final ConcurrentHashMap<String, FlightRollup> carriers = new ConcurrentHashMap<String, FlightRollup>();
+	private final ConcurrentHashMap<String, FlightRollup> destinations = new ConcurrentHashMap<String, FlightRollup>();
+
+	// The file the flights were loaded from, and how much of it has been read, null when restored from a snapshot
+	private Path file;
+	private long loadedLength;
+
+	/**
+	 * Flight codes as bytes, with the flight for each
+	 */
+	private static final class CodeTable {
+		final byte[][] codeBytes;
+		final Flight[] codeFlights;
+
+		CodeTable(int capacity) {
+			codeBytes = new byte[capacity][];
+			codeFlights = new Flight[capacity];
+		}
+	}
+
 	public FlightList() {
-		loadFlights();
+		this(Paths.get(DEFAULT_FILE));
+	}
+
+	/**
+	 * Constructs a FlightList from the given file
+	 * @param file the comma separated file of flights
+	 * @throws UncheckedIOException if the file could not be read
+	 */
+	public FlightList(Path file) {
+		loadFlights(file);
 	}
-	
+
+	/**
+	 * Constructs a FlightList holding the given flights, used when restoring from a snapshot
+	 * @param restored the flights
+	 */
+	FlightList(Collection<Flight> restored) {
+		flights = new ConcurrentHashMap<String, Flight>();
+		for (Flight flight : restored) {
+			flights.put(flight.getFlightCode(), flight);
+		}
+		rollUpAll();
+		buildCodeTable();
+	}
+
 	/**
 	 * Loads the flights from the comma seperated txt file.
 	 * Parses each line of the text file as a different flight, and adds them to the collection of flights.
+	 * The file is memory-mapped and read straight from the bytes, see {@link MappedLineReader}.
+	 * @throws UncheckedIOException if the file could not be read
 	 */
-	private void loadFlights() {
-		File f = new File("flight.txt");
-		Scanner scanner;
-		
-		//instantiate Flight HashMap
-		flights = new HashMap<String, Flight>();
-		
-		//added try catch
+	private void loadFlights(Path file) {
+		//instantiate Flight map
+		flights = new ConcurrentHashMap<String, Flight>();
+		this.file = file;
+
 		try {
-			scanner = new Scanner(f);
-			while (scanner.hasNextLine()) {     
-				String inputLine = scanner.nextLine();   //do something with this line     
-				String parts[] = inputLine.split(",");
-				
-				Flight currentFlight = new Flight(parts[0],
-						parts[1],
-						parts[2],
-						Integer.parseInt(parts[3]),
-						Float.parseFloat(parts[4]),
-						Float.parseFloat(parts[5]),
-						Float.parseFloat(parts[6]));
-
-				flights.put(parts[0], currentFlight);
+			MappedLineReader.parse(file, FlightList::parseFlights, chunk -> {
+				for (Flight currentFlight : chunk) {
+					flights.put(currentFlight.getFlightCode(), currentFlight);
+				}
+			}, end -> loadedLength = end);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not load flights from "+file, e);
+		}
+		rollUpAll(); // once duplicate codes have replaced each other
+		buildCodeTable();
+	}
+
+	/**
+	 * Adds the flights appended to the file since it was loaded, or since this was last called.
+	 * Only whole lines are read, a line still being written is left for next time. A flight whose code
+	 * is already listed keeps its passengers and totals, and the appended line is ignored.
+	 * Looking flights up carries on while they are added, only one caller adds at a time.
+	 * The file is read in chunks, and each chunk counts as read once its flights are added, so if reading
+	 * a later chunk fails, the flights already added stay added and the next call carries on after them.
+	 * @param added given each flight added, in the order they were appended, as it is added
+	 * @throws IOException if the file can't be read, or is shorter than when it was last read
+	 */
+	public synchronized void loadAppended(Consumer<? super Flight> added) throws IOException {
+		if (file == null) {
+			return; // restored from a snapshot, there's no file to follow
+		}
+		long from = loadedLength;
+		try {
+			MappedLineReader.parseAppended(file, loadedLength, FlightList::parseFlights, chunk -> {
+				for (Flight currentFlight : chunk) {
+					// only one caller adds at a time, so a flight not listed yet stays that way until it is put
+					if (!flights.containsKey(currentFlight.getFlightCode())) {
+						rollUp(currentFlight);
+						flights.put(currentFlight.getFlightCode(), currentFlight);
+						added.accept(currentFlight);
+					}
+				}
+			}, end -> loadedLength = end);
+		} finally {
+			if (loadedLength != from) {
+				buildCodeTable(); // even when a later chunk failed, for the flights already added
+			}
+		}
+	}
+
+	/**
+	 * Parses the flights in a chunk of the flights file
+	 * @param chunk whole lines of the file
+	 * @return the flights in the chunk
+	 */
+	private static List<Flight> parseFlights(ByteBuffer chunk) {
+		List<Flight> parsed = new ArrayList<Flight>();
+		CsvCursor line = new CsvCursor(chunk);
+		while (line.nextLine()) {
+			parsed.add(new Flight(line.nextField().asString(),	// Flight code
+					line.nextField().asString(),	// Destination
+					line.nextField().asString(),	// Carrier
+					line.nextField().asInt(),		// Passenger capacity
+					line.nextField().asFloat(),		// Max baggage volume
+					line.nextField().asFloat(),		// Max baggage weight
+					line.nextField().asFloat()));	// Fee multiplier
+		}
+		return parsed;
+	}
+
+	private void rollUpAll() {
+		for (Flight flight : flights.values()) {
+			rollUp(flight);
+		}
+	}
+
+	/**
+	 * Adds a flight to its carrier's and destination's rollups, before it is listed
+	 */
+	private void rollUp(Flight flight) {
+		flight.rollUpInto(carriers.computeIfAbsent(flight.getCarrier(), FlightRollup::new),
+				destinations.computeIfAbsent(flight.getDestination(), FlightRollup::new));
+	}
+
+	/**
+	 * Builds the table of flight code bytes used by {@link #get(CsvCursor)}
+	 */
+	private void buildCodeTable() {
+		int capacity = Integer.highestOneBit(Math.max(flights.size(), 1) * 2) << 1;
+		CodeTable table = new CodeTable(capacity);
+		for (Flight flight : flights.values()) {
+			byte[] code = flight.getFlightCode().getBytes(StandardCharsets.UTF_8);
+			int i = CsvCursor.hash(code) & (capacity - 1);
+			while (table.codeBytes[i] != null) {
+				i = (i + 1) & (capacity - 1);
 			}
-		} catch (FileNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			table.codeBytes[i] = code;
+			table.codeFlights[i] = flight;
 		}
+		codes = table; // volatile write publishes the filled table
 	}
 
 	public Flight get(String flightCode) {
 		return flights.get(flightCode);
 	}
-	
+
+	/**
+	 * Finds the flight whose code is the current field of a cursor, without making a String of it
+	 * @param field the cursor, at the field holding the flight code
+	 * @return the flight, or null if there is no flight with that code
+	 */
+	Flight get(CsvCursor field) {
+		CodeTable table = codes;
+		int mask = table.codeBytes.length - 1;
+		for (int i = field.fieldHash() & mask; table.codeBytes[i] != null; i = (i + 1) & mask) {
+			if (field.fieldEquals(table.codeBytes[i])) {
+				return table.codeFlights[i];
+			}
+		}
+		return null;
+	}
+
 	public Collection<Flight> getValues() {
 		return flights.values();
 	}
+
+	/**
+	 * returns the totals of each carrier's flights, kept up to date as desks check in
+	 * @return the rollups by carrier, a read-only view that also shows carriers of flights added later
+	 */
+	public Map<String, FlightRollup> getCarrierRollups() {
+		return Collections.unmodifiableMap(carriers);
+	}
+
+	/**
+	 * returns the totals of the flights to each destination, kept up to date as desks check in
+	 * @return the rollups by destination, a read-only view that also shows destinations of flights added later
+	 */
+	public Map<String, FlightRollup> getDestinationRollups() {
+		return Collections.unmodifiableMap(destinations);
+	}
 }
@@ -0,0 +1,172 @@
+package ase1.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The passengers booked on one flight, kept up to date by the {@link PassengerList} as passengers
+ * are added, removed and checked in.
+ * As in the list's own index, each passenger holds their check-in state, so the manifest is one array of
+ * the flight's passengers with running counts for each state. The counts are read in constant time, and
+ * the passengers in a state are found by going through just this flight's passengers.
+ * Like the flight's totals, the manifest belongs to the one PassengerList the flight's passengers are added to.
+ * When that list keeps its passengers off the heap, the manifest only keeps the counts, and the passengers
+ * are found through the {@link OffHeapPassengerStore}, which links each flight's rows together.
+ */
+public class FlightManifest {
+	private Passenger[] members = new Passenger[8];
+	private int size;
+	// Set when the passengers are kept off the heap, the store then lists them rather than members
+	private OffHeapPassengerStore store;
+	private int ordinal;
+
+	// Running counts of the flight's passengers in each state
+	private final AtomicInteger numCheckedIn = new AtomicInteger();
+	private final AtomicInteger numNotCheckedIn = new AtomicInteger();
+
+	FlightManifest() {
+	}
+
+	/**
+	 * returns the number of passengers on the flight still to be checked in
+	 * @return the number of passengers not checked in
+	 */
+	public int getNumToCheckIn() {
+		return numNotCheckedIn.get();
+	}
+
+	/**
+	 * returns the number of passengers on the flight who have been checked in
+	 * @return the number of passengers checked in
+	 */
+	public int getNumCheckedIn() {
+		return numCheckedIn.get();
+	}
+
+	/**
+	 * returns the number of passengers booked on the flight
+	 * @return the number of passengers, whether checked in or not
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * returns every passenger booked on the flight
+	 * @return a copy of the manifest, in no particular order
+	 */
+	public List<Passenger> getPassengers() {
+		return select(-1);
+	}
+
+	/**
+	 * returns the passengers on the flight still to be checked in
+	 * @return a copy of those passengers, in no particular order
+	 */
+	public List<Passenger> getNotCheckedIn() {
+		return select(Passenger.NOT_CHECKED_IN);
+	}
+
+	/**
+	 * returns the passengers on the flight who have been checked in
+	 * @return a copy of those passengers, in no particular order
+	 */
+	public List<Passenger> getCheckedIn() {
+		return select(Passenger.CHECKED_IN);
+	}
+
+	/**
+	 * Copies out the passengers in one state
+	 * @param state the state wanted, or -1 for every passenger
+	 * @return the passengers
+	 */
+	private List<Passenger> select(int state) {
+		Passenger[] copy;
+		OffHeapPassengerStore kept;
+		synchronized (this) {
+			kept = store;
+			copy = kept == null ? Arrays.copyOf(members, size) : null;
+		}
+		if (kept != null) {
+			copy = kept.passengersOn(ordinal); // every passenger ever added, those removed are skipped below
+		}
+		List<Passenger> selected = new ArrayList<Passenger>(copy.length);
+		for (Passenger passenger : copy) {
+			int current = passenger.getCheckInState();
+			// a passenger being removed is still in the array for a moment
+			if (current != Passenger.REMOVED && (state < 0 || current == state)) {
+				selected.add(passenger);
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Adds a passenger that has just been added to the passenger list
+	 * @param passenger the passenger
+	 * @param state the state they were added in
+	 */
+	void add(Passenger passenger, int state) {
+		synchronized (this) {
+			if (store == null) {
+				if (size == members.length) {
+					members = Arrays.copyOf(members, size * 2);
+				}
+				members[size] = passenger;
+			}
+			size++;
+		}
+		(state == Passenger.CHECKED_IN ? numCheckedIn : numNotCheckedIn).incrementAndGet();
+	}
+
+	/**
+	 * Takes out a passenger that has been removed from the passenger list
+	 * @param passenger the passenger
+	 * @param state the state they were in before they were removed
+	 */
+	void remove(Passenger passenger, int state) {
+		synchronized (this) {
+			if (store != null) {
+				size--;
+			} else {
+				for (int i = 0; i < size; i++) {
+					if (members[i] == passenger) {
+						members[i] = members[--size]; // order doesn't matter, so fill the gap from the end
+						members[size] = null;
+						break;
+					}
+				}
+			}
+		}
+		(state == Passenger.CHECKED_IN ? numCheckedIn : numNotCheckedIn).decrementAndGet();
+	}
+
+	/**
+	 * Has the manifest find its passengers in a store from now on, before any are added
+	 * @param store the store keeping the flight's passengers
+	 * @param ordinal the flight's number in the store
+	 */
+	synchronized void keptIn(OffHeapPassengerStore store, int ordinal) {
+		this.store = store;
+		this.ordinal = ordinal;
+		this.members = null;
+	}
+
+	/**
+	 * Moves one passenger from the not checked in count to the checked in count
+	 */
+	void checkedIn() {
+		numNotCheckedIn.decrementAndGet();
+		numCheckedIn.incrementAndGet();
+	}
+
+	/**
+	 * Moves one passenger back from the checked in count to the not checked in count, when their flight turned them away
+	 */
+	void checkInCancelled() {
+		numCheckedIn.decrementAndGet();
+		numNotCheckedIn.incrementAndGet();
+	}
+}
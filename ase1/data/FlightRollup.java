@@ -0,0 +1,118 @@
+package ase1.data;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The running totals of every flight of one carrier, or to one destination, kept by a {@link FlightList}.
+ * Each flight adds to its carrier's and destination's rollups as its own totals change, so reading a
+ * rollup costs the same however many flights it covers, and nothing goes through the flights to add them up.
+ *
+ * The totals are {@link LongAdder}s, desks checking in to different flights of the same carrier add to
+ * separate cells rather than fighting over one counter. Each total is exact once the desks updating it
+ * are done, but totals read while desks are checking in may be from slightly different moments,
+ * see {@link CheckInView} for totals that always agree with each other.
+ */
+public final class FlightRollup {
+	private final String name;
+	private final LongAdder flights = new LongAdder();
+	private final LongAdder passengers = new LongAdder();
+	private final LongAdder volume = new LongAdder();
+	private final LongAdder weight = new LongAdder();
+	private final LongAdder fees = new LongAdder();
+	private final LongAdder flightsOverLimits = new LongAdder();
+
+	FlightRollup(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Counts a flight added to the rollup, with the totals it already has
+	 * @param totals the flight's totals
+	 * @param overLimits whether the flight is already over any of its limits
+	 */
+	void addFlight(FlightTotals totals, boolean overLimits) {
+		flights.increment();
+		add(totals.getPassengers(), totals.getVolumeFixed(), totals.getWeightFixed(), totals.getFeesFixed());
+		if (overLimits) {
+			flightsOverLimits.increment();
+		}
+	}
+
+	/**
+	 * Adds passengers and baggage checked in to one of the rollup's flights
+	 * @param passengers the number of passengers
+	 * @param vol the baggage volume, in fixed point
+	 * @param weight the baggage weight, in fixed point
+	 * @param fee the fees, in fixed point
+	 */
+	void add(int passengers, long vol, long weight, long fee) {
+		this.passengers.add(passengers);
+		this.volume.add(vol);
+		this.weight.add(weight);
+		this.fees.add(fee);
+	}
+
+	/**
+	 * Counts one of the rollup's flights going over its limits, only ever called once for each flight
+	 */
+	void flightOverLimits() {
+		flightsOverLimits.increment();
+	}
+
+	/**
+	 * returns the carrier or destination the rollup is for
+	 * @return the name of the carrier or destination
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * returns the number of flights in the rollup
+	 * @return the number of flights
+	 */
+	public int getFlights() {
+		return flights.intValue();
+	}
+
+	/**
+	 * returns the number of passengers checked in to the rollup's flights
+	 * @return the number of passengers
+	 */
+	public long getPassengers() {
+		return passengers.sum();
+	}
+
+	/**
+	 * returns the total volume of baggage checked in to the rollup's flights
+	 * @return the total baggage volume
+	 */
+	public double getBaggageVolume() {
+		return (double) volume.sum() / FlightTotals.SCALE;
+	}
+
+	/**
+	 * returns the total weight of baggage checked in to the rollup's flights
+	 * @return the total baggage weight
+	 */
+	public double getBaggageWeight() {
+		return (double) weight.sum() / FlightTotals.SCALE;
+	}
+
+	/**
+	 * returns the total excess baggage fees taken on the rollup's flights
+	 * @return the total fees
+	 */
+	public double getFees() {
+		return (double) fees.sum() / FlightTotals.SCALE;
+	}
+
+	/**
+	 * returns the number of the rollup's flights that have gone over their passenger capacity or baggage limits,
+	 * as the report's Exceeded line shows
+	 * @return the number of flights over their limits
+	 */
+	public int getFlightsOverLimits() {
+		return flightsOverLimits.intValue();
+	}
+}
@@ -0,0 +1,120 @@
+package ase1.data;
+
+/**
+ * The running totals of a {@link Flight} at one moment, all taken together so they agree with each other.
+ * Baggage weight, volume and fees are held in fixed point, as millionths, so adding up thousands of
+ * passengers doesn't lose precision the way adding floats does.
+ */
+public final class FlightTotals {
+	/** Fixed point values are this many times the real value */
+	public static final long SCALE = 1_000_000L;
+
+	private final int passengers;
+	private final long volume;
+	private final long weight;
+	private final long fees;
+	private final long updateCount;
+
+	FlightTotals(int passengers, long volume, long weight, long fees, long updateCount) {
+		this.passengers = passengers;
+		this.volume = volume;
+		this.weight = weight;
+		this.fees = fees;
+		this.updateCount = updateCount;
+	}
+
+	/**
+	 * Converts a value to fixed point, rounding to the nearest millionth
+	 * @param value the value
+	 * @return the value in millionths
+	 */
+	public static long toFixed(double value) {
+		return Math.round(value * SCALE);
+	}
+
+	/**
+	 * Converts a fixed point value back to a float
+	 * @param fixed the value in millionths
+	 * @return the value
+	 */
+	public static float toFloat(long fixed) {
+		return (float) ((double) fixed / SCALE);
+	}
+
+	/**
+	 * returns the number of passengers checked in
+	 * @return the number of passengers
+	 */
+	public int getPassengers() {
+		return passengers;
+	}
+
+	/**
+	 * returns the total baggage volume in fixed point
+	 * @return the total volume, in millionths
+	 */
+	public long getVolumeFixed() {
+		return volume;
+	}
+
+	/**
+	 * returns the total baggage weight in fixed point
+	 * @return the total weight, in millionths
+	 */
+	public long getWeightFixed() {
+		return weight;
+	}
+
+	/**
+	 * returns the total fees in fixed point
+	 * @return the total fees, in millionths
+	 */
+	public long getFeesFixed() {
+		return fees;
+	}
+
+	/**
+	 * returns the total baggage volume
+	 * @return the total volume
+	 */
+	public float getVolume() {
+		return toFloat(volume);
+	}
+
+	/**
+	 * returns the total baggage weight
+	 * @return the total weight
+	 */
+	public float getWeight() {
+		return toFloat(weight);
+	}
+
+	/**
+	 * returns the total fees
+	 * @return the total fees
+	 */
+	public float getFees() {
+		return toFloat(fees);
+	}
+
+	/**
+	 * returns the flight's update count when these totals were taken, see {@link Flight#getUpdateCount()}
+	 * @return the update count
+	 */
+	public long getUpdateCount() {
+		return updateCount;
+	}
+
+	/**
+	 * returns these totals with more passengers and baggage added, one update later
+	 * @param passengers the number of passengers to add
+	 * @param volume the baggage volume to add, in fixed point
+	 * @param weight the baggage weight to add, in fixed point
+	 * @param fees the fees to add, in fixed point
+	 * @return the new totals
+	 */
+	FlightTotals plus(int passengers, long volume, long weight, long fees) {
+		return new FlightTotals(this.passengers + passengers, this.volume + volume, this.weight + weight,
+				this.fees + fees, updateCount + 1);
+	}
+}
@@ -0,0 +1,226 @@
+package ase1.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Reads a text file by memory-mapping it, rather than going through a Scanner.
+ * The file is split into chunks that always end on a line break, and the chunks are mapped
+ * and parsed in parallel on the common fork-join pool. The results come back in file order,
+ * so whoever uses them can still treat the file as if it was read from start to finish.
+ */
+final class MappedLineReader {
+	/** How much of the file each task parses, small files are parsed as a single chunk */
+	static final int CHUNK_SIZE = 8 << 20;
+
+	private MappedLineReader() {
+	}
+
+	/**
+	 * Parses one chunk of the file
+	 * @param <R> what the chunk is parsed into
+	 */
+	interface ChunkParser<R> {
+		/**
+		 * parses the lines in a chunk
+		 * @param chunk the mapped chunk, from position 0 to its limit, always made up of whole lines
+		 * @return the result of parsing the chunk
+		 */
+		R parse(ByteBuffer chunk);
+	}
+
+	/**
+	 * Maps the file and parses it in chunks, a few at a time, handing over each few before parsing the next,
+	 * so only their results are held at once rather than the whole file's.
+	 * @param file the file to read
+	 * @param parser parses each chunk, may be called from several threads at once
+	 * @param handler given the result for each chunk on the calling thread, in the order the chunks appear in the file
+	 * @param applied given where each chunk ends once the handler has returned for it, so a handler that throws
+	 * leaves the read having got to the end of the last chunk handled
+	 * @throws IOException if the file can't be opened or mapped
+	 */
+	static <R> void parse(Path file, ChunkParser<R> parser, Consumer<? super R> handler, LongConsumer applied) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			parseWindows(channel, chunkBounds(channel, 0, size), parser, handler, applied);
+		}
+	}
+
+	/**
+	 * Parses the whole lines added to the end of a file since it was last read, like {@link #parse(Path, ChunkParser, Consumer, LongConsumer)}.
+	 * A last line with no line break yet may still be being written, so it is left for the next read.
+	 * @param file the file to read
+	 * @param from where the last read ended
+	 * @param parser parses each chunk, may be called from several threads at once
+	 * @param handler given the result for each chunk on the calling thread, in the order the chunks appear in the file
+	 * @param applied given where each chunk ends once the handler has returned for it, the last just after the
+	 * last line break, and not at all if there are no new lines
+	 * @throws IOException if the file can't be opened or mapped, or is now shorter than from
+	 */
+	static <R> void parseAppended(Path file, long from, ChunkParser<R> parser, Consumer<? super R> handler, LongConsumer applied)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < from) {
+				throw new IOException(file + " is shorter than when it was last read, it should only ever be appended to");
+			}
+			long end = lastLineEnd(channel, from, size);
+			parseWindows(channel, chunkBounds(channel, from, end), parser, handler, applied);
+		}
+	}
+
+	/**
+	 * Parses the chunks a few at a time, handing each few to the handler before parsing the next
+	 */
+	private static <R> void parseWindows(FileChannel channel, long[] bounds, ChunkParser<R> parser, Consumer<? super R> handler,
+			LongConsumer applied) throws IOException {
+		int chunks = bounds.length - 1;
+		int window = 2 * ForkJoinPool.getCommonPoolParallelism();
+		Object[] results = new Object[chunks];
+		for (int from = 0; from < chunks; from += window) {
+			int to = Math.min(chunks, from + window);
+			parseChunks(channel, bounds, parser, results, from, to);
+			for (int i = from; i < to; i++) {
+				@SuppressWarnings("unchecked")
+				R r = (R) results[i];
+				results[i] = null; // handed over, so it can go once the handler is done with it
+				handler.accept(r);
+				applied.accept(bounds[i + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Parses chunks from to to, in parallel if there is more than one
+	 */
+	private static <R> void parseChunks(FileChannel channel, long[] bounds, ChunkParser<R> parser, Object[] results,
+			int from, int to) throws IOException {
+		if (to - from == 1) {
+			results[from] = parser.parse(map(channel, bounds[from], bounds[from + 1]));
+		} else if (to - from > 1) {
+			try {
+				ForkJoinPool.commonPool().invoke(new ChunkTask<R>(channel, bounds, parser, results, from, to));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Works out where each chunk of part of the file starts and ends, moving each boundary forward to just after a line break.
+	 * Only reads the few bytes around each boundary.
+	 * @param start where the part starts, at the start of a line
+	 * @param size where the part ends
+	 * @return the offsets, chunk i runs from bounds[i] to bounds[i+1]
+	 */
+	private static long[] chunkBounds(FileChannel channel, long start, long size) throws IOException {
+		long[] bounds = new long[(int) ((size - start) / CHUNK_SIZE) + 2];
+		bounds[0] = start;
+		int count = 1;
+		ByteBuffer probe = ByteBuffer.allocate(256);
+		while (start < size) {
+			long end = Math.min(size, start + CHUNK_SIZE);
+			// look for the end of the line the boundary falls in
+			scan:
+			while (end < size) {
+				probe.clear();
+				int read = channel.read(probe, end);
+				if (read <= 0) {
+					end = size;
+					break;
+				}
+				for (int i = 0; i < read; i++) {
+					if (probe.get(i) == '\n') {
+						end += i + 1;
+						break scan;
+					}
+				}
+				end += read;
+			}
+			if (count == bounds.length) {
+				bounds = Arrays.copyOf(bounds, count * 2);
+			}
+			bounds[count++] = end;
+			start = end;
+		}
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * Finds the end of the last whole line between from and size, reading back from size a little at a time
+	 * @return just after the last line break, or from if there isn't one
+	 */
+	private static long lastLineEnd(FileChannel channel, long from, long size) throws IOException {
+		ByteBuffer probe = ByteBuffer.allocate(256);
+		long end = size;
+		while (end > from) {
+			int length = (int) Math.min(probe.capacity(), end - from);
+			probe.clear().limit(length);
+			long start = end - length;
+			while (probe.hasRemaining()) {
+				if (channel.read(probe, start + probe.position()) < 0) {
+					throw new IOException("The file shrank while it was being read");
+				}
+			}
+			for (int i = length - 1; i >= 0; i--) {
+				if (probe.get(i) == '\n') {
+					return start + i + 1;
+				}
+			}
+			end = start;
+		}
+		return from;
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long start, long end) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+	}
+
+	/**
+	 * Splits the chunks in half until there is one left, then maps and parses it
+	 */
+	private static final class ChunkTask<R> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final long[] bounds;
+		private final ChunkParser<R> parser;
+		private final Object[] results;
+		private final int from;
+		private final int to;
+
+		ChunkTask(FileChannel channel, long[] bounds, ChunkParser<R> parser, Object[] results, int from, int to) {
+			this.channel = channel;
+			this.bounds = bounds;
+			this.parser = parser;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ChunkTask<R>(channel, bounds, parser, results, from, mid),
+						new ChunkTask<R>(channel, bounds, parser, results, mid, to));
+				return;
+			}
+			try {
+				results[from] = parser.parse(map(channel, bounds[from], bounds[from + 1]));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,531 @@
+package ase1.data;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Keeps passengers in direct memory rather than as objects on the heap, for passenger lists too big
+ * for the heap and the garbage collector to cope with.
+ *
+ * Each passenger is a row across int columns: the packed booking reference, the first and last names,
+ * the flight, the check-in state, the epoch of the first view to include their check-in, and the next
+ * passenger on the same flight. Names are interned, each distinct name's bytes are kept once and rows
+ * hold where they start. Rows are in segments of direct memory that never move once made, so a desk
+ * moving a check-in state with a compare and set never races a copy. The index from packed booking
+ * reference to row is an open addressing table in direct memory, laid out like {@link BookingRefMap}'s.
+ * The only heap used is a few objects per segment and a slot per flight.
+ *
+ * A {@link Passenger} is made for each lookup, a small object that reads its details from its row when
+ * asked and moves its check-in state there, so the rest of the PassengerList works unchanged. Two
+ * lookups of the same booking give equal but different objects. A removed passenger's row is left
+ * behind, only the index forgets it.
+ */
+final class OffHeapPassengerStore implements PassengerIndex {
+	private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+	private static final VarHandle FIRST = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private static final int SEGMENT_SHIFT = 16;
+	private static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+	// The columns of a segment, each SEGMENT_ROWS ints long
+	private static final int CODE = 0;
+	private static final int FIRST_NAME = 1;
+	private static final int LAST_NAME = 2;
+	private static final int FLIGHT = 3;
+	private static final int STATE = 4;
+	private static final int VIEW_EPOCH = 5;
+	private static final int NEXT_ON_FLIGHT = 6;
+	private static final int COLUMNS = 7;
+	// No flight, no name, or the end of a flight's passengers
+	private static final int NONE = -1;
+
+	// Index slots hold the key, the packed code plus one so zero marks an empty slot, then the row plus one.
+	// A row of zero is a passenger still being added, TOMBSTONE one that has been removed
+	private static final int SLOT_BYTES = 8;
+	private static final int TOMBSTONE = -1;
+	private static final int MIN_CAPACITY = 16;
+	private static final int MAX_CAPACITY = 1 << 27; // a 1GB index, room for about 100 million passengers
+
+	/**
+	 * The index, replaced as a whole when it grows
+	 */
+	private static final class Table {
+		final ByteBuffer slots;
+		final int mask;
+
+		Table(int capacity) {
+			slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES).order(ByteOrder.nativeOrder());
+			mask = capacity - 1;
+		}
+
+		int key(int i) {
+			return slots.getInt(i * SLOT_BYTES);
+		}
+
+		int row(int i) {
+			return (int) INT.getAcquire(slots, i * SLOT_BYTES + 4);
+		}
+
+		void set(int i, int key, int row) {
+			slots.putInt(i * SLOT_BYTES, key);
+			INT.setRelease(slots, i * SLOT_BYTES + 4, row); // the key and the row's columns are written first
+		}
+	}
+
+	private volatile Table table;
+	private int size;
+	private int used; // slots holding either a passenger or a tombstone
+
+	private volatile ByteBuffer[] segments = new ByteBuffer[0];
+	private int rows;
+
+	// Each name is its length as an unsigned short then its UTF-8 bytes, found by where it starts
+	private volatile ByteBuffer names = direct(1 << 16);
+	private int namesEnd;
+	// Where each name starts plus one, by hash, to find names already kept. Only used when adding
+	private ByteBuffer nameTable = direct(MIN_CAPACITY * 4);
+	private int nameCount;
+
+	private volatile Flight[] flights = new Flight[16];
+	private final IdentityHashMap<Flight, Integer> flightOrdinals = new IdentityHashMap<Flight, Integer>();
+	// The last row added for each flight, the rows before it follow on. Each is set with release once its row is
+	// written, and rows never change once linked, so a flight's passengers can be read without the lock.
+	// Replaced as a whole when it grows
+	private volatile int[] firstOnFlight = new int[16];
+
+	/**
+	 * Constructs a store with room for the given number of passengers before the index has to grow
+	 * @param expectedSize the number of passengers expected
+	 */
+	OffHeapPassengerStore(int expectedSize) {
+		table = new Table(capacityFor(expectedSize));
+	}
+
+	/**
+	 * A passenger whose details are in a row of the store
+	 */
+	private static final class StoredPassenger extends Passenger {
+		private final OffHeapPassengerStore store;
+		private final int row;
+
+		StoredPassenger(OffHeapPassengerStore store, int row) {
+			this.store = store;
+			this.row = row;
+		}
+
+		@Override
+		public String getBookingRefCode() {
+			return BookingRefCodec.decode(store.get(row, CODE));
+		}
+
+		@Override
+		public String getFirstName() {
+			return store.name(store.get(row, FIRST_NAME));
+		}
+
+		@Override
+		public String getLastName() {
+			return store.name(store.get(row, LAST_NAME));
+		}
+
+		@Override
+		public Flight getFlight() {
+			int flight = store.get(row, FLIGHT);
+			return flight == NONE ? null : store.flights[flight];
+		}
+
+		@Override
+		int getCheckInState() {
+			return (int) INT.getVolatile(store.segment(row), offset(row, STATE));
+		}
+
+		@Override
+		void setCheckInState(int state) {
+			INT.setVolatile(store.segment(row), offset(row, STATE), state);
+		}
+
+		@Override
+		boolean moveCheckInState(int expected, int update) {
+			return INT.compareAndSet(store.segment(row), offset(row, STATE), expected, update);
+		}
+
+		@Override
+		int getViewEpoch() {
+			return store.get(row, VIEW_EPOCH);
+		}
+
+		@Override
+		void setViewEpoch(int epoch) {
+			store.segment(row).putInt(offset(row, VIEW_EPOCH), epoch);
+		}
+	}
+
+	@Override
+	public Passenger get(int code) {
+		if (code == BookingRefCodec.INVALID) {
+			return null;
+		}
+		int key = code + 1;
+		Table t = table;
+		for (int i = hash(key) & t.mask; ; i = (i + 1) & t.mask) {
+			int k = t.key(i);
+			if (k == key) {
+				// zero if the passenger is still being added, which counts as not there yet
+				int row = t.row(i);
+				return row > 0 ? new StoredPassenger(this, row - 1) : null;
+			}
+			if (k == 0) {
+				return null;
+			}
+		}
+	}
+
+	@Override
+	public Passenger get(Object bookingRefCode) {
+		return (bookingRefCode instanceof CharSequence) ? get(BookingRefCodec.encode((CharSequence) bookingRefCode)) : null;
+	}
+
+	/**
+	 * Copies a passenger into a new row, unless there is already one with the same key.
+	 * The passenger given is not kept, lookups return passengers backed by the row.
+	 */
+	@Override
+	public synchronized Passenger putIfAbsent(int code, Passenger passenger, int state) {
+		int key = code + 1;
+		Table t = table;
+		int i = hash(key) & t.mask;
+		int k;
+		while ((k = t.key(i)) != 0) {
+			if (k == key) {
+				int current = t.row(i);
+				if (current != TOMBSTONE) {
+					return new StoredPassenger(this, current - 1);
+				}
+				// A tombstone for the same key can be reused, readers would see the same key either way
+				t.set(i, key, addRow(code, passenger, state) + 1);
+				size++;
+				return null;
+			}
+			i = (i + 1) & t.mask;
+		}
+		if (size >= maxUsed(MAX_CAPACITY)) {
+			throw new IllegalStateException("The passenger store is full, it holds " + size + " passengers");
+		}
+		t.set(i, key, addRow(code, passenger, state) + 1);
+		size++;
+		if (++used > maxUsed(t.mask + 1)) {
+			resize(capacityFor(size));
+		}
+		return null;
+	}
+
+	@Override
+	public synchronized boolean remove(int code, Passenger passenger) {
+		if (!(passenger instanceof StoredPassenger) || ((StoredPassenger) passenger).store != this) {
+			return false;
+		}
+		int key = code + 1;
+		Table t = table;
+		int k;
+		for (int i = hash(key) & t.mask; (k = t.key(i)) != 0; i = (i + 1) & t.mask) {
+			if (k == key) {
+				if (t.row(i) != ((StoredPassenger) passenger).row + 1) {
+					return false;
+				}
+				t.set(i, key, TOMBSTONE);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Iterates over the passengers, skipping removed ones.
+	 * Never fails when the store changes, passengers added while iterating may or may not be seen.
+	 */
+	@Override
+	public Iterator<Passenger> iterator() {
+		final Table t = table;
+		return new Iterator<Passenger>() {
+			private int index = -1;
+			private int next = advance();
+
+			private int advance() {
+				while (++index <= t.mask) {
+					int row = t.row(index);
+					if (row > 0) {
+						return row - 1;
+					}
+				}
+				return NONE;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != NONE;
+			}
+
+			@Override
+			public Passenger next() {
+				if (next == NONE) {
+					throw new NoSuchElementException();
+				}
+				Passenger passenger = new StoredPassenger(OffHeapPassengerStore.this, next);
+				next = advance();
+				return passenger;
+			}
+		};
+	}
+
+	/**
+	 * returns every passenger ever added for a flight, including those since removed. Doesn't lock, so flights
+	 * can be read in parallel while passengers are added, those added while reading may or may not be included.
+	 * @param ordinal the flight's number in the store, as given to its manifest
+	 * @return the passengers, most recently added first
+	 */
+	Passenger[] passengersOn(int ordinal) {
+		Passenger[] found = new Passenger[16];
+		int count = 0;
+		for (int row = (int) FIRST.getAcquire(firstOnFlight, ordinal); row != NONE; row = get(row, NEXT_ON_FLIGHT)) {
+			if (count == found.length) {
+				found = Arrays.copyOf(found, count * 2);
+			}
+			found[count++] = new StoredPassenger(this, row);
+		}
+		return Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * returns the direct memory the store has taken
+	 * @return the number of bytes
+	 */
+	synchronized long getOffHeapBytes() {
+		return (long) segments.length * SEGMENT_ROWS * COLUMNS * 4 + table.slots.capacity() + names.capacity()
+				+ nameTable.capacity();
+	}
+
+	/**
+	 * Fills in a new row from a passenger, only while holding the store's lock
+	 * @return the row
+	 */
+	private int addRow(int code, Passenger passenger, int state) {
+		int row = rows;
+		if (row >>> SEGMENT_SHIFT == segments.length) {
+			ByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+			grown[segments.length] = direct(SEGMENT_ROWS * COLUMNS * 4);
+			segments = grown; // published before any index entry for a row in it
+		}
+		ByteBuffer segment = segment(row);
+		int flight = ordinal(passenger.getFlight());
+		segment.putInt(offset(row, CODE), code);
+		segment.putInt(offset(row, FIRST_NAME), intern(passenger.getFirstName()));
+		segment.putInt(offset(row, LAST_NAME), intern(passenger.getLastName()));
+		segment.putInt(offset(row, FLIGHT), flight);
+		segment.putInt(offset(row, STATE), state);
+		segment.putInt(offset(row, VIEW_EPOCH), passenger.getViewEpoch());
+		if (flight != NONE) {
+			int[] heads = firstOnFlight;
+			segment.putInt(offset(row, NEXT_ON_FLIGHT), heads[flight]);
+			FIRST.setRelease(heads, flight, row); // the row's columns are written first
+		} else {
+			segment.putInt(offset(row, NEXT_ON_FLIGHT), NONE);
+		}
+		rows++;
+		return row;
+	}
+
+	/**
+	 * Numbers a flight the first time one of its passengers is added, and tells its manifest that
+	 * the passengers are listed here
+	 */
+	private int ordinal(Flight flight) {
+		if (flight == null) {
+			return NONE;
+		}
+		Integer ordinal = flightOrdinals.get(flight);
+		if (ordinal != null) {
+			return ordinal;
+		}
+		int next = flightOrdinals.size();
+		int[] heads = firstOnFlight;
+		if (next == flights.length) {
+			heads = Arrays.copyOf(heads, next * 2);
+			flights = Arrays.copyOf(flights, next * 2);
+		}
+		Flight[] all = flights;
+		all[next] = flight;
+		flights = all; // published again, with the new flight in it
+		heads[next] = NONE;
+		firstOnFlight = heads; // published again, before the manifest is given the flight's number
+		flightOrdinals.put(flight, next);
+		flight.getManifest().keptIn(this, next);
+		return next;
+	}
+
+	/**
+	 * Finds where a name is kept, keeping it if it isn't yet
+	 * @return where the name starts, or NONE for no name
+	 */
+	private int intern(String name) {
+		if (name == null) {
+			return NONE;
+		}
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > 0xFFFF) {
+			throw new IllegalArgumentException("A name can be at most 65535 bytes long: " + name);
+		}
+		int mask = nameTable.capacity() / 4 - 1;
+		int i = hash(Arrays.hashCode(bytes)) & mask;
+		int start;
+		while ((start = nameTable.getInt(i * 4) - 1) != NONE) {
+			if (nameEquals(start, bytes)) {
+				return start;
+			}
+			i = (i + 1) & mask;
+		}
+		start = namesEnd;
+		ByteBuffer kept = names;
+		if (start + 2 + bytes.length > kept.capacity()) {
+			ByteBuffer grown = direct((int) Math.max(Math.min(Integer.MAX_VALUE - 8, kept.capacity() * 2L), start + 2 + bytes.length));
+			grown.put(kept.duplicate().position(0).limit(start));
+			kept = grown;
+		}
+		kept.putShort(start, (short) bytes.length);
+		kept.put(start + 2, bytes);
+		names = kept; // published again, before any row that uses the name
+		namesEnd = start + 2 + bytes.length;
+		nameTable.putInt(i * 4, start + 1);
+		if (++nameCount > maxUsed(mask + 1)) {
+			rehashNames((mask + 1) * 2);
+		}
+		return start;
+	}
+
+	private boolean nameEquals(int start, byte[] bytes) {
+		ByteBuffer kept = names;
+		if ((kept.getShort(start) & 0xFFFF) != bytes.length) {
+			return false;
+		}
+		for (int j = 0; j < bytes.length; j++) {
+			if (kept.get(start + 2 + j) != bytes[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehashNames(int capacity) {
+		ByteBuffer old = nameTable;
+		ByteBuffer grown = direct(capacity * 4);
+		int mask = capacity - 1;
+		for (int j = 0; j < old.capacity() / 4; j++) {
+			int start = old.getInt(j * 4) - 1;
+			if (start != NONE) {
+				int i = hash(nameHash(start)) & mask;
+				while (grown.getInt(i * 4) != 0) {
+					i = (i + 1) & mask;
+				}
+				grown.putInt(i * 4, start + 1);
+			}
+		}
+		nameTable = grown;
+	}
+
+	// The same hash as Arrays.hashCode of the name's bytes
+	private int nameHash(int start) {
+		ByteBuffer kept = names;
+		int length = kept.getShort(start) & 0xFFFF;
+		int h = 1;
+		for (int j = 0; j < length; j++) {
+			h = 31 * h + kept.get(start + 2 + j);
+		}
+		return h;
+	}
+
+	private String name(int start) {
+		if (start == NONE) {
+			return null;
+		}
+		ByteBuffer kept = names;
+		byte[] bytes = new byte[kept.getShort(start) & 0xFFFF];
+		kept.get(start + 2, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int get(int row, int column) {
+		return segment(row).getInt(offset(row, column));
+	}
+
+	private ByteBuffer segment(int row) {
+		return segments[row >>> SEGMENT_SHIFT];
+	}
+
+	// Where a row's value for a column is in its segment
+	private static int offset(int row, int column) {
+		return ((column << SEGMENT_SHIFT) + (row & (SEGMENT_ROWS - 1))) * 4;
+	}
+
+	/**
+	 * Copies the live entries into a new index, dropping tombstones, then publishes it.
+	 * @param capacity the capacity of the new index
+	 */
+	private void resize(int capacity) {
+		Table old = table;
+		Table t = new Table(capacity);
+		for (int j = 0; j <= old.mask; j++) {
+			int row = old.row(j);
+			if (row > 0) {
+				int key = old.key(j);
+				int i = hash(key) & t.mask;
+				while (t.key(i) != 0) {
+					i = (i + 1) & t.mask;
+				}
+				t.set(i, key, row);
+			}
+		}
+		used = size;
+		table = t; // volatile write publishes the filled index
+	}
+
+	private static ByteBuffer direct(int capacity) {
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * The most slots that can be used before growing, keeps a table at most 75% full
+	 */
+	private static int maxUsed(int capacity) {
+		return (int) (capacity * 3L / 4);
+	}
+
+	/**
+	 * The power of two capacity that holds a number of passengers below the maximum load
+	 */
+	private static int capacityFor(int expectedSize) {
+		long wanted = Math.max(MIN_CAPACITY, (long) expectedSize * 4 / 3 + 1);
+		if (wanted >= MAX_CAPACITY) {
+			return MAX_CAPACITY;
+		}
+		return Integer.highestOneBit((int) wanted - 1) << 1;
+	}
+
+	/**
+	 * Spreads the packed codes, which are sequential for similar booking references, across the table
+	 */
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
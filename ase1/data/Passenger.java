@@ -1,17 +1,31 @@
 package ase1.data;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 import ase1.IllegalReferenceCodeException;
 
 public class Passenger {
+	// check-in states, held by the passenger for the PassengerList index
+	static final int NOT_CHECKED_IN = 0;
+	static final int CHECKED_IN = 1;
+	static final int REMOVED = 2;
+
+	private static final AtomicIntegerFieldUpdater<Passenger> CHECK_IN_STATE =
+			AtomicIntegerFieldUpdater.newUpdater(Passenger.class, "checkInState");
+
 	private String bookingRefCode;
 	private String firstName;
 	private String lastName;
 	private Flight flight;
+	// fits in the object's padding, so the state costs no extra memory per passenger
+	private volatile int checkInState;
+	// the epoch of the first CheckInView to include the passenger's check-in, 0 until then
+	private int viewEpoch;
 
 	public Passenger(String bookingRefCode, String firstName, String lastName, Flight flight) 
 		throws IllegalReferenceCodeException {
 	//validate booking ref code
-	if(!bookingRefCode.matches("[a-z]{3}[0-9]{4}")) {
+	if(!BookingRefCodec.isValid(bookingRefCode)) { // [a-z]{3}[0-9]{4}, without compiling a regex for every passenger
 		//if it fails throw an exception
 		throw new IllegalReferenceCodeException
 		("Illegal booking reference passed to constructor: " + bookingRefCode);
@@ -23,6 +37,12 @@ public class Passenger {
 	this.flight = flight;
 }
 
+	/**
+	 * Constructs a passenger whose details are kept elsewhere, for subclasses that look them up when asked
+	 */
+	Passenger() {
+	}
+
 	public String getBookingRefCode() {
 		return this.bookingRefCode;
 		}
@@ -39,6 +59,57 @@ public class Passenger {
 		return this.flight;
 		}
 	
+	/**
+	 * returns whether the passenger has been checked in
+	 * @return true if they are checked in
+	 */
+	public boolean isCheckedIn() {
+		return getCheckInState() == CHECKED_IN;
+		}
+	
+	/**
+	 * returns the current check-in state
+	 * @return one of NOT_CHECKED_IN, CHECKED_IN or REMOVED
+	 */
+	int getCheckInState() {
+		return this.checkInState;
+		}
+	
+	/**
+	 * sets the check-in state, only used before the passenger is added to an index
+	 * @param state the new state
+	 */
+	void setCheckInState(int state) {
+		this.checkInState = state;
+		}
+	
+	/**
+	 * returns the epoch of the first view to include the passenger's check-in
+	 * @return the epoch, or 0 if no view includes it yet
+	 */
+	int getViewEpoch() {
+		return this.viewEpoch;
+		}
+	
+	/**
+	 * sets the epoch of the first view to include the passenger's check-in
+	 * @param epoch the epoch
+	 */
+	void setViewEpoch(int epoch) {
+		this.viewEpoch = epoch;
+		}
+	
+	/**
+	 * Moves the passenger from one check-in state to another, only if they are still in the expected state.
+	 * Done with a compare and set, so if two desks try the same move only one of them makes it.
+	 * @param expected the state the passenger should currently be in
+	 * @param update the state to move them to
+	 * @return true if this call made the change
+	 */
+	boolean moveCheckInState(int expected, int update) {
+		return CHECK_IN_STATE.compareAndSet(this, expected, update);
+		}
+	
 	public boolean equals(Object obj)
 	{
 		return (obj instanceof Passenger) && (((Passenger)obj).getBookingRefCode().toUpperCase().equals(this.getBookingRefCode().toUpperCase()));
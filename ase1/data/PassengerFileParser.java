@@ -0,0 +1,85 @@
+package ase1.data;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses a chunk of the passengers file into {@link Passenger}s.
+ * Runs on the fork-join threads of {@link MappedLineReader}, so it only builds the passengers,
+ * adding them to the {@link PassengerList} is left to the caller, in file order,
+ * so duplicates are found the same way as when the file was read line by line.
+ */
+class PassengerFileParser implements MappedLineReader.ChunkParser<PassengerFileParser.Chunk> {
+	private final FlightList flights;
+	private final boolean skipIllegal;
+
+	/**
+	 * The passengers found in one chunk of the file
+	 */
+	static final class Chunk {
+		Passenger[] passengers = new Passenger[256];
+		boolean[] checkedIn = new boolean[256];
+		int count;
+		// The first illegal booking reference in the chunk, lines after it are not parsed unless illegal lines are skipped
+		String illegalBookingRef;
+		// Every illegal booking reference in the chunk, when they are skipped
+		List<String> skipped;
+
+		private void add(Passenger passenger, boolean isCheckedIn) {
+			if (count == passengers.length) {
+				passengers = Arrays.copyOf(passengers, count * 2);
+				checkedIn = Arrays.copyOf(checkedIn, count * 2);
+			}
+			passengers[count] = passenger;
+			checkedIn[count] = isCheckedIn;
+			count++;
+		}
+	}
+
+	/**
+	 * Constructs a parser that links passengers to flights in the given list, and stops at an illegal booking reference
+	 * @param flights the flights, already loaded
+	 */
+	PassengerFileParser(FlightList flights) {
+		this(flights, false);
+	}
+
+	/**
+	 * Constructs a parser that links passengers to flights in the given list
+	 * @param flights the flights, already loaded
+	 * @param skipIllegal true to skip lines with an illegal booking reference and carry on, rather than stop
+	 */
+	PassengerFileParser(FlightList flights, boolean skipIllegal) {
+		this.flights = flights;
+		this.skipIllegal = skipIllegal;
+	}
+
+	@Override
+	public Chunk parse(ByteBuffer buf) {
+		Chunk chunk = new Chunk();
+		CsvCursor line = new CsvCursor(buf);
+		while (line.nextLine()) {
+			// Booking reference code, checked from the bytes before making any Strings
+			if (line.nextField().asBookingRef() == BookingRefCodec.INVALID) {
+				if (!skipIllegal) {
+					chunk.illegalBookingRef = line.asString();
+					break;
+				}
+				if (chunk.skipped == null) {
+					chunk.skipped = new ArrayList<String>();
+				}
+				chunk.skipped.add(line.asString());
+				continue;
+			}
+			String bookingRefCode = line.asString();
+			String firstName = line.nextField().asString();
+			String lastName = line.nextField().asString();
+			Flight flight = flights.get(line.nextField());	// Use flight code to link to the flight object
+			boolean checkedIn = line.nextField().asBoolean(); // Whether the passenger is already checked in
+			chunk.add(new Passenger(bookingRefCode, firstName, lastName, flight), checkedIn);
+		}
+		return chunk;
+	}
+}
@@ -0,0 +1,45 @@
+package ase1.data;
+
+/**
+ * Where a {@link PassengerList} keeps its passengers, looked up by packed booking reference code
+ * (see {@link BookingRefCodec}). Lookups must not lock, adding and removing may.
+ * A passenger's check-in state is moved through the passenger a lookup returns.
+ */
+interface PassengerIndex extends Iterable<Passenger> {
+	/**
+	 * finds the passenger for a packed booking reference code
+	 * @param code the packed code
+	 * @return the passenger, or null if there isn't one
+	 */
+	Passenger get(int code);
+
+	/**
+	 * finds the passenger for a booking reference code
+	 * @param bookingRefCode the booking reference code
+	 * @return the passenger, or null if there isn't one
+	 */
+	Passenger get(Object bookingRefCode);
+
+	/**
+	 * Adds a passenger, unless there is already one with the same key
+	 * @param code the packed booking reference code
+	 * @param passenger the passenger to add
+	 * @param state the check-in state to add them with
+	 * @return the passenger already there, or null if this one was added
+	 */
+	Passenger putIfAbsent(int code, Passenger passenger, int state);
+
+	/**
+	 * Removes the passenger for a key, only if it is the given passenger
+	 * @param code the packed booking reference code
+	 * @param passenger the passenger expected, as returned by a lookup
+	 * @return true if the passenger was removed
+	 */
+	boolean remove(int code, Passenger passenger);
+
+	/**
+	 * returns the number of passengers in the index
+	 * @return the number of passengers
+	 */
+	int size();
+}
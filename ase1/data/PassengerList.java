@@ -1,18 +1,63 @@
 package ase1.data;
 
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Scanner;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import ase1.IllegalReferenceCodeException;
 
 
+/**
+ * The collection of passengers, and whether each of them has been checked in.
+ * All passengers are kept in a single index keyed on the packed booking reference code (see {@link BookingRefCodec}),
+ * each passenger holding its own check-in state, so checking
+ * a passenger in is one lookup followed by an atomic change of state. Safe to use from several check-in
+ * desks at once, desks working on different bookings never wait on each other.
+ * Each passenger is also listed on their flight's {@link FlightManifest}, so questions about one flight
+ * never need to go through every passenger.
+ * Passengers can also be searched for by the start of their last name or booking reference, see {@link PassengerSearchIndex}.
+ * The passengers are kept as objects on the heap unless {@link Storage#OFF_HEAP} is asked for.
+ */
 public class PassengerList {
-	private HashMap<String,Passenger> passengersCheckedIn;
-	private HashMap<String,Passenger> passengersNotCheckedIn;
+	/** The file passengers are loaded from when no other file is given */
+	public static final String DEFAULT_FILE = "passengers.txt";
+
+	/**
+	 * Where a PassengerList keeps its passengers
+	 */
+	public enum Storage {
+		/** As objects on the heap, found through an index of packed booking references */
+		HEAP,
+		/**
+		 * In columns of direct memory, with names interned (see {@link OffHeapPassengerStore}). Takes a fraction
+		 * of the memory and gives the garbage collector almost nothing to trace, for tens of millions of bookings.
+		 * Each lookup makes a small passenger object that reads its details from the columns when asked.
+		 */
+		OFF_HEAP
+	}
+
+	private PassengerIndex passengers;
+	
+	// Last names and booking references, for searching by the start of either, changed along with the index
+	private PassengerSearchIndex search;
+	
+	// The file the passengers were loaded from, and how much of it has been read, null until loaded from a file
+	private Path file;
+	private long loadedLength;
+	
+	// Running counts of passengers in each state, kept up to date by every change of state
+	private LongAdder numCheckedIn;
+	private LongAdder numNotCheckedIn;
+	
+	// Views of the index, for those who want the passengers in one state
+	private PassengerStateView passengersCheckedIn;
+	private PassengerStateView passengersNotCheckedIn;
 	
 	/**
 	 * Constructs a new PassengerList and invoke loadPassengers();
@@ -23,84 +68,232 @@ public class PassengerList {
 	 * @param flights
 	 */
 	public PassengerList(FlightList flights) throws IllegalReferenceCodeException  {
-		//instantiate HashMaps
-		passengersCheckedIn = new HashMap<String,Passenger>();
-		passengersNotCheckedIn =new  HashMap<String,Passenger>();
+		this(flights, Paths.get(DEFAULT_FILE));
+	}
+	
+	/**
+	 * Constructs a new PassengerList and loads the passengers from the given file.
+	 * 
+	 * @param flights	The flights the passengers are booked on
+	 * @param file		The comma separated file of passengers
+	 */
+	public PassengerList(FlightList flights, Path file) throws IllegalReferenceCodeException  {
+		this(flights, file, Storage.HEAP);
+	}
+	
+	/**
+	 * Constructs a new PassengerList, keeping its passengers in the given storage, and loads the passengers from the given file.
+	 * 
+	 * @param flights	The flights the passengers are booked on
+	 * @param file		The comma separated file of passengers
+	 * @param storage	Where to keep the passengers
+	 * @throws	UncheckedIOException	If the file could not be read.
+	 */
+	public PassengerList(FlightList flights, Path file, Storage storage) throws IllegalReferenceCodeException  {
+		this(0, storage);
 		try{
-			loadPassengers(flights);
+			loadPassengers(flights, file);
 		}catch(IllegalReferenceCodeException e){
 			System.out.println(e.getMessage());
 		}
 	}
 	
+	/**
+	 * Constructs an empty PassengerList, used when restoring from a snapshot.
+	 * 
+	 * @param	expectedSize	The number of passengers that are going to be added
+	 */
+	PassengerList(int expectedSize) {
+		this(expectedSize, Storage.HEAP);
+	}
+	
+	/**
+	 * Constructs an empty PassengerList that keeps its passengers in the given storage.
+	 * 
+	 * @param	expectedSize	The number of passengers that are going to be added
+	 * @param	storage			Where to keep the passengers
+	 */
+	PassengerList(int expectedSize, Storage storage) {
+		//instantiate the index, counters and views
+		passengers = storage == Storage.OFF_HEAP ? new OffHeapPassengerStore(expectedSize) : new BookingRefMap(expectedSize);
+		search = new PassengerSearchIndex(passengers);
+		numCheckedIn = new LongAdder();
+		numNotCheckedIn = new LongAdder();
+		passengersCheckedIn = new PassengerStateView(passengers, Passenger.CHECKED_IN, numCheckedIn);
+		passengersNotCheckedIn = new PassengerStateView(passengers, Passenger.NOT_CHECKED_IN, numNotCheckedIn);
+	}
+	
 	/**
 	 * Loads the passengers from the comma separated txt file.
 	 * REQUIRES Load flights to already exist
 	 * Parses each line of the text file as a different passenger, and adds them to the collection of passengers.
 	 */
 	public void loadPassengers(FlightList flights) throws IllegalReferenceCodeException  {
-		File f = new File("passengers.txt");
-		Scanner scanner;
-		
+		loadPassengers(flights, Paths.get(DEFAULT_FILE));
+	}
+	
+	/**
+	 * Loads the passengers from the given comma separated file.
+	 * REQUIRES Load flights to already exist
+	 * The file is memory-mapped and split into chunks that are parsed in parallel (see {@link PassengerFileParser}),
+	 * a few at a time, then the passengers are added in the order they appear in the file. Loading stops at the first illegal
+	 * booking reference, with the passengers before it already added, and any duplicates are reported at the end.
+	 * 
+	 * @param	flights	The flights the passengers are booked on
+	 * @param	file	The comma separated file of passengers
+	 * @throws	IllegalReferenceCodeException	If there is an illegal or duplicate booking reference in the file.
+	 * @throws	UncheckedIOException	If the file could not be read, with the passengers of any chunks before the failure already added.
+	 */
+	public void loadPassengers(FlightList flights, Path file) throws IllegalReferenceCodeException  {
 		try {
-			scanner = new Scanner(f);
 			ArrayList<String> duplicates = new ArrayList<String>();
-			while (scanner.hasNextLine()) {     
-				String inputLine = scanner.nextLine();   
-				String parts[] = inputLine.split(",");
-
-				if(!this.add(new Passenger(
-					parts[0], // Booking reference code
-					parts[1], // First name
-					parts[2], // Last name
-					flights.get(parts[3])),	// Use flight code to link to the flight object
-					Boolean.parseBoolean(parts[4]))){ // Whether the passenger is already checked in
-						duplicates.add(parts[0]);
+			this.file = file;
+			// Only a few chunks of parsed passengers are held at once, the rest of the file is still to be parsed
+			MappedLineReader.parse(file, new PassengerFileParser(flights), chunk -> {
+				for (int i = 0; i < chunk.count; i++) {
+					if(!this.add(chunk.passengers[i], chunk.checkedIn[i])){
+						duplicates.add(chunk.passengers[i].getBookingRefCode());
 					}
-			}
+				}
+				if(chunk.illegalBookingRef != null){
+					throw new IllegalReferenceCodeException
+					("Illegal booking reference passed to constructor: " + chunk.illegalBookingRef);
+				}
+			}, end -> loadedLength = end);
 			if(duplicates.size()>0){
 				throw new IllegalReferenceCodeException("Duplicate ids were found in input:"+duplicates);
 			}
-		} catch (FileNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not load passengers from "+file, e);
+		}
+	}
+	
+	/**
+	 * Adds the passengers appended to the file since it was loaded, or since this was last called, such as bookings
+	 * made during the day. Only whole lines are read, a line still being written is left for next time.
+	 * The new lines are parsed a few chunks at a time, in parallel, and each chunk's passengers are added in file order
+	 * while desks carry on checking in. Unlike loading, a line with an illegal booking reference is skipped rather than
+	 * stopping the rest, and both those and duplicates are reported once everything else has been added.
+	 * 
+	 * @param	flights	The flights the passengers are booked on, with any appended flights already added
+	 * @param	epochs	Told about each passenger added, so they are in the next view, or null if no views are taken
+	 * @throws	IOException	If the file can't be read, or is shorter than when it was last read
+	 * @throws	IllegalReferenceCodeException	If there were illegal or duplicate booking references in the appended lines.
+	 */
+	public synchronized void loadAppended(FlightList flights, CheckInEpochs epochs) throws IOException, IllegalReferenceCodeException {
+		if(file == null){
+			return; // not loaded from a file, there's nothing to follow
+		}
+		ArrayList<String> duplicates = new ArrayList<String>();
+		ArrayList<String> illegal = new ArrayList<String>();
+		// Each chunk counts as read once it is added, so if adding one fails the next call carries on from there
+		MappedLineReader.parseAppended(file, loadedLength, new PassengerFileParser(flights, true), chunk -> {
+			// Views wait while a chunk is added, so a new booking is always in a view before any check-in of it
+			int viewEpoch = epochs == null ? CheckInEpochs.BASE : epochs.beginBookings();
+			try {
+				for (int i = 0; i < chunk.count; i++) {
+					if(!this.add(chunk.passengers[i], chunk.checkedIn[i], viewEpoch)){
+						duplicates.add(chunk.passengers[i].getBookingRefCode());
+					}
+					else if(epochs != null){
+						epochs.booked(chunk.passengers[i], chunk.checkedIn[i]);
+					}
+				}
+			} finally {
+				if(epochs != null){
+					epochs.endBookings();
+				}
+			}
+			if(chunk.skipped != null){
+				illegal.addAll(chunk.skipped);
+			}
+		}, end -> loadedLength = end);
+		if(illegal.size()>0){
+			throw new IllegalReferenceCodeException("Illegal booking references were skipped:"+illegal
+					+(duplicates.size()>0 ? "\nDuplicate ids were found in input:"+duplicates : ""));
+		}
+		if(duplicates.size()>0){
+			throw new IllegalReferenceCodeException("Duplicate ids were found in input:"+duplicates);
 		}
 	}
 	
 	/**
 	 * Retrieves the {@link Passenger} with the matching booking reference code.
-	 * Checks the two hash maps, passengersCheckedIn and passengersNotCheckedIn for the passenger with matching booking reference code. 
-	 * Starting with the checked in map, if that doesn't work moves to the notCheckedIn map.
+	 * Looks up the passenger in the index, whether or not they have been checked in.
 	 * 
 	 * @param	bookingRefCode	the booking reference code for the passenger wanted.
 	 * @return	The passenger with the matching booking reference code.
-	 * @throws	IllegalReferenceCodeException	If there is no passenger with a matching booking reference code in either of the two maps.
+	 * @throws	IllegalReferenceCodeException	If there is no passenger with a matching booking reference code.
 	 */
 	public Passenger get(String bookingRefCode) throws IllegalReferenceCodeException {
-		Passenger output;
-		if((output = passengersCheckedIn.get(bookingRefCode)) != null){
-			return output;
-		}else if((output = passengersNotCheckedIn.get(bookingRefCode)) != null){
+		Passenger output = passengers.get(bookingRefCode);
+		if(output != null){
 			return output;
 		}else{
 			throw new IllegalReferenceCodeException
 			("There is no passenger with this reference code: "+bookingRefCode);
 		}
 	}
+	
+	/**
+	 * Looks up the {@link Passenger} with the matching booking reference code, without throwing when there isn't one.
+	 * For callers such as kiosks where an unknown booking reference is an everyday result rather than an error.
+	 * 
+	 * @param	bookingRefCode	the booking reference code for the passenger wanted.
+	 * @return	The passenger with the matching booking reference code, or null if there is no such passenger.
+	 */
+	public Passenger find(String bookingRefCode) {
+		return passengers.get(bookingRefCode);
+	}
+	
+	/**
+	 * Finds the passengers whose last name starts with the given prefix, ignoring case, for an agent who only has a surname.
+	 * Only the names starting with the prefix are looked at, not every passenger.
+	 * 
+	 * @param	prefix	The start of the last name, or the whole of it
+	 * @param	limit	The most passengers to return
+	 * @return	The passengers found, in order of last name, whatever their check-in state.
+	 */
+	public List<Passenger> findByLastName(String prefix, int limit) {
+		return search.byLastName(prefix, limit);
+	}
+	
+	/**
+	 * Finds the passengers whose booking reference starts with the given prefix, ignoring case,
+	 * for an agent who only has part of the reference. Only the references starting with the prefix are looked at.
+	 * 
+	 * @param	prefix	The start of the booking reference, up to the whole of it
+	 * @param	limit	The most passengers to return
+	 * @return	The passengers found, in order of booking reference, whatever their check-in state.
+	 */
+	public List<Passenger> findByBookingRef(String prefix, int limit) {
+		return search.byBookingRef(prefix, limit);
+	}
 
 
-	//
-	public HashMap<String,Passenger> getNotCheckedIn(){
+	/**
+	 * Read-only view of the passengers still to be checked in.
+	 * Backed by the index, so it is always up to date and nothing is copied.
+	 * 
+	 * @return	Map of booking reference code to passenger, for passengers not checked in.
+	 */
+	public Map<String,Passenger> getNotCheckedIn(){
 		return passengersNotCheckedIn;
 	}
 
-	public HashMap<String,Passenger> getCheckedIn(){
+	/**
+	 * Read-only view of the passengers who have been checked in.
+	 * Backed by the index, so it is always up to date and nothing is copied.
+	 * 
+	 * @return	Map of booking reference code to passenger, for passengers checked in.
+	 */
+	public Map<String,Passenger> getCheckedIn(){
 		return passengersCheckedIn;
 	}
 
 	/**
 	 * Adds a passenger to the collection.
-	 * Adds the passenger to the correct hash map based on if they haved been checked in or not.
+	 * Adds the passenger to the index with the right check-in state.
 	 * Checks to make sure there isn't already a passenger with the same booking reference code.
 	 * 
 	 * @param	thePassenger	The passenger that is to be added to the collection
@@ -108,43 +301,113 @@ public class PassengerList {
 	 * @return	boolean to say if the passenger was added to the list successfully.
 	 */
 	public boolean add(Passenger thePassenger, boolean checkedIn) {
-		// Cant have two passengers with the same booking reference code, first need to check both hashmaps
-		if(passengersCheckedIn.containsKey(thePassenger.getBookingRefCode()) 
-		|| passengersNotCheckedIn.containsKey(thePassenger.getBookingRefCode())){
-			// As one of the lists contains a passenger with the same key, we return false to show that it cannot be added.
-			return false;
+		return add(thePassenger, checkedIn, CheckInEpochs.BASE); // Checked in before any view was taken
+	}
+	
+	/**
+	 * Adds a passenger to the collection, as {@link #add(Passenger, boolean)}.
+	 * 
+	 * @param	thePassenger	The passenger that is to be added to the collection
+	 * @param	checkedIn		Whether the passenger has been checked in yet or not.
+	 * @param	viewEpoch		The first view a passenger already checked in is checked in for
+	 * @return	boolean to say if the passenger was added to the list successfully.
+	 */
+	boolean add(Passenger thePassenger, boolean checkedIn, int viewEpoch) {
+		// Cant have two passengers with the same booking reference code, putIfAbsent checks and adds in one step
+		int key = BookingRefCodec.encode(thePassenger.getBookingRefCode());
+		int state = checkedIn ? Passenger.CHECKED_IN : Passenger.NOT_CHECKED_IN;
+		if(checkedIn){
+			thePassenger.setViewEpoch(viewEpoch);
+		}
+		synchronized(search){
+			if(passengers.putIfAbsent(key, thePassenger, state) != null){
+				// As the index contains a passenger with the same key, we return false to show that it cannot be added.
+				return false;
+			}
+			search.add(key, thePassenger.getLastName());
 		}
-		// if the method hasn't been stopped from the return above, then we can add the passenger to the right hashmap
 		if(checkedIn){
-			passengersCheckedIn.put(thePassenger.getBookingRefCode(),thePassenger);
+			numCheckedIn.increment();
 			thePassenger.getFlight().addPassengerAndBaggage(0,0,0); // Add to the number of passengers on this flight, there is no information on the baggage for these passengers
 		}
 		else{
-			passengersNotCheckedIn.put(thePassenger.getBookingRefCode(),thePassenger);
+			numNotCheckedIn.increment();
 		}
+		addToManifest(thePassenger, state);
 		// With the passenger added to the collection we can return true to show operation was successful.
 		return true;
 	}
 	
+	/**
+	 * Adds a passenger restored from a snapshot.
+	 * Unlike add, the passenger's flight isn't touched, as the snapshot already holds the flight's totals.
+	 * 
+	 * @param	thePassenger	The passenger that is to be added to the collection
+	 * @param	checkedIn		Whether the passenger had been checked in.
+	 * @return	boolean to say if the passenger was added, false if the booking reference was already in use.
+	 */
+	boolean restore(Passenger thePassenger, boolean checkedIn) {
+		int key = BookingRefCodec.encode(thePassenger.getBookingRefCode());
+		int state = checkedIn ? Passenger.CHECKED_IN : Passenger.NOT_CHECKED_IN;
+		if(checkedIn){
+			thePassenger.setViewEpoch(CheckInEpochs.BASE); // Checked in before any view was taken
+		}
+		synchronized(search){
+			if(passengers.putIfAbsent(key, thePassenger, state) != null){
+				return false;
+			}
+			search.add(key, thePassenger.getLastName());
+		}
+		(checkedIn ? numCheckedIn : numNotCheckedIn).increment();
+		addToManifest(thePassenger, state);
+		return true;
+	}
+	
+	/**
+	 * Every passenger in the collection, whatever their check-in state, used when saving a snapshot.
+	 * 
+	 * @return	The passengers, in no particular order.
+	 */
+	Iterable<Passenger> all() {
+		return passengers;
+	}
+	
 	/**
 	 * Remove the passenger with the matching booking reference code from the collection.
-	 * Checks both hashmaps to see if they contain a matching booking reference code, 
-	 * if one does removes the passenger from the collection.
+	 * Marks the passenger as removed before taking them out of the index, 
+	 * so a desk can't check them in while they are being removed.
 	 * 
 	 * @param	bookingRefCode	The booking reference of the passenger that is to be removed
 	 * @return	A boolean to say if a passenger was removed or if there is no matching passenger with this booking reference code.
 	 */
 	public boolean remove(String bookingRefCode) { 
-		if(passengersCheckedIn.containsKey(bookingRefCode)){ 		// If the checkIn map contains the booking reference
-			passengersCheckedIn.remove(bookingRefCode); 			// remove from the hash map
-			return true;											// And return true to show that this was successful
-		}else if(passengersCheckedIn.containsKey(bookingRefCode)){	// Same as above
-			passengersNotCheckedIn.remove(bookingRefCode);
-			return true;
-		}else{
-			return false;											// If neither list contains the booking reference, return false to show remove was unsuccessful
+		int key = BookingRefCodec.encode(bookingRefCode);
+		Passenger passenger = passengers.get(key);
+		if(passenger == null){
+			return false;	// If the index doesn't contain the booking reference, return false to show remove was unsuccessful
 		}
+		int state;
+		do{
+			state = passenger.getCheckInState();
+			if(state == Passenger.REMOVED){
+				return false;	// Another thread got there first
+			}
+		}while(!passenger.moveCheckInState(state, Passenger.REMOVED));
 		
+		String lastName = passenger.getLastName();
+		synchronized(search){
+			passengers.remove(key, passenger);
+			search.remove(key, lastName);
+		}
+		if(state == Passenger.CHECKED_IN){
+			numCheckedIn.decrement();
+		}else{
+			numNotCheckedIn.decrement();
+		}
+		if(passenger.getFlight() != null){
+			passenger.getFlight().getManifest().remove(passenger, state);
+		}
+		return true;
 	}
 	
 	/**
@@ -153,26 +416,70 @@ public class PassengerList {
 	 * @return	The number of passengers left to be checked in.
 	 */
 	public int getNumToCheckIn() {
-		return passengersNotCheckedIn.size();
+		return numNotCheckedIn.intValue();
+	}
+	
+	/**
+	 * Retrieve the number of passengers that have been checked in.
+	 * 
+	 * @return	The number of passengers checked in.
+	 */
+	public int getNumCheckedIn() {
+		return numCheckedIn.intValue();
 	}
 	
 	/**
 	 * Process the passenger as being checked in.
-	 * This moves them from the not checked in hash map to the checked in hashmap.
+	 * A single lookup in the index, then the passenger's state is moved from not checked in to checked in
+	 * atomically, so if two desks try to check in the same booking only one of them succeeds.
 	 * 
 	 * @param	bookingRefCode	The booking reference of the passenger to be checked in.
-	 * @return	A boolean to show if the passenger was moved successfully, returns false when there is no matching bookingRefCode, in the collection for passengers to be checked in.
+	 * @return	A boolean to show if the passenger was checked in successfully, returns false when there is no matching bookingRefCode, in the collection for passengers to be checked in.
 	 */
 	public boolean checkInPassenger(String bookingRefCode){
-		if(passengersNotCheckedIn.containsKey(bookingRefCode)){
-			passengersCheckedIn.put(bookingRefCode,passengersNotCheckedIn.get(bookingRefCode));
-			passengersNotCheckedIn.remove(bookingRefCode);
-			return true;
+		Passenger passenger = passengers.get(bookingRefCode);
+		if(passenger == null || !passenger.moveCheckInState(Passenger.NOT_CHECKED_IN, Passenger.CHECKED_IN)){
+			return false;
 		}
-		else{
+		numNotCheckedIn.decrement();
+		numCheckedIn.increment();
+		if(passenger.getFlight() != null){
+			passenger.getFlight().getManifest().checkedIn();
+		}
+		return true;
+	}
+	
+	/**
+	 * Moves a passenger just checked in back to waiting to check in, because their flight turned them away.
+	 * Only for the desk that checked them in, before the check-in has been journaled or published.
+	 * Another desk trying to check them in meanwhile is told they are already checked in.
+	 * 
+	 * @param	bookingRefCode	The booking reference of the passenger who was turned away.
+	 * @return	A boolean to show if the passenger was moved back, false if they were not checked in.
+	 */
+	public boolean cancelCheckIn(String bookingRefCode){
+		Passenger passenger = passengers.get(bookingRefCode);
+		if(passenger == null || !passenger.moveCheckInState(Passenger.CHECKED_IN, Passenger.NOT_CHECKED_IN)){
 			return false;
 		}
-		
+		numCheckedIn.decrement();
+		numNotCheckedIn.increment();
+		if(passenger.getFlight() != null){
+			passenger.getFlight().getManifest().checkInCancelled();
+		}
+		return true;
+	}
+	
+	/**
+	 * Adds a passenger just added to the index to their flight's manifest.
+	 * 
+	 * @param	thePassenger	The passenger
+	 * @param	state			The check-in state they were added in
+	 */
+	private void addToManifest(Passenger thePassenger, int state) {
+		if(thePassenger.getFlight() != null){
+			thePassenger.getFlight().getManifest().add(thePassenger, state);
+		}
 	}
 	
 }
\ No newline at end of file
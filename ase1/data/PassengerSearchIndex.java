@@ -0,0 +1,236 @@
+package ase1.data;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Finds a {@link PassengerList}'s passengers from the start of their last name, or of their booking reference,
+ * for agents and kiosks who only have part of either, without going through every passenger.
+ *
+ * Last names are kept once each in a map sorted ignoring case, each with the codes of the passengers
+ * who have it, so the names starting with a prefix are next to each other and a search only reads those.
+ * The packed codes made by {@link BookingRefCodec} sort in the same order as the references, so the references
+ * starting with a prefix are a range of codes, and a bit is set for each code in use: a search reads the
+ * range's words of bits, in pages only allocated once a code in them is used.
+ *
+ * Searches don't lock, and every passenger found is looked up in the passenger index, so a passenger
+ * removed while searching is never returned. Adding and removing are synchronized on the search index,
+ * which the passenger list also holds while changing its own index, so the two always agree.
+ */
+final class PassengerSearchIndex {
+	private static final VarHandle PAGES = MethodHandles.arrayElementVarHandle(long[][].class);
+	private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+	// Each page of bits covers 2^16 codes in 1024 longs
+	private static final int PAGE_SHIFT = 16;
+	private static final int WORDS_PER_PAGE = 1 << (PAGE_SHIFT - 6);
+	private static final int CODES = BookingRefCodec.encode("zzz9999") + 1;
+
+	// Marks a slot in a name's codes whose passenger has been removed
+	private static final int REMOVED = -1;
+	private static final int MIN_CODES = 4;
+
+	/**
+	 * The codes of the passengers with one last name, in the order they were added.
+	 * The size is written after the codes below it, and the array is only ever replaced by one at least as long,
+	 * so a reader that reads the size then the array can read every slot below the size.
+	 */
+	private static final class Codes {
+		volatile int[] codes = new int[MIN_CODES];
+		volatile int size;
+		int removed; // slots marked removed, only used while holding the index's lock
+
+		void add(int code) {
+			int[] c = codes;
+			if (size == c.length) {
+				c = Arrays.copyOf(c, c.length + (c.length >> 1));
+				codes = c;
+			}
+			c[size] = code;
+			size = size + 1;
+		}
+
+		void remove(int code) {
+			int[] c = codes;
+			int n = size;
+			for (int i = 0; i < n; i++) {
+				if (c[i] == code) {
+					c[i] = REMOVED;
+					if (++removed > n >> 1) {
+						compact(c, n);
+					}
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Moves the codes still in use to the front of a new array as long as the old one,
+		 * filling the rest with removed slots for readers still using the old size
+		 */
+		private void compact(int[] c, int n) {
+			int[] live = new int[c.length];
+			int j = 0;
+			for (int i = 0; i < n; i++) {
+				if (c[i] != REMOVED) {
+					live[j++] = c[i];
+				}
+			}
+			Arrays.fill(live, j, live.length, REMOVED);
+			codes = live;
+			size = j;
+			removed = 0;
+		}
+	}
+
+	private final PassengerIndex passengers;
+	private final long[][] pages = new long[(CODES >>> PAGE_SHIFT) + 1][];
+	private final ConcurrentSkipListMap<String, Codes> names = new ConcurrentSkipListMap<String, Codes>(String.CASE_INSENSITIVE_ORDER);
+	// Each spelling of a name seen so far, so adding a passenger is usually a hash lookup, only used while holding the lock
+	private final HashMap<String, Codes> spellings = new HashMap<String, Codes>();
+
+	/**
+	 * Constructs an empty search index
+	 * @param passengers the index the passengers found are looked up in
+	 */
+	PassengerSearchIndex(PassengerIndex passengers) {
+		this.passengers = passengers;
+	}
+
+	/**
+	 * Adds a passenger just added to the passenger index
+	 * @param code the packed booking reference code
+	 * @param lastName the passenger's last name
+	 */
+	synchronized void add(int code, String lastName) {
+		long[] page = (long[]) PAGES.getAcquire(pages, code >>> PAGE_SHIFT);
+		if (page == null) {
+			page = new long[WORDS_PER_PAGE];
+			PAGES.setRelease(pages, code >>> PAGE_SHIFT, page);
+		}
+		int word = (code >>> 6) & (WORDS_PER_PAGE - 1);
+		WORDS.setRelease(page, word, page[word] | (1L << code));
+		if (lastName != null) {
+			codesFor(lastName).add(code);
+		}
+	}
+
+	/**
+	 * Removes a passenger just removed from the passenger index
+	 * @param code the packed booking reference code
+	 * @param lastName the passenger's last name
+	 */
+	synchronized void remove(int code, String lastName) {
+		long[] page = pages[code >>> PAGE_SHIFT];
+		if (page != null) {
+			int word = (code >>> 6) & (WORDS_PER_PAGE - 1);
+			WORDS.setRelease(page, word, page[word] & ~(1L << code));
+		}
+		if (lastName != null) {
+			codesFor(lastName).remove(code);
+		}
+	}
+
+	private Codes codesFor(String lastName) {
+		Codes codes = spellings.get(lastName);
+		if (codes == null) {
+			codes = names.get(lastName);
+			if (codes == null) {
+				codes = new Codes();
+				names.put(lastName, codes);
+			}
+			spellings.put(lastName, codes);
+		}
+		return codes;
+	}
+
+	/**
+	 * Finds the passengers whose last name starts with a prefix, ignoring case
+	 * @param prefix the start of the last name, the whole name, or empty for everyone
+	 * @param limit the most passengers to return
+	 * @return the passengers, in order of last name, then in the order they were added
+	 */
+	List<Passenger> byLastName(String prefix, int limit) {
+		List<Passenger> found = new ArrayList<Passenger>(Math.min(limit, 16));
+		if (limit <= 0) {
+			return found;
+		}
+		for (Codes name : names.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+			int n = name.size;
+			int[] codes = name.codes;
+			for (int i = 0; i < n; i++) {
+				if (codes[i] == REMOVED) {
+					continue;
+				}
+				Passenger passenger = passengers.get(codes[i]);
+				if (passenger != null && passenger.getCheckInState() != Passenger.REMOVED
+						&& passenger.getLastName().regionMatches(true, 0, prefix, 0, prefix.length())) {
+					found.add(passenger);
+					if (found.size() == limit) {
+						return found;
+					}
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the passengers whose booking reference starts with a prefix, ignoring case
+	 * @param prefix the start of the booking reference, up to all seven characters
+	 * @param limit the most passengers to return
+	 * @return the passengers, in order of booking reference, none if the prefix can't start a legal booking reference
+	 */
+	List<Passenger> byBookingRef(String prefix, int limit) {
+		List<Passenger> found = new ArrayList<Passenger>(Math.min(limit, 16));
+		if (limit <= 0 || prefix.length() > BookingRefCodec.LENGTH) {
+			return found;
+		}
+		// The lowest and highest references with the prefix, codes in between all have it
+		int from = BookingRefCodec.encode(pad(prefix, 'a', '0'));
+		int to = BookingRefCodec.encode(pad(prefix, 'z', '9'));
+		if (from == BookingRefCodec.INVALID || to == BookingRefCodec.INVALID) {
+			return found;
+		}
+		for (int code = from; code <= to; ) {
+			long[] page = (long[]) PAGES.getAcquire(pages, code >>> PAGE_SHIFT);
+			if (page == null) {
+				code = ((code >>> PAGE_SHIFT) + 1) << PAGE_SHIFT;
+				continue;
+			}
+			long bits = (long) WORDS.getAcquire(page, (code >>> 6) & (WORDS_PER_PAGE - 1)) & (-1L << code);
+			int wordEnd = (code | 63) + 1;
+			if (to < wordEnd - 1) {
+				bits &= -1L >>> (63 - (to & 63));
+			}
+			while (bits != 0) {
+				Passenger passenger = passengers.get((code & ~63) + Long.numberOfTrailingZeros(bits));
+				if (passenger != null && passenger.getCheckInState() != Passenger.REMOVED) {
+					found.add(passenger);
+					if (found.size() == limit) {
+						return found;
+					}
+				}
+				bits &= bits - 1;
+			}
+			code = wordEnd;
+		}
+		return found;
+	}
+
+	/**
+	 * Fills in the rest of a booking reference after a prefix, with the given letter and digit
+	 */
+	private static String pad(String prefix, char letter, char digit) {
+		char[] chars = new char[BookingRefCodec.LENGTH];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = i < prefix.length() ? Character.toLowerCase(prefix.charAt(i)) : i < 3 ? letter : digit;
+		}
+		return new String(chars);
+	}
+}
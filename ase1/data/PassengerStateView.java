@@ -0,0 +1,86 @@
+package ase1.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-only view of the passengers in a {@link PassengerList} that are in one check-in state.
+ * Nothing is copied, lookups go straight to the shared index and check the passenger's state,
+ * and the size comes from the list's running counter.
+ */
+class PassengerStateView extends AbstractMap<String,Passenger> {
+	private final PassengerIndex index;
+	private final int state;
+	private final LongAdder count;
+
+	PassengerStateView(PassengerIndex index, int state, LongAdder count) {
+		this.index = index;
+		this.state = state;
+		this.count = count;
+	}
+
+	@Override
+	public Passenger get(Object bookingRefCode) {
+		Passenger passenger = index.get(bookingRefCode);
+		return (passenger != null && passenger.getCheckInState() == state) ? passenger : null;
+	}
+
+	@Override
+	public boolean containsKey(Object bookingRefCode) {
+		return get(bookingRefCode) != null;
+	}
+
+	@Override
+	public int size() {
+		return count.intValue();
+	}
+
+	@Override
+	public Set<Map.Entry<String,Passenger>> entrySet() {
+		return new AbstractSet<Map.Entry<String,Passenger>>() {
+			@Override
+			public Iterator<Map.Entry<String,Passenger>> iterator() {
+				return new StateIterator();
+			}
+
+			@Override
+			public int size() {
+				return count.intValue();
+			}
+		};
+	}
+
+	/**
+	 * Walks the index, skipping passengers that are not in this view's state.
+	 */
+	private class StateIterator implements Iterator<Map.Entry<String,Passenger>> {
+		private final Iterator<Passenger> passengers = index.iterator();
+		private Passenger next;
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && passengers.hasNext()) {
+				Passenger passenger = passengers.next();
+				if (passenger.getCheckInState() == state) {
+					next = passenger;
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public Map.Entry<String,Passenger> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Passenger passenger = next;
+			next = null;
+			return new AbstractMap.SimpleImmutableEntry<String,Passenger>(passenger.getBookingRefCode(), passenger);
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package ase1.data;
+
+/**
+ * Formats numbers for reports straight into a StringBuilder, without going through String.format.
+ */
+final class ReportFormat {
+	private ReportFormat() {
+	}
+
+	/**
+	 * Appends a fixed point value (see {@link FlightTotals#SCALE}) with two decimal places, rounding half up.
+	 * Only whole numbers are used, so there are no rounding surprises from binary fractions.
+	 * @param out where to append the number
+	 * @param fixed the value in millionths
+	 */
+	static void appendTwoDecimals(StringBuilder out, long fixed) {
+		long half = FlightTotals.SCALE / 200;
+		long hundredths;
+		if (fixed < 0) {
+			out.append('-');
+			hundredths = (half - fixed) / (FlightTotals.SCALE / 100);
+		} else {
+			hundredths = (fixed + half) / (FlightTotals.SCALE / 100);
+		}
+		out.append(hundredths / 100).append('.');
+		long cents = hundredths % 100;
+		if (cents < 10) {
+			out.append('0');
+		}
+		out.append(cents);
+	}
+}
@@ -0,0 +1,346 @@
+package ase1.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A binary snapshot of the flights and passengers, including who has checked in and each flight's totals,
+ * so a restarted desk node can carry on from where it stopped without re-reading the text files.
+ *
+ * The file is laid out as:
+ * <pre>
+ *   header     int magic, int version, int flight count, int name count, long passenger count
+ *   flights    code, destination, carrier, capacity, max volume, max weight, fee multiplier,
+ *              total passengers, then total volume, weight and fees as fixed point longs
+ *   names      every distinct first and last name, each stored once
+ *   passengers fixed size records: int packed booking reference, int flight index,
+ *              int first name index, int last name index, byte check-in state
+ * </pre>
+ * Strings are a short byte count followed by UTF-8, a missing name is saved as an empty one, as the text loader
+ * reads a missing field. As the passenger records are all the same size,
+ * loading maps the passenger section in slices and decodes them in parallel on the common fork-join pool.
+ */
+public final class SnapshotFile {
+	private static final int MAGIC = 0x41534553; // "ASES"
+	private static final int VERSION = 2;
+	private static final int RECORD_SIZE = 17;
+	private static final int NO_FLIGHT = -1;
+	// Records decoded by each fork-join task, also keeps each mapped slice well under 2GB
+	private static final int RECORDS_PER_TASK = 1 << 18;
+
+	private final FlightList flights;
+	private final PassengerList passengers;
+
+	private SnapshotFile(FlightList flights, PassengerList passengers) {
+		this.flights = flights;
+		this.passengers = passengers;
+	}
+
+	/**
+	 * returns the flights restored from the snapshot
+	 * @return the flights
+	 */
+	public FlightList getFlights() {
+		return flights;
+	}
+
+	/**
+	 * returns the passengers restored from the snapshot
+	 * @return the passengers
+	 */
+	public PassengerList getPassengers() {
+		return passengers;
+	}
+
+	/**
+	 * Writes a snapshot of the flights and passengers.
+	 * The snapshot is written to a temporary file that then replaces the old one, so a crash part way
+	 * through never leaves a broken snapshot behind.
+	 * Desks can carry on checking in while it is written. Every flight's totals and every passenger's check-in
+	 * are taken from the same view, so a check-in is either wholly in the snapshot, the passenger checked in and
+	 * their baggage in their flight's totals, or left out, the passenger still waiting to check in.
+	 * Check-ins left out are in a journal attached to the handler, for replaying on top of the snapshot.
+	 * The passengers are copied out of the index once and both counted and written from that copy, so passengers
+	 * added while saving are either wholly in the snapshot or left out, and never take another passenger's place.
+	 * @param flights the flights
+	 * @param passengers the passengers booked on them
+	 * @param view a view taken of the flights and passengers, which the check-ins are saved as of
+	 * @param file where to write the snapshot
+	 * @throws IOException if the snapshot can't be written
+	 */
+	public static void save(FlightList flights, PassengerList passengers, CheckInView view, Path file) throws IOException {
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			Writer out = new Writer(channel);
+
+			// Number the flights and names, passengers refer to them by index
+			List<Flight> flightOrder = new ArrayList<Flight>(flights.getValues());
+			HashMap<Flight, Integer> flightIndex = new HashMap<Flight, Integer>();
+			for (Flight flight : flightOrder) {
+				flightIndex.put(flight, flightIndex.size());
+			}
+			List<String> names = new ArrayList<String>();
+			HashMap<String, Integer> nameIndex = new HashMap<String, Integer>();
+			ArrayList<Passenger> saved = new ArrayList<Passenger>();
+			for (Passenger passenger : passengers.all()) {
+				if (passenger.getCheckInState() != Passenger.REMOVED) {
+					indexName(passenger.getFirstName(), names, nameIndex);
+					indexName(passenger.getLastName(), names, nameIndex);
+					saved.add(passenger);
+				}
+			}
+			long count = saved.size();
+
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(flightOrder.size());
+			out.putInt(names.size());
+			out.putLong(count);
+
+			for (Flight flight : flightOrder) {
+				out.putString(flight.getFlightCode());
+				out.putString(flight.getDestination());
+				out.putString(flight.getCarrier());
+				out.putInt(flight.getPassengerCapacity());
+				out.putFloat(flight.getMaxBaggageVolume());
+				out.putFloat(flight.getMaxBaggageWeight());
+				out.putFloat(flight.getFeeMultiplier());
+				FlightTotals totals = view.getTotals(flight.getFlightCode());
+				if (totals == null) {
+					// added since the view was taken, nobody had checked in to it as of the view
+					totals = new FlightTotals(0, 0, 0, 0, 0);
+				}
+				out.putInt(totals.getPassengers());
+				out.putLong(totals.getVolumeFixed());
+				out.putLong(totals.getWeightFixed());
+				out.putLong(totals.getFeesFixed());
+			}
+
+			for (String name : names) {
+				out.putString(name);
+			}
+
+			for (Passenger passenger : saved) {
+				// A passenger removed since they were copied keeps their record, marked so it is never loaded
+				int state = passenger.getCheckInState();
+				if (state == Passenger.CHECKED_IN && !view.includes(passenger)) {
+					state = Passenger.NOT_CHECKED_IN; // checked in since the view, so not in its flight's totals either
+				}
+				Integer flight = passenger.getFlight() == null ? null : flightIndex.get(passenger.getFlight());
+				out.putInt(BookingRefCodec.encode(passenger.getBookingRefCode()));
+				out.putInt(flight == null ? NO_FLIGHT : flight);
+				out.putInt(nameIndex.get(nameOf(passenger.getFirstName())));
+				out.putInt(nameIndex.get(nameOf(passenger.getLastName())));
+				out.put((byte) state);
+			}
+			out.flush();
+			channel.force(true);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads a snapshot written by save.
+	 * @param file the snapshot
+	 * @return the restored flights and passengers
+	 * @throws IOException if the snapshot can't be read, or isn't a snapshot
+	 */
+	public static SnapshotFile load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// The header, flights and names are small, map enough to cover them
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+			if (in.remaining() < 24 || in.getInt() != MAGIC) {
+				throw new IOException(file + " is not a snapshot");
+			}
+			int version = in.getInt();
+			if (version != VERSION) {
+				throw new IOException(file + " is snapshot version " + version + ", expected " + VERSION);
+			}
+			int flightCount = in.getInt();
+			int nameCount = in.getInt();
+			long count = in.getLong();
+
+			Flight[] flights = new Flight[flightCount];
+			for (int i = 0; i < flightCount; i++) {
+				Flight flight = new Flight(getString(in), getString(in), getString(in),
+						in.getInt(), in.getFloat(), in.getFloat(), in.getFloat());
+				flight.restoreTotals(in.getInt(), in.getLong(), in.getLong(), in.getLong());
+				flights[i] = flight;
+			}
+			String[] names = new String[nameCount];
+			for (int i = 0; i < nameCount; i++) {
+				names[i] = getString(in);
+			}
+
+			long start = in.position();
+			if (channel.size() - start != count * RECORD_SIZE) {
+				throw new IOException(file + " is truncated");
+			}
+			Passenger[] restored = new Passenger[Math.toIntExact(count)];
+			byte[] states = new byte[restored.length];
+			try {
+				ForkJoinPool.commonPool().invoke(new DecodeTask(channel, start, flights, names, restored, states, 0, restored.length));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			FlightList flightList = new FlightList(Arrays.asList(flights));
+			PassengerList passengerList = new PassengerList(restored.length);
+			for (int i = 0; i < restored.length; i++) {
+				if (restored[i] != null) {
+					passengerList.restore(restored[i], states[i] == Passenger.CHECKED_IN);
+				}
+			}
+			return new SnapshotFile(flightList, passengerList);
+		}
+	}
+
+	private static void indexName(String name, List<String> names, HashMap<String, Integer> nameIndex) {
+		name = nameOf(name);
+		if (!nameIndex.containsKey(name)) {
+			nameIndex.put(name, names.size());
+			names.add(name);
+		}
+	}
+
+	// Saves a missing name as an empty one
+	private static String nameOf(String name) {
+		return name == null ? "" : name;
+	}
+
+	private static String getString(ByteBuffer in) {
+		int length = in.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decodes a range of passenger records, splitting it in half until it is small enough,
+	 * then mapping just that slice of the file
+	 */
+	private static final class DecodeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final long start;
+		private final Flight[] flights;
+		private final String[] names;
+		private final Passenger[] restored;
+		private final byte[] states;
+		private final int from;
+		private final int to;
+
+		DecodeTask(FileChannel channel, long start, Flight[] flights, String[] names,
+				Passenger[] restored, byte[] states, int from, int to) {
+			this.channel = channel;
+			this.start = start;
+			this.flights = flights;
+			this.names = names;
+			this.restored = restored;
+			this.states = states;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > RECORDS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new DecodeTask(channel, start, flights, names, restored, states, from, mid),
+						new DecodeTask(channel, start, flights, names, restored, states, mid, to));
+				return;
+			}
+			MappedByteBuffer in;
+			try {
+				in = channel.map(FileChannel.MapMode.READ_ONLY, start + (long) from * RECORD_SIZE, (long) (to - from) * RECORD_SIZE);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			for (int i = from; i < to; i++) {
+				int code = in.getInt();
+				int flight = in.getInt();
+				int first = in.getInt();
+				int last = in.getInt();
+				byte state = in.get();
+				if (code == BookingRefCodec.INVALID || state == Passenger.REMOVED) {
+					continue;
+				}
+				restored[i] = new Passenger(BookingRefCodec.decode(code), names[first], names[last],
+						flight == NO_FLIGHT ? null : flights[flight]);
+				states[i] = state;
+			}
+		}
+	}
+
+	/**
+	 * Writes through a direct buffer to the channel, in large blocks
+	 */
+	private static final class Writer {
+		private final FileChannel channel;
+		private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+
+		Writer(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void put(byte value) throws IOException {
+			ensure(1);
+			buf.put(value);
+		}
+
+		void putInt(int value) throws IOException {
+			ensure(4);
+			buf.putInt(value);
+		}
+
+		void putLong(long value) throws IOException {
+			ensure(8);
+			buf.putLong(value);
+		}
+
+		void putFloat(float value) throws IOException {
+			ensure(4);
+			buf.putFloat(value);
+		}
+
+		void putString(String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > 0xFFFF) {
+				throw new IOException("String too long for a snapshot: " + value.substring(0, 32) + "...");
+			}
+			ensure(2 + bytes.length);
+			buf.putShort((short) bytes.length);
+			buf.put(bytes);
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (buf.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		void flush() throws IOException {
+			buf.flip();
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+			buf.clear();
+		}
+	}
+}
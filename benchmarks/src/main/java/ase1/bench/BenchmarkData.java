@@ -0,0 +1,131 @@
+package ase1.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Generates flight.txt and passengers.txt datasets for the benchmarks.
+ * Datasets are deterministic and kept in the temp directory, so each size is only generated once.
+ * There is one flight per 200 passengers unless a number of flights is given, and one passenger in five is already checked in.
+ */
+public final class BenchmarkData {
+	private final Path directory;
+	private final int passengers;
+	private final int flights;
+
+	private BenchmarkData(Path directory, int passengers, int flights) {
+		this.directory = directory;
+		this.passengers = passengers;
+		this.flights = flights;
+	}
+
+	/**
+	 * Gets the dataset with the given number of passengers, generating it the first time
+	 * @param passengers the number of passengers
+	 * @return the dataset
+	 */
+	public static BenchmarkData get(int passengers) {
+		return get(passengers, defaultFlights(passengers));
+	}
+
+	/**
+	 * Gets the dataset with the given number of passengers shared between the given number of flights,
+	 * generating it the first time
+	 * @param passengers the number of passengers
+	 * @param flights the number of flights
+	 * @return the dataset
+	 */
+	public static synchronized BenchmarkData get(int passengers, int flights) {
+		String name = flights == defaultFlights(passengers) ? "ase-bench-" + passengers : "ase-bench-" + passengers + "-" + flights;
+		Path directory = Paths.get(System.getProperty("java.io.tmpdir"), name);
+		BenchmarkData data = new BenchmarkData(directory, passengers, flights);
+		try {
+			if (!Files.exists(data.getPassengerFile())) {
+				data.generate();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return data;
+	}
+
+	private static int defaultFlights(int passengers) {
+		return Math.max(10, passengers / 200);
+	}
+
+	public Path getFlightFile() {
+		return directory.resolve("flight.txt");
+	}
+
+	public Path getPassengerFile() {
+		return directory.resolve("passengers.txt");
+	}
+
+	public int getPassengers() {
+		return passengers;
+	}
+
+	public int getFlights() {
+		return flights;
+	}
+
+	/**
+	 * returns the booking reference of the i'th passenger in the dataset
+	 * @param i the passenger's line in the file
+	 * @return their booking reference
+	 */
+	public String bookingRef(int i) {
+		return DataGenerator.bookingRef(i);
+	}
+
+	/**
+	 * returns whether the i'th passenger in the dataset starts off checked in
+	 * @param i the passenger's line in the file
+	 * @return true if they are checked in in the file
+	 */
+	public boolean checkedIn(int i) {
+		return i % 5 == 0;
+	}
+
+	/**
+	 * returns the last name of the i'th passenger in the dataset
+	 * @param i the passenger's line in the file
+	 * @return their last name
+	 */
+	public String lastName(int i) {
+		return DataGenerator.lastName(i);
+	}
+
+	/**
+	 * returns a booking reference that is valid but belongs to no passenger in the dataset
+	 * @param i any number, different numbers give different references
+	 * @return the booking reference
+	 */
+	public String unknownRef(int i) {
+		return bookingRef(passengers + (i % 1_000_000));
+	}
+
+	private void generate() throws IOException {
+		Files.createDirectories(directory);
+		Path flightTemp = directory.resolve("flight.txt.tmp");
+		try (BufferedWriter out = Files.newBufferedWriter(flightTemp, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < flights; i++) {
+				out.write(DataGenerator.flightCode(i) + ",Destination" + (i % 97) + ",Carrier" + (i % 13) + ",250,400.5,5000,1.5\n");
+			}
+		}
+		Files.move(flightTemp, getFlightFile());
+		Path passengerTemp = directory.resolve("passengers.txt.tmp");
+		try (BufferedWriter out = Files.newBufferedWriter(passengerTemp, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < passengers; i++) {
+				out.write(bookingRef(i) + ",First" + (i % 1009) + "," + lastName(i) + ","
+						+ DataGenerator.flightCode(i % flights) + "," + checkedIn(i) + "\n");
+			}
+		}
+		Files.move(passengerTemp, getPassengerFile()); // last, its presence means the dataset is complete
+	}
+}
@@ -0,0 +1,108 @@
+package ase1.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ase1.CheckInHandler;
+import ase1.CheckInResult;
+import ase1.IllegalReferenceCodeException;
+import ase1.data.PassengerList;
+
+/**
+ * checkDetails for a passenger waiting to check in (a hit), and for booking references that
+ * are unknown or already checked in (misses, which throw), against tryCheckDetails, which reports
+ * misses with a status instead. {@link StacklessCheckDetailsBenchmark} repeats them with stackless exceptions.
+ * The references are built up front in random order, like real kiosk input, so the lookup
+ * can't lean on cached String hashes or the index being walked in order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class CheckDetailsBenchmark {
+	private static final int REFS = 1 << 16;
+
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	int passengers;
+
+	@Param({ "HEAP", "OFF_HEAP" })
+	PassengerList.Storage storage;
+
+	CheckInHandler handler;
+	String[] hitRefs = new String[REFS];
+	String[] hitNames = new String[REFS];
+	String[] unknownRefs = new String[REFS];
+	String[] checkedInRefs = new String[REFS];
+	int next;
+
+	@Setup
+	public void setup() {
+		BenchmarkData data = BenchmarkData.get(passengers);
+		handler = new CheckInHandler(data.getFlightFile(), data.getPassengerFile(), storage);
+		java.util.Random random = new java.util.Random(42);
+		for (int i = 0; i < REFS; i++) {
+			int hit;
+			do {
+				hit = random.nextInt(passengers);
+			} while (data.checkedIn(hit));
+			// new Strings, as if just typed in, rather than the ones held by the passengers
+			hitRefs[i] = new String(data.bookingRef(hit).toCharArray());
+			hitNames[i] = new String(data.lastName(hit).toCharArray());
+			unknownRefs[i] = data.unknownRef(random.nextInt(1_000_000));
+			checkedInRefs[i] = data.bookingRef(random.nextInt((passengers + 4) / 5) * 5);
+		}
+	}
+
+	@Benchmark
+	public boolean hit() {
+		int i = next++ & (REFS - 1);
+		return handler.checkDetails(hitRefs[i], hitNames[i]);
+	}
+
+	@Benchmark
+	public Object missUnknown() {
+		try {
+			return handler.checkDetails(unknownRefs[next++ & (REFS - 1)], "Surname");
+		} catch (IllegalReferenceCodeException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public Object missAlreadyCheckedIn() {
+		try {
+			return handler.checkDetails(checkedInRefs[next++ & (REFS - 1)], "Surname");
+		} catch (IllegalReferenceCodeException e) {
+			return e;
+		}
+	}
+
+	@Benchmark
+	public CheckInResult hitStatus() {
+		int i = next++ & (REFS - 1);
+		return handler.tryCheckDetails(hitRefs[i], hitNames[i]);
+	}
+
+	@Benchmark
+	public CheckInResult missUnknownStatus() {
+		return handler.tryCheckDetails(unknownRefs[next++ & (REFS - 1)], "Surname");
+	}
+
+	@Benchmark
+	public CheckInResult missAlreadyCheckedInStatus() {
+		return handler.tryCheckDetails(checkedInRefs[next++ & (REFS - 1)], "Surname");
+	}
+}
@@ -0,0 +1,126 @@
+package ase1.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import ase1.CheckInHandler;
+import ase1.FlightCloseOut;
+import ase1.LatencyHistogram;
+import ase1.data.PassengerList;
+
+/**
+ * Times closing out a day's flights with {@link FlightCloseOut}, for each fork-join pool size in turn, against
+ * writing the single combined report with generateReports. Half the passengers are checked in first.
+ * Each pool size is run twice and the second run reported, the first warms up the JIT and the file system.
+ * Progress is printed while each run goes.
+ *
+ * Options, all optional:
+ * <pre>
+ *   --flights 10000  --passengers 1000000  --parallelism 1,2,4,8  --storage HEAP|OFF_HEAP
+ *   --out directory (default: a directory in java.io.tmpdir)
+ * </pre>
+ */
+public class CloseOutBenchmark {
+	private static final float[] BAG = { 0.5f, 0.4f, 0.25f };
+
+	public static void main(String[] args) throws Exception {
+		int flights = 10_000;
+		int passengers = 1_000_000;
+		int[] parallelism = { 1, 2, 4, 8 };
+		PassengerList.Storage storage = PassengerList.Storage.HEAP;
+		Path out = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "--flights": flights = Integer.parseInt(value); break;
+			case "--passengers": passengers = Integer.parseInt(value); break;
+			case "--parallelism": parallelism = parseCounts(value); break;
+			case "--storage": storage = PassengerList.Storage.valueOf(value); break;
+			case "--out": out = Path.of(value); break;
+			default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		DataGenerator generator = new DataGenerator(flights, passengers, 0, 0, 42);
+		Path data = Path.of(System.getProperty("java.io.tmpdir"), "ase-closeout-" + flights + "-" + passengers);
+		if (!Files.exists(data.resolve("passengers.txt"))) {
+			generator.write(data);
+		}
+		if (out == null) {
+			out = Files.createTempDirectory("ase-closeout-out");
+		}
+		CheckInHandler handler = new CheckInHandler(data.resolve("flight.txt"), data.resolve("passengers.txt"), storage);
+		for (int i = 0; i < passengers; i += 2) {
+			handler.tryProcessPassenger(DataGenerator.bookingRef(i), BAG, 20f);
+		}
+		System.out.printf("%d flights, %d passengers, %s, %d CPUs%n", flights, passengers, storage,
+				Runtime.getRuntime().availableProcessors());
+
+		long start = System.nanoTime();
+		handler.generateReports();
+		System.out.printf("generateReports, one file: %.0fms%n", (System.nanoTime() - start) / 1e6);
+
+		for (int threads : parallelism) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				run(handler, out, pool, false);
+				run(handler, out, pool, true);
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	private static void run(CheckInHandler handler, Path out, ForkJoinPool pool, boolean report) throws Exception {
+		FlightCloseOut closeOut = handler.prepareCloseOut(out);
+		LatencyHistogram perFlight = new LatencyHistogram();
+		closeOut.setListener(result -> {
+			synchronized (perFlight) {
+				perFlight.record(result.getNanos());
+			}
+		});
+		Thread progress = new Thread(() -> {
+			try {
+				while (true) {
+					Thread.sleep(250);
+					if (report) {
+						System.out.printf("  %d of %d flights%n", closeOut.getFlightsClosed(), closeOut.getFlightCount());
+					}
+				}
+			} catch (InterruptedException e) {
+				// done
+			}
+		});
+		progress.setDaemon(true);
+		progress.start();
+		long start = System.nanoTime();
+		List<FlightCloseOut.Result> results = closeOut.run(pool);
+		double millis = (System.nanoTime() - start) / 1e6;
+		progress.interrupt();
+		if (!report) {
+			return;
+		}
+		long bytes = 0;
+		int over = 0;
+		for (FlightCloseOut.Result result : results) {
+			bytes += result.getBytes();
+			if (result.isOverCapacity() || result.isOverWeight() || result.isOverVolume()) {
+				over++;
+			}
+		}
+		System.out.printf("parallelism %d: %.0fms, %d files, %.1fMB, %d over limits, per flight p50 %.2fms p99 %.2fms max %.2fms%n",
+				pool.getParallelism(), millis, results.size(), bytes / 1e6, over, perFlight.getPercentile(0.5) / 1e6,
+				perFlight.getPercentile(0.99) / 1e6, perFlight.getMax() / 1e6);
+	}
+
+	private static int[] parseCounts(String value) {
+		String[] parts = value.split(",");
+		int[] counts = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			counts[i] = Integer.parseInt(parts[i].trim());
+		}
+		return counts;
+	}
+}
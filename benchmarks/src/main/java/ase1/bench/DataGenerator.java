@@ -0,0 +1,148 @@
+package ase1.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import ase1.data.BookingRefCodec;
+
+/**
+ * Generates synthetic flight.txt and passengers.txt files, and the stream of booking references
+ * passengers type in at the desks.
+ * Each passenger line has its own unique booking reference, except that a share of lines repeat the
+ * reference of an earlier line, as duplicate bookings do. Mistyped references go in the requests rather
+ * than the files, as loading stops at the first illegal reference in a file.
+ * The same arguments always generate the same files and requests.
+ *
+ * Run on its own to write the files: DataGenerator directory flights passengers [duplicate rate] [checked in rate]
+ */
+public final class DataGenerator {
+	// Spreads booking references over the whole code space, it shares no factors with 26^3 * 10^4
+	private static final long REF_STRIDE = 7919;
+	private static final long REF_SPACE = 26L * 26 * 26 * 10000;
+
+	private final int flights;
+	private final int passengers;
+	private final double duplicateRate;
+	private final double checkedInRate;
+	private final long seed;
+
+	/**
+	 * Constructs a DataGenerator
+	 * @param flights the number of flights
+	 * @param passengers the number of passenger lines
+	 * @param duplicateRate the share of passenger lines that repeat an earlier booking reference
+	 * @param checkedInRate the share of passengers already checked in, in the file
+	 * @param seed seeds the random choices
+	 */
+	public DataGenerator(int flights, int passengers, double duplicateRate, double checkedInRate, long seed) {
+		this.flights = flights;
+		this.passengers = passengers;
+		this.duplicateRate = duplicateRate;
+		this.checkedInRate = checkedInRate;
+		this.seed = seed;
+	}
+
+	/**
+	 * returns the booking reference given to the i'th passenger, unless their line is a duplicate
+	 * @param i the passenger's line in the file
+	 * @return their booking reference
+	 */
+	public static String bookingRef(int i) {
+		return BookingRefCodec.decode((int) ((i * REF_STRIDE) % REF_SPACE));
+	}
+
+	/**
+	 * returns the last name of the i'th passenger
+	 * @param i the passenger's line in the file
+	 * @return their last name
+	 */
+	public static String lastName(int i) {
+		return "Surname" + (i % 5003);
+	}
+
+	/**
+	 * returns the code of the i'th flight
+	 * @param i the flight's line in the file
+	 * @return the flight code
+	 */
+	public static String flightCode(int i) {
+		return String.format("FL%06d", i);
+	}
+
+	public int getFlights() {
+		return flights;
+	}
+
+	public int getPassengers() {
+		return passengers;
+	}
+
+	/**
+	 * Writes flight.txt and passengers.txt into a directory
+	 * @param directory where to write them, created if need be
+	 * @throws IOException if the files can't be written
+	 */
+	public void write(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		Random random = new Random(seed);
+		try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("flight.txt"), StandardCharsets.UTF_8)) {
+			for (int i = 0; i < flights; i++) {
+				int capacity = 100 + random.nextInt(300);
+				out.write(flightCode(i) + ",Destination" + (i % 97) + ",Carrier" + (i % 13) + "," + capacity + ","
+						+ (capacity * 1.6f) + "," + (capacity * 20) + "," + (1 + random.nextInt(4) * 0.5f) + "\n");
+			}
+		}
+		try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("passengers.txt"), StandardCharsets.UTF_8)) {
+			for (int i = 0; i < passengers; i++) {
+				String ref = (i > 0 && random.nextDouble() < duplicateRate) ? bookingRef(random.nextInt(i)) : bookingRef(i);
+				out.write(ref + ",First" + (i % 1009) + "," + lastName(i) + "," + flightCode(random.nextInt(flights)) + ","
+						+ (random.nextDouble() < checkedInRate) + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Makes the booking references and last names typed in at the desks, in the order they arrive:
+	 * every passenger once, in random order, with a share of them mistyped
+	 * @param badRefRate the share of requests with a mistyped booking reference, half of them still in the right format
+	 * @param refs filled in with the booking references, one per passenger
+	 * @param names filled in with the last names, one per passenger
+	 */
+	public void requests(double badRefRate, String[] refs, String[] names) {
+		Random random = new Random(seed + 1);
+		int[] order = new int[passengers];
+		for (int i = 0; i < passengers; i++) {
+			int j = random.nextInt(i + 1); // shuffle as we go
+			order[i] = order[j];
+			order[j] = i;
+		}
+		for (int k = 0; k < passengers; k++) {
+			int i = order[k];
+			names[k] = lastName(i);
+			refs[k] = bookingRef(i);
+			if (random.nextDouble() < badRefRate) {
+				char[] typed = refs[k].toCharArray();
+				if (random.nextBoolean()) {
+					typed[3 + random.nextInt(4)] = (char) ('0' + random.nextInt(10)); // a wrong digit, probably nobody's
+				} else {
+					typed[random.nextInt(3)] = Character.toUpperCase(typed[0]); // not a booking reference at all
+				}
+				refs[k] = new String(typed);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("DataGenerator directory flights passengers [duplicate rate] [checked in rate]");
+			System.exit(1);
+		}
+		DataGenerator generator = new DataGenerator(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+				args.length > 3 ? Double.parseDouble(args[3]) : 0, args.length > 4 ? Double.parseDouble(args[4]) : 0, 42);
+		generator.write(Path.of(args[0]));
+	}
+}
@@ -0,0 +1,314 @@
+package ase1.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import ase1.CheckInHandler;
+import ase1.CheckInResult;
+import ase1.CheckInScheduler;
+import ase1.LatencyHistogram;
+import ase1.LatencyStats;
+
+/**
+ * Simulates passengers arriving at check-in desks at random, and how long they wait to reach a desk,
+ * with three ways of queueing them:
+ * <ul>
+ *   <li>shared: one queue that every desk takes from</li>
+ *   <li>lanes: a queue for each desk, arrivals shared out in turn, no stealing</li>
+ *   <li>stealing: a deque for each desk, arrivals going to the desk with the fewest waiting, each desk taking
+ *       from the front of its own and, when that is empty, stealing from the back of the longest</li>
+ *   <li>scheduler: {@link CheckInScheduler}, one shared queue, and again with a priority lane for the share of
+ *       flights given by --closing, which close within its window</li>
+ * </ul>
+ * Arrivals are a Poisson process at a fraction of what the desks can serve. Serving a passenger takes
+ * the check-in itself plus a simulated time at the desk, parked rather than spinning: mostly a few
+ * milliseconds, with the odd slow passenger taking ten times as long. Each passenger takes the same time
+ * whichever way they are queued, and each way starts from a freshly loaded handler.
+ * The shared queue binds a passenger to a desk only once a desk is free, so it already never leaves a desk
+ * idle while passengers wait, and no way of placing them on desks' queues up front has beaten it.
+ *
+ * Options, all optional:
+ * <pre>
+ *   --flights 500  --passengers 100000  --desks 16  --load 0.85  --seconds 5  --closing 0.1
+ * </pre>
+ */
+public class DeskQueueSimulation {
+	private static final float[] BAG = { 0.5f, 0.4f, 0.25f };
+	private static final float WEIGHT = 19.5f;
+	// A desk takes 1 to 3ms for most passengers, and 10 to 30ms for one in ten
+	private static final double SLOW_SHARE = 0.1;
+	private static final double MEAN_SERVICE_MILLIS = (1 - SLOW_SHARE) * 2 + SLOW_SHARE * 20;
+
+	public static void main(String[] args) throws Exception {
+		int flights = 500;
+		int passengers = 100_000;
+		int desks = 16;
+		double load = 0.85;
+		double seconds = 5;
+		double closing = 0.1;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "--flights": flights = Integer.parseInt(value); break;
+			case "--passengers": passengers = Integer.parseInt(value); break;
+			case "--desks": desks = Integer.parseInt(value); break;
+			case "--load": load = Double.parseDouble(value); break;
+			case "--seconds": seconds = Double.parseDouble(value); break;
+			case "--closing": closing = Double.parseDouble(value); break;
+			default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		DataGenerator generator = new DataGenerator(flights, passengers, 0, 0, 42);
+		Path data = Path.of(System.getProperty("java.io.tmpdir"), "ase-queue-" + flights + "-" + passengers);
+		if (!Files.exists(data.resolve("passengers.txt"))) {
+			generator.write(data);
+		}
+		String[] refs = new String[passengers];
+		String[] names = new String[passengers];
+		generator.requests(0, refs, names);
+
+		double rate = load * desks * 1000 / MEAN_SERVICE_MILLIS;
+		int count = (int) Math.min(passengers, rate * seconds);
+		long[] gaps = new long[count];
+		Random random = new Random(7);
+		for (int i = 0; i < count; i++) {
+			gaps[i] = (long) (-Math.log(1 - random.nextDouble()) / rate * 1e9);
+		}
+		System.out.printf("%d desks, %.0f arrivals/s (%.0f%% of what the desks can serve), %d passengers, %d CPUs%n",
+				desks, rate, load * 100, count, Runtime.getRuntime().availableProcessors());
+
+		for (String mode : new String[] { "shared", "lanes", "stealing", "scheduler" }) {
+			CheckInHandler handler = new CheckInHandler(data.resolve("flight.txt"), data.resolve("passengers.txt"));
+			if (mode.equals("stealing")) {
+				runStealing(handler, desks, refs, names, gaps);
+			} else if (mode.equals("scheduler")) {
+				runScheduler(handler, desks, 0, refs, names, gaps);
+			} else {
+				runQueues(mode, handler, desks, mode.equals("shared") ? 1 : desks, refs, names, gaps);
+			}
+		}
+		if (closing > 0) {
+			CheckInHandler handler = new CheckInHandler(data.resolve("flight.txt"), data.resolve("passengers.txt"));
+			runScheduler(handler, desks, (int) (flights * closing), refs, names, gaps);
+		}
+	}
+
+	/**
+	 * Runs the desks of a {@link CheckInScheduler}, with a priority lane for the first of the flights, closing
+	 * within its window, when there are any
+	 */
+	private static void runScheduler(CheckInHandler handler, int desks, int closingFlights, String[] refs, String[] names,
+			long[] gaps) {
+		CheckInScheduler scheduler = new CheckInScheduler(handler, desks, 30, TimeUnit.MINUTES) {
+			@Override
+			protected CheckInResult serve(int desk, String ref, String name, float[] dimensions, float weight) {
+				LockSupport.parkNanos(serviceNanos(ref));
+				return super.serve(desk, ref, name, dimensions, weight);
+			}
+		};
+		long closes = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
+		for (int f = 0; f < closingFlights; f++) {
+			scheduler.setCloseTime(DataGenerator.flightCode(f), closes);
+		}
+		long next = System.nanoTime();
+		for (int i = 0; i < gaps.length; i++) {
+			next = arrive(next, gaps[i]);
+			scheduler.submit(refs[i], names[i], BAG, WEIGHT);
+		}
+		scheduler.close();
+		LatencyStats all = scheduler.getWaitTime();
+		int deepest = 0;
+		for (int d = 0; d < desks; d++) {
+			deepest = Math.max(deepest, scheduler.getDeskStats(d).getMaxQueueDepth());
+		}
+		System.out.printf("%-9s wait  mean %8.2fms   p50 %8.2fms   p99 %8.2fms   p99.9 %8.2fms   max %8.2fms   (queue depth max %d)%n",
+				closingFlights == 0 ? "scheduler" : "priority", all.getMeanNanos() / 1e6, all.getP50Nanos() / 1e6,
+				all.getP99Nanos() / 1e6, all.getP999Nanos() / 1e6, all.getMaxNanos() / 1e6, deepest);
+		if (closingFlights > 0) {
+			LatencyStats priority = scheduler.getPriorityWaitTime();
+			System.out.printf("  %d passengers for %d flights closing: wait mean %.2fms, p99 %.2fms%n", priority.getSampleCount(),
+					closingFlights, priority.getMeanNanos() / 1e6, priority.getP99Nanos() / 1e6);
+		}
+	}
+
+	/**
+	 * Runs the desks off plain blocking queues, one shared by all the desks, or one for each
+	 */
+	private static void runQueues(String mode, CheckInHandler handler, int desks, int queueCount, String[] refs, String[] names,
+			long[] gaps) throws InterruptedException {
+		List<BlockingQueue<Object[]>> queues = new ArrayList<BlockingQueue<Object[]>>();
+		for (int i = 0; i < queueCount; i++) {
+			queues.add(new LinkedBlockingQueue<Object[]>());
+		}
+		Object[] done = new Object[0];
+		LatencyHistogram[] waits = new LatencyHistogram[desks];
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int d = 0; d < desks; d++) {
+			BlockingQueue<Object[]> queue = queues.get(d % queueCount);
+			LatencyHistogram wait = waits[d] = new LatencyHistogram();
+			Thread thread = new Thread(() -> {
+				try {
+					for (Object[] arrival = queue.take(); arrival != done; arrival = queue.take()) {
+						wait.record(System.nanoTime() - (Long) arrival[0]);
+						serve(handler, (String) arrival[1], (String) arrival[2]);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		long next = System.nanoTime();
+		for (int i = 0; i < gaps.length; i++) {
+			next = arrive(next, gaps[i]);
+			queues.get(i % queueCount).add(new Object[] { System.nanoTime(), refs[i], names[i] });
+		}
+		for (int d = 0; d < desks; d++) {
+			queues.get(d % queueCount).add(done);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		LatencyHistogram all = new LatencyHistogram();
+		for (LatencyHistogram wait : waits) {
+			all.add(wait);
+		}
+		System.out.printf("%-9s wait  mean %8.2fms   p50 %8.2fms   p99 %8.2fms   p99.9 %8.2fms   max %8.2fms%n", mode,
+				all.getMean() / 1e6, all.getPercentile(0.5) / 1e6, all.getPercentile(0.99) / 1e6,
+				all.getPercentile(0.999) / 1e6, all.getMax() / 1e6);
+	}
+
+	/**
+	 * Runs the desks off a deque each, with idle desks stealing from the back of the longest
+	 */
+	private static void runStealing(CheckInHandler handler, int desks, String[] refs, String[] names, long[] gaps)
+			throws InterruptedException {
+		List<ConcurrentLinkedDeque<Object[]>> deques = new ArrayList<ConcurrentLinkedDeque<Object[]>>();
+		AtomicInteger[] depths = new AtomicInteger[desks];
+		for (int d = 0; d < desks; d++) {
+			deques.add(new ConcurrentLinkedDeque<Object[]>());
+			depths[d] = new AtomicInteger();
+		}
+		LatencyHistogram[] waits = new LatencyHistogram[desks];
+		long[] stolen = new long[desks];
+		AtomicBoolean arriving = new AtomicBoolean(true);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int d = 0; d < desks; d++) {
+			int desk = d;
+			LatencyHistogram wait = waits[d] = new LatencyHistogram();
+			Thread thread = new Thread(() -> {
+				while (true) {
+					Object[] arrival = deques.get(desk).pollFirst();
+					int from = desk;
+					if (arrival == null) {
+						from = longest(depths, desk);
+						arrival = from < 0 ? null : deques.get(from).pollLast();
+					}
+					if (arrival != null) {
+						depths[from].decrementAndGet();
+						if (from != desk) {
+							stolen[desk]++;
+						}
+						wait.record(System.nanoTime() - (Long) arrival[0]);
+						serve(handler, (String) arrival[1], (String) arrival[2]);
+					} else if (!arriving.get() && longest(depths, -1) < 0) {
+						return;
+					} else {
+						LockSupport.parkNanos(20_000);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		long next = System.nanoTime();
+		for (int i = 0; i < gaps.length; i++) {
+			next = arrive(next, gaps[i]);
+			int desk = shortest(depths, i % desks);
+			depths[desk].incrementAndGet();
+			deques.get(desk).add(new Object[] { System.nanoTime(), refs[i], names[i] });
+		}
+		arriving.set(false);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		LatencyHistogram all = new LatencyHistogram();
+		long allStolen = 0;
+		for (int d = 0; d < desks; d++) {
+			all.add(waits[d]);
+			allStolen += stolen[d];
+		}
+		System.out.printf("%-9s wait  mean %8.2fms   p50 %8.2fms   p99 %8.2fms   p99.9 %8.2fms   max %8.2fms   (%d stolen)%n", "stealing",
+				all.getMean() / 1e6, all.getPercentile(0.5) / 1e6, all.getPercentile(0.99) / 1e6,
+				all.getPercentile(0.999) / 1e6, all.getMax() / 1e6, allStolen);
+	}
+
+	/**
+	 * returns the desk with the fewest waiting, looking from the given one on
+	 */
+	private static int shortest(AtomicInteger[] depths, int from) {
+		int best = from;
+		for (int i = 1; i < depths.length; i++) {
+			int d = (from + i) % depths.length;
+			if (depths[d].get() < depths[best].get()) {
+				best = d;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * returns the desk other than the given one with the most waiting, or -1 if nobody is waiting at any of them
+	 */
+	private static int longest(AtomicInteger[] depths, int except) {
+		int best = -1;
+		for (int d = 0; d < depths.length; d++) {
+			if (d != except && depths[d].get() > 0 && (best < 0 || depths[d].get() > depths[best].get())) {
+				best = d;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Waits until the next passenger arrives
+	 * @return when they arrived
+	 */
+	private static long arrive(long previous, long gap) {
+		long at = previous + gap;
+		long now;
+		while ((now = System.nanoTime()) < at) {
+			LockSupport.parkNanos(at - now);
+		}
+		return at;
+	}
+
+	private static void serve(CheckInHandler handler, String ref, String name) {
+		LockSupport.parkNanos(serviceNanos(ref));
+		if (handler.tryCheckDetails(ref, name).getStatus() == CheckInResult.Status.DETAILS_MATCH) {
+			handler.tryProcessPassenger(ref, BAG, WEIGHT);
+		}
+	}
+
+	/**
+	 * The time a passenger spends at the desk, the same whichever way they are queued
+	 */
+	private static long serviceNanos(String ref) {
+		SplittableRandom random = new SplittableRandom(ref.hashCode());
+		double millis = random.nextDouble() < SLOW_SHARE ? 10 + random.nextDouble() * 20 : 1 + random.nextDouble() * 2;
+		return (long) (millis * 1e6);
+	}
+}
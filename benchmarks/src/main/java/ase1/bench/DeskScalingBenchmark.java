@@ -0,0 +1,127 @@
+package ase1.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ase1.CheckInHandler;
+import ase1.CheckInResult;
+import ase1.data.Flight;
+
+/**
+ * Time for a number of desks, each on a thread of its own, to check in everyone still waiting with
+ * processPassenger, sharing one handler, to show how check-in scales with the number of desks.
+ *
+ * It is also a stress test: every booking reference is handed out twice, in blocks taken by different desks,
+ * so desks keep racing to check in the same passenger. After each run the handler is checked, every passenger
+ * must have been checked in exactly once and the flights' totals must have gone up by exactly the number
+ * checked in, otherwise the run fails.
+ * Each measurement starts from a freshly loaded handler, divide by the passengers waiting (four in five)
+ * for the cost of one check-in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class DeskScalingBenchmark {
+	// Booking references are handed out in blocks of this many, each block twice in a row
+	private static final int BLOCK = 16;
+	private static final float[] BAG = { 0.5f, 0.4f, 0.25f };
+
+	@Param({ "100000", "1000000" })
+	int passengers;
+
+	@Param({ "1", "2", "4", "8", "16" })
+	int desks;
+
+	BenchmarkData data;
+	String[] work;
+	int waiting;
+	CheckInHandler handler;
+	Flight[] flights;
+	long passengersBefore;
+	AtomicInteger checkedIn = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void prepare() {
+		data = BenchmarkData.get(passengers);
+		String[] refs = new String[passengers - (passengers + 4) / 5];
+		for (int i = 0; i < passengers; i++) {
+			if (!data.checkedIn(i)) {
+				refs[waiting++] = data.bookingRef(i);
+			}
+		}
+		work = new String[waiting * 2];
+		for (int start = 0; start < waiting; start += BLOCK) {
+			int size = Math.min(BLOCK, waiting - start);
+			System.arraycopy(refs, start, work, start * 2, size);
+			System.arraycopy(refs, start, work, start * 2 + size, size);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void load() {
+		handler = null;
+		handler = new CheckInHandler(data.getFlightFile(), data.getPassengerFile());
+		flights = new Flight[data.getFlights()];
+		passengersBefore = 0;
+		for (int i = 0; i < flights.length; i++) {
+			flights[i] = handler.getFlight(DataGenerator.flightCode(i));
+			passengersBefore += flights[i].getCurrentTotalPassengers();
+		}
+		checkedIn.set(0);
+		System.gc(); // the last iteration's handler, so collecting it doesn't land in this one
+	}
+
+	@Benchmark
+	public int checkInAtDesks() throws InterruptedException {
+		AtomicInteger next = new AtomicInteger();
+		Thread[] threads = new Thread[desks];
+		for (int d = 0; d < desks; d++) {
+			threads[d] = new Thread(() -> {
+				int mine = 0;
+				for (int start = next.getAndAdd(BLOCK); start < work.length; start = next.getAndAdd(BLOCK)) {
+					int end = Math.min(start + BLOCK, work.length);
+					for (int i = start; i < end; i++) {
+						if (handler.tryProcessPassenger(work[i], BAG, 20f).getStatus() == CheckInResult.Status.CHECKED_IN) {
+							mine++;
+						}
+					}
+				}
+				checkedIn.addAndGet(mine);
+			}, "desk-" + d);
+			threads[d].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return checkedIn.get();
+	}
+
+	@TearDown(Level.Iteration)
+	public void verify() {
+		long passengersAfter = 0;
+		for (Flight flight : flights) {
+			passengersAfter += flight.getCurrentTotalPassengers();
+		}
+		if (checkedIn.get() != waiting || handler.getNumToCheckIn() != 0 || passengersAfter - passengersBefore != waiting) {
+			throw new IllegalStateException(desks + " desks checked in " + checkedIn.get() + " of " + waiting + ", "
+					+ handler.getNumToCheckIn() + " still waiting, flights' totals went up by " + (passengersAfter - passengersBefore));
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package ase1.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ase1.CheckInHandler;
+import ase1.CheckInPartitions;
+import ase1.CheckInResult;
+import ase1.IllegalReferenceCodeException;
+import ase1.LatencyHistogram;
+import ase1.data.PassengerList;
+
+/**
+ * Simulates a departure wave: desks and kiosks checking in every passenger as fast as they can,
+ * run again for each number of desks to show how check-in scales.
+ *
+ * Desks use checkDetails and processPassenger, catching the exceptions for mistyped references and
+ * counting them by the exception's status, kiosks use tryCheckDetails and tryProcessPassenger. Each takes the next passenger from a shared queue
+ * of requests, so a wave is over when everyone has been through. The latency of every call is recorded
+ * and the percentiles printed with the throughput.
+ *
+ * A first wave, not reported, warms up the JIT. Duplicate bookings are off by default, as loading prints every one.
+ * Each desk and kiosk gets a virtual thread when the JVM has them (Java 21 on), otherwise a platform thread.
+ * With --partitions, every request goes through {@link CheckInPartitions} instead, desks then use the try
+ * methods too, as the partitions don't throw. Use plenty of flights, so each partition has a share of the wave.
+ * With --enforce-limits true, passengers whose flight is full or over its baggage limits are turned away,
+ * and counted apart from those checked in.
+ *
+ * Options, all optional:
+ * <pre>
+ *   --flights 500  --passengers 1000000  --duplicates 0  --checked-in 0.05  --bad-refs 0.05
+ *   --desks 1,2,4,16,64  --kiosks 0  --storage HEAP|OFF_HEAP  --partitions 0 (off)  --enforce-limits false
+ *   --data directory (default: a directory in java.io.tmpdir)
+ * </pre>
+ */
+public class DeskSimulation {
+	private static final float[][] BAGS = { { 0.5f, 0.4f, 0.25f }, { 0.7f, 0.5f, 0.3f }, { 0.9f, 0.6f, 0.4f }, { 0.4f, 0.3f, 0.2f } };
+	private static final float[] WEIGHTS = { 12f, 19.5f, 27f, 8f };
+
+	public static void main(String[] args) throws Exception {
+		int flights = 500;
+		int passengers = 1_000_000;
+		double duplicates = 0;
+		double checkedIn = 0.05;
+		double badRefs = 0.05;
+		int[] deskCounts = { 1, 2, 4, 16, 64 };
+		int kiosks = 0;
+		PassengerList.Storage storage = PassengerList.Storage.HEAP;
+		int partitions = 0;
+		boolean enforceLimits = false;
+		Path data = null;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "--flights": flights = Integer.parseInt(value); break;
+			case "--passengers": passengers = Integer.parseInt(value); break;
+			case "--duplicates": duplicates = Double.parseDouble(value); break;
+			case "--checked-in": checkedIn = Double.parseDouble(value); break;
+			case "--bad-refs": badRefs = Double.parseDouble(value); break;
+			case "--desks": deskCounts = parseCounts(value); break;
+			case "--kiosks": kiosks = Integer.parseInt(value); break;
+			case "--storage": storage = PassengerList.Storage.valueOf(value); break;
+			case "--partitions": partitions = Integer.parseInt(value); break;
+			case "--enforce-limits": enforceLimits = Boolean.parseBoolean(value); break;
+			case "--data": data = Path.of(value); break;
+			default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		DataGenerator generator = new DataGenerator(flights, passengers, duplicates, checkedIn, 42);
+		if (data == null) {
+			data = Path.of(System.getProperty("java.io.tmpdir"), "ase-sim-" + flights + "-" + passengers + "-" + duplicates + "-" + checkedIn);
+		}
+		if (!Files.exists(data.resolve("passengers.txt"))) {
+			generator.write(data);
+		}
+		String[] refs = new String[passengers];
+		String[] names = new String[passengers];
+		generator.requests(badRefs, refs, names);
+
+		ThreadFactory threads = threadFactory();
+		System.out.printf("%d flights, %d passengers, %.1f%% duplicate, %.1f%% checked in, %.1f%% mistyped, %s threads, %d CPUs, %s, limits %s%n",
+				flights, passengers, duplicates * 100, checkedIn * 100, badRefs * 100,
+				threads == null ? "platform" : "virtual", Runtime.getRuntime().availableProcessors(),
+				partitions == 0 ? "not partitioned" : partitions + " partitions", enforceLimits ? "enforced" : "not enforced");
+		ThreadFactory factory = threads == null ? Thread::new : threads;
+		run(data, storage, partitions, enforceLimits, deskCounts[0], kiosks, refs, names, factory, false);
+		for (int desks : deskCounts) {
+			run(data, storage, partitions, enforceLimits, desks, kiosks, refs, names, factory, true);
+		}
+	}
+
+	private static void run(Path data, PassengerList.Storage storage, int partitionCount, boolean enforceLimits, int desks, int kiosks,
+			String[] refs, String[] names, ThreadFactory threads, boolean report) throws InterruptedException {
+		CheckInHandler handler = new CheckInHandler(data.resolve("flight.txt"), data.resolve("passengers.txt"), storage);
+		handler.setEnforceLimits(enforceLimits);
+		CheckInPartitions partitions = partitionCount == 0 ? null : new CheckInPartitions(handler, partitionCount);
+		AtomicInteger next = new AtomicInteger();
+		int[] outcomes = new int[5]; // checked in, name mismatch, already checked in, not on record, turned away
+		List<Agent> agents = new ArrayList<Agent>();
+		for (int i = 0; i < desks + kiosks; i++) {
+			agents.add(new Agent(handler, partitions, next, refs, names, i >= desks));
+		}
+		List<Thread> started = new ArrayList<Thread>();
+		long start = System.nanoTime();
+		for (Agent agent : agents) {
+			Thread thread = threads.newThread(agent);
+			thread.start();
+			started.add(thread);
+		}
+		for (Thread thread : started) {
+			thread.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		if (partitions != null) {
+			partitions.close();
+		}
+		if (!report) {
+			return;
+		}
+
+		LatencyHistogram check = new LatencyHistogram();
+		LatencyHistogram process = new LatencyHistogram();
+		for (Agent agent : agents) {
+			check.add(agent.check);
+			process.add(agent.process);
+			for (int i = 0; i < outcomes.length; i++) {
+				outcomes[i] += agent.outcomes[i];
+			}
+		}
+		System.out.printf("%n%d desks, %d kiosks: %.2fs, %.0f passengers/s, %d checked in, %d name mismatch, %d already checked in, %d not on record, %d turned away%n",
+				desks, kiosks, seconds, refs.length / seconds, outcomes[0], outcomes[1], outcomes[2], outcomes[3], outcomes[4]);
+		print("checkDetails", check, seconds);
+		print("processPassenger", process, seconds);
+	}
+
+	private static void print(String operation, LatencyHistogram latencies, double seconds) {
+		System.out.printf("  %-17s %10.0f ops/s   p50 %8.2fus   p99 %8.2fus   p99.9 %8.2fus   max %9.2fus%n",
+				operation, latencies.getCount() / seconds, latencies.getPercentile(0.5) / 1000.0,
+				latencies.getPercentile(0.99) / 1000.0, latencies.getPercentile(0.999) / 1000.0, latencies.getMax() / 1000.0);
+	}
+
+	/**
+	 * A desk or kiosk, checking in passengers from the shared queue until it is empty
+	 */
+	private static final class Agent implements Runnable {
+		private final CheckInHandler handler;
+		private final CheckInPartitions partitions; // null when calling the handler directly
+		private final AtomicInteger next;
+		private final String[] refs;
+		private final String[] names;
+		private final boolean kiosk;
+		final LatencyHistogram check = new LatencyHistogram();
+		final LatencyHistogram process = new LatencyHistogram();
+		final int[] outcomes = new int[5];
+
+		Agent(CheckInHandler handler, CheckInPartitions partitions, AtomicInteger next, String[] refs, String[] names, boolean kiosk) {
+			this.handler = handler;
+			this.partitions = partitions;
+			this.next = next;
+			this.refs = refs;
+			this.names = names;
+			this.kiosk = kiosk;
+		}
+
+		@Override
+		public void run() {
+			for (int i = next.getAndIncrement(); i < refs.length; i = next.getAndIncrement()) {
+				float[] bag = BAGS[i & 3];
+				float weight = WEIGHTS[i & 3];
+				if (kiosk || partitions != null) {
+					long start = System.nanoTime();
+					CheckInResult details = partitions != null ? partitions.tryCheckDetails(refs[i], names[i])
+							: handler.tryCheckDetails(refs[i], names[i]);
+					check.record(System.nanoTime() - start);
+					if (details.getStatus() != CheckInResult.Status.DETAILS_MATCH) {
+						count(details.getStatus());
+						continue;
+					}
+					start = System.nanoTime();
+					CheckInResult result = partitions != null ? partitions.tryProcessPassenger(refs[i], bag, weight)
+							: handler.tryProcessPassenger(refs[i], bag, weight);
+					process.record(System.nanoTime() - start);
+					count(result.getStatus());
+				} else {
+					long start = System.nanoTime();
+					boolean matches;
+					try {
+						matches = handler.checkDetails(refs[i], names[i]);
+					} catch (IllegalReferenceCodeException e) {
+						check.record(System.nanoTime() - start);
+						count(e.getStatus());
+						continue;
+					}
+					check.record(System.nanoTime() - start);
+					if (!matches) {
+						count(CheckInResult.Status.NAME_MISMATCH);
+						continue;
+					}
+					start = System.nanoTime();
+					try {
+						float fee = handler.processPassenger(refs[i], bag, weight);
+						process.record(System.nanoTime() - start);
+						// -1 is processPassenger turning the passenger away, it doesn't say why
+						count(fee == -1 ? CheckInResult.Status.FLIGHT_FULL : CheckInResult.Status.CHECKED_IN);
+					} catch (IllegalReferenceCodeException e) {
+						process.record(System.nanoTime() - start);
+						count(e.getStatus());
+					}
+				}
+			}
+		}
+
+		private void count(CheckInResult.Status status) {
+			switch (status) {
+			case CHECKED_IN: outcomes[0]++; break;
+			case NAME_MISMATCH: outcomes[1]++; break;
+			case ALREADY_CHECKED_IN: outcomes[2]++; break;
+			case NOT_ON_RECORD: outcomes[3]++; break;
+			case FLIGHT_FULL:
+			case OVER_WEIGHT:
+			case OVER_VOLUME: outcomes[4]++; break;
+			default: throw new IllegalStateException("Unexpected outcome " + status);
+			}
+		}
+	}
+
+	private static int[] parseCounts(String value) {
+		String[] parts = value.split(",");
+		int[] counts = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			counts[i] = Integer.parseInt(parts[i].trim());
+		}
+		return counts;
+	}
+
+	/**
+	 * Finds the virtual thread factory on Java 21 and later, without needing Java 21 to build
+	 * @return the factory, or null if this JVM has no virtual threads
+	 */
+	private static ThreadFactory threadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) builder.getClass().getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package ase1.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ase1.FeeEngine;
+import ase1.StandardFeeEngine;
+import ase1.Tariff;
+import ase1.data.Flight;
+
+/**
+ * Re-pricing a block of check-ins: one fee call per passenger through the engine, as at the desk,
+ * against the tariff's batch method. Scores are per passenger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeeBenchmark {
+	private static final int PASSENGERS = 4096;
+
+	FeeEngine engine = new StandardFeeEngine();
+	Flight flight = new Flight("FL000001", "Destination", "Carrier", 250, 400.5f, 5000f, 1.5f);
+	float[] dimensions = new float[PASSENGERS * 3];
+	float[] weights = new float[PASSENGERS];
+	float[] fees = new float[PASSENGERS];
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		for (int i = 0; i < dimensions.length; i++) {
+			dimensions[i] = 0.2f + random.nextFloat();
+		}
+		for (int i = 0; i < PASSENGERS; i++) {
+			weights[i] = 5 + random.nextFloat() * 30;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PASSENGERS)
+	public float[] perPassenger() {
+		for (int i = 0, d = 0; i < PASSENGERS; i++, d += 3) {
+			float vol = Math.abs(dimensions[d] * dimensions[d + 1] * dimensions[d + 2]);
+			fees[i] = engine.tariffFor(flight).fee(vol, Math.abs(weights[i]));
+		}
+		return fees;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PASSENGERS)
+	public float[] batch() {
+		Tariff tariff = engine.tariffFor(flight);
+		tariff.fees(dimensions, weights, fees, PASSENGERS);
+		return fees;
+	}
+}
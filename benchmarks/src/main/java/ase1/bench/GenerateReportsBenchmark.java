@@ -0,0 +1,74 @@
+package ase1.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ase1.CheckInHandler;
+import ase1.data.Flight;
+import ase1.data.FlightList;
+
+/**
+ * generateReports when nothing has changed since the last report, and when a handful of flights
+ * have had check-ins, which is what a dashboard polling the report mostly sees.
+ * The report is written to report.txt in the working directory, as in the application.
+ * What a report costs depends on the number of flights rather than passengers, so the flights are varied
+ * up to 10,000, with a million passengers shared between them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class GenerateReportsBenchmark {
+	private static final int FLIGHTS_TOUCHED = 10;
+
+	@Param({ "1000000" })
+	int passengers;
+
+	@Param({ "100", "1000", "10000" })
+	int flights;
+
+	CheckInHandler handler;
+	Flight[] handlerFlights;
+	int next;
+
+	@Setup
+	public void setup() {
+		BenchmarkData data = BenchmarkData.get(passengers, flights);
+		handler = new CheckInHandler(data.getFlightFile(), data.getPassengerFile());
+		List<Flight> all = new ArrayList<Flight>(new FlightList(data.getFlightFile()).getValues());
+		// The handler's own flights, looked up by code
+		handlerFlights = new Flight[all.size()];
+		for (int i = 0; i < handlerFlights.length; i++) {
+			handlerFlights[i] = handler.getFlight(all.get(i).getFlightCode());
+		}
+		handler.generateReports();
+	}
+
+	@Benchmark
+	public String unchanged() {
+		return handler.generateReports();
+	}
+
+	@Benchmark
+	public String afterCheckIns() {
+		for (int i = 0; i < FLIGHTS_TOUCHED; i++) {
+			handlerFlights[next++ % handlerFlights.length].addPassengerAndBaggage(0.01f, 0.5f, 0f);
+		}
+		return handler.generateReports();
+	}
+}
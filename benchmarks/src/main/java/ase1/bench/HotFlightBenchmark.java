@@ -0,0 +1,107 @@
+package ase1.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ase1.data.Flight;
+import ase1.data.FlightTotals;
+
+/**
+ * Many desks updating the totals of one hot flight at once, each on a thread of its own, to show what contention
+ * on a single flight costs. addPassengerAndBaggage always adds, tryAddPassengerAndBaggage claims a seat and the
+ * baggage allowance first, on a flight with room for everyone, and tryAddUntilFull races the desks for the last
+ * seats of a flight with room for only half of them.
+ * After each run the flight is checked, the number admitted must be exactly what fits and the totals must be
+ * exactly what was added, otherwise the run fails. Divide by 1,000,000 for the cost of one update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HotFlightBenchmark {
+	private static final int UPDATES = 1_000_000;
+	private static final float VOLUME = 0.5f;
+	private static final float WEIGHT = 1.25f;
+
+	@Param({ "1", "4", "16", "64" })
+	int desks;
+
+	Flight flight;
+	int capacity;
+	AtomicInteger admitted = new AtomicInteger();
+
+	@Setup(Level.Invocation)
+	public void newFlight() {
+		admitted.set(0);
+		capacity = UPDATES;
+		flight = new Flight("HOT0001", "Destination", "Carrier", capacity, 1e9f, 1e9f, 1f);
+	}
+
+	@Benchmark
+	public int addPassengerAndBaggage() throws InterruptedException {
+		return run(false);
+	}
+
+	@Benchmark
+	public int tryAddPassengerAndBaggage() throws InterruptedException {
+		return run(true);
+	}
+
+	@Benchmark
+	public int tryAddUntilFull() throws InterruptedException {
+		capacity = UPDATES / 2;
+		flight = new Flight("HOT0001", "Destination", "Carrier", capacity, 1e9f, 1e9f, 1f);
+		return run(true);
+	}
+
+	private int run(boolean admit) throws InterruptedException {
+		Thread[] threads = new Thread[desks];
+		int each = UPDATES / desks;
+		for (int d = 0; d < desks; d++) {
+			threads[d] = new Thread(() -> {
+				int mine = 0;
+				for (int i = 0; i < each; i++) {
+					if (!admit) {
+						flight.addPassengerAndBaggage(VOLUME, WEIGHT, 0f);
+						mine++;
+					} else if (flight.tryAddPassengerAndBaggage(VOLUME, WEIGHT, 0f) == Flight.Admission.ADMITTED) {
+						mine++;
+					}
+				}
+				admitted.addAndGet(mine);
+			}, "desk-" + d);
+			threads[d].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return admitted.get();
+	}
+
+	@TearDown(Level.Invocation)
+	public void verify() {
+		int expected = Math.min(capacity, UPDATES / desks * desks);
+		int passengers = flight.getTotals().getPassengers();
+		if (admitted.get() != expected || passengers != expected
+				|| flight.getTotals().getWeightFixed() != expected * FlightTotals.toFixed(WEIGHT)) {
+			throw new IllegalStateException(desks + " desks admitted " + admitted.get() + ", flight has " + passengers
+					+ ", expected " + expected);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package ase1.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ase1.CheckInHandler;
+import ase1.CheckInJournal;
+import ase1.CheckInResult;
+
+/**
+ * Check-in throughput with a journal attached, for each {@link CheckInJournal.SyncPolicy} and number of desks in turn,
+ * to show what forcing every record costs against group commit. Each run starts from a freshly loaded handler and
+ * an empty journal in the temp directory, and the journal is then replayed into another fresh handler, which must
+ * check in the same passengers.
+ * EVERY_RECORD waits for an fsync per check-in, so it gets fewer check-ins to keep the run short.
+ *
+ * Options, all optional:
+ * <pre>
+ *   --passengers 100000  --check-ins 20000  --desks 1,8,32  --policies EVERY_RECORD,GROUP_COMMIT,NO_SYNC
+ *   --batch 256  --delay 0 (microseconds a group commit leader waits for others)
+ * </pre>
+ */
+public class JournalBenchmark {
+	private static final float[] BAG = { 0.5f, 0.4f, 0.25f };
+
+	public static void main(String[] args) throws Exception {
+		int passengers = 100_000;
+		int checkIns = 20_000;
+		int[] deskCounts = { 1, 8, 32 };
+		String[] policies = { "EVERY_RECORD", "GROUP_COMMIT", "NO_SYNC" };
+		int batch = 256;
+		long delay = 0;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "--passengers": passengers = Integer.parseInt(value); break;
+			case "--check-ins": checkIns = Integer.parseInt(value); break;
+			case "--desks": deskCounts = parseCounts(value); break;
+			case "--policies": policies = value.split(","); break;
+			case "--batch": batch = Integer.parseInt(value); break;
+			case "--delay": delay = Long.parseLong(value); break;
+			default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		BenchmarkData data = BenchmarkData.get(passengers);
+		String[] waiting = new String[passengers - (passengers + 4) / 5];
+		int n = 0;
+		for (int i = 0; i < passengers; i++) {
+			if (!data.checkedIn(i)) {
+				waiting[n++] = data.bookingRef(i);
+			}
+		}
+		Path directory = Files.createTempDirectory("ase-journal");
+		System.out.printf("batches of up to %d, %dus delay, %d CPUs, journal in %s%n", batch, delay,
+				Runtime.getRuntime().availableProcessors(), directory);
+
+		for (String name : policies) {
+			CheckInJournal.SyncPolicy policy = CheckInJournal.SyncPolicy.valueOf(name.trim());
+			int count = Math.min(waiting.length, policy == CheckInJournal.SyncPolicy.EVERY_RECORD ? checkIns / 10 : checkIns);
+			for (int desks : deskCounts) {
+				Path file = directory.resolve(policy + "-" + desks + ".journal");
+				CheckInHandler handler = new CheckInHandler(data.getFlightFile(), data.getPassengerFile());
+				CheckInJournal journal = new CheckInJournal(file, policy, batch, delay);
+				handler.attachJournal(journal);
+				long nanos = run(handler, waiting, count, desks);
+				journal.close();
+
+				CheckInHandler restored = new CheckInHandler(data.getFlightFile(), data.getPassengerFile());
+				try (CheckInJournal replay = CheckInJournal.open(file)) {
+					int replayed = restored.attachJournal(replay);
+					if (replayed != count || restored.getNumToCheckIn() != handler.getNumToCheckIn()) {
+						throw new IllegalStateException(policy + " replayed " + replayed + " of " + count);
+					}
+				}
+				Files.delete(file);
+				System.out.printf("%-13s %3d desks  %,9.0f check-ins/s  (%,d check-ins in %.0fms)%n", policy, desks,
+						count / (nanos / 1e9), count, nanos / 1e6);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * Has the desks check in the first count passengers waiting, each taking the next from a shared counter
+	 * @return how long it took
+	 */
+	private static long run(CheckInHandler handler, String[] waiting, int count, int desks) throws InterruptedException {
+		AtomicInteger next = new AtomicInteger();
+		Thread[] threads = new Thread[desks];
+		long start = System.nanoTime();
+		for (int d = 0; d < desks; d++) {
+			threads[d] = new Thread(() -> {
+				for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+					if (handler.tryProcessPassenger(waiting[i], BAG, 20f).getStatus() != CheckInResult.Status.CHECKED_IN) {
+						throw new IllegalStateException("Could not check in " + waiting[i]);
+					}
+				}
+			}, "desk-" + d);
+			threads[d].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static int[] parseCounts(String value) {
+		String[] parts = value.split(",");
+		int[] counts = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			counts[i] = Integer.parseInt(parts[i].trim());
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,79 @@
+package ase1.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ase1.CheckInHandler;
+import ase1.data.FlightList;
+import ase1.data.PassengerList;
+
+/**
+ * Time to load the flights and passengers files.
+ * Loading a large file takes seconds, so each load is timed on its own.
+ * The cold start benchmarks compare starting a whole handler from the files with starting it from a snapshot,
+ * saved once next to the dataset with a fifth of the passengers checked in, as the files have them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class LoadBenchmark {
+	@Param({ "1000", "100000", "1000000", "5000000", "10000000" })
+	int passengers;
+
+	BenchmarkData data;
+	FlightList flights;
+	Path snapshot;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		data = BenchmarkData.get(passengers);
+		snapshot = data.getPassengerFile().resolveSibling("snapshot.bin");
+		if (!Files.exists(snapshot)) {
+			new CheckInHandler(data.getFlightFile(), data.getPassengerFile()).saveSnapshot(snapshot);
+		}
+	}
+
+	// Passengers are listed on their flights, so each load needs flights of its own
+	@Setup(Level.Iteration)
+	public void loadFlightsForPassengers() {
+		flights = new FlightList(data.getFlightFile());
+	}
+
+	@Benchmark
+	public FlightList loadFlights() {
+		return new FlightList(data.getFlightFile());
+	}
+
+	@Benchmark
+	public PassengerList loadPassengers() {
+		return new PassengerList(flights, data.getPassengerFile());
+	}
+
+	@Benchmark
+	public CheckInHandler coldStartFromFiles() {
+		return new CheckInHandler(data.getFlightFile(), data.getPassengerFile());
+	}
+
+	@Benchmark
+	public CheckInHandler coldStartFromSnapshot() throws IOException {
+		return CheckInHandler.loadSnapshot(snapshot);
+	}
+}
@@ -0,0 +1,95 @@
+package ase1.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ase1.data.Flight;
+import ase1.data.FlightList;
+import ase1.data.Passenger;
+import ase1.data.PassengerList;
+
+/**
+ * A gate screen polling its flights: the passengers still to check in on one flight, and the
+ * number still to check in on a hundred flights, from the flight manifests and by going through
+ * every passenger waiting to check in as was needed before there were manifests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ManifestBenchmark {
+	private static final int SCREEN_FLIGHTS = 100;
+
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	int passengers;
+
+	PassengerList list;
+	Flight[] flights;
+	int next;
+
+	@Setup
+	public void setup() {
+		BenchmarkData data = BenchmarkData.get(passengers);
+		FlightList flightList = new FlightList(data.getFlightFile());
+		list = new PassengerList(flightList, data.getPassengerFile());
+		flights = flightList.getValues().toArray(new Flight[0]);
+	}
+
+	@Benchmark
+	public List<Passenger> notCheckedInOnFlight() {
+		return flights[next++ % flights.length].getManifest().getNotCheckedIn();
+	}
+
+	@Benchmark
+	public List<Passenger> notCheckedInOnFlightByScan() {
+		Flight flight = flights[next++ % flights.length];
+		List<Passenger> waiting = new ArrayList<Passenger>();
+		for (Passenger passenger : list.getNotCheckedIn().values()) {
+			if (passenger.getFlight() == flight) {
+				waiting.add(passenger);
+			}
+		}
+		return waiting;
+	}
+
+	@Benchmark
+	public int[] pendingCounts() {
+		int[] counts = new int[SCREEN_FLIGHTS];
+		for (int i = 0; i < SCREEN_FLIGHTS; i++) {
+			counts[i] = flights[i % flights.length].getManifest().getNumToCheckIn();
+		}
+		return counts;
+	}
+
+	@Benchmark
+	public int[] pendingCountsByScan() {
+		int[] counts = new int[SCREEN_FLIGHTS];
+		Map<Flight, Integer> screen = new java.util.IdentityHashMap<Flight, Integer>();
+		for (int i = 0; i < SCREEN_FLIGHTS; i++) {
+			screen.putIfAbsent(flights[i % flights.length], i);
+		}
+		for (Passenger passenger : list.getNotCheckedIn().values()) {
+			Integer i = screen.get(passenger.getFlight());
+			if (i != null) {
+				counts[i]++;
+			}
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,106 @@
+package ase1.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ase1.CheckInHandler;
+import ase1.data.PassengerList;
+
+/**
+ * Time to check in everyone still waiting, one processPassenger call each, and in batches of passengers
+ * on the same flight, as group bookings arrive, with processPassengers.
+ * A passenger can only be checked in once, so every measurement starts from a freshly loaded handler.
+ * Divide by the passengers waiting (four in five) for the cost of one check-in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ProcessPassengerBenchmark {
+	private static final int BATCH = 256;
+
+	@Param({ "1000", "100000", "1000000", "10000000" })
+	int passengers;
+
+	@Param({ "HEAP", "OFF_HEAP" })
+	PassengerList.Storage storage;
+
+	BenchmarkData data;
+	String[] waiting;
+	float[][] dimensions;
+	float[] weights;
+	float[] batchDimensions = new float[BATCH * 3];
+	float[] batchWeights = new float[BATCH];
+	CheckInHandler handler;
+
+	@Setup(Level.Trial)
+	public void prepare() {
+		data = BenchmarkData.get(passengers);
+		waiting = new String[passengers - (passengers + 4) / 5];
+		dimensions = new float[16][];
+		weights = new float[16];
+		java.util.Random random = new java.util.Random(42);
+		for (int i = 0; i < dimensions.length; i++) {
+			dimensions[i] = new float[] { 0.2f + random.nextFloat(), 0.3f + random.nextFloat(), 0.2f + random.nextFloat() };
+			weights[i] = 5 + random.nextFloat() * 30;
+		}
+		for (int i = 0; i < BATCH; i++) {
+			System.arraycopy(dimensions[i & 15], 0, batchDimensions, i * 3, 3);
+			batchWeights[i] = weights[i & 15];
+		}
+		// A flight at a time, so a batch is mostly passengers on the same flight
+		int n = 0;
+		for (int flight = 0; flight < data.getFlights(); flight++) {
+			for (int i = flight; i < passengers; i += data.getFlights()) {
+				if (!data.checkedIn(i)) {
+					waiting[n++] = data.bookingRef(i);
+				}
+			}
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void load() {
+		handler = null;
+		handler = new CheckInHandler(data.getFlightFile(), data.getPassengerFile(), storage);
+		System.gc(); // the last iteration's handler, so collecting it doesn't land in this one
+	}
+
+	@Benchmark
+	public float checkInEveryone() {
+		float fees = 0;
+		for (int i = 0; i < waiting.length; i++) {
+			fees += handler.processPassenger(waiting[i], dimensions[i & 15], weights[i & 15]);
+		}
+		return fees;
+	}
+
+	@Benchmark
+	public int checkInEveryoneInBatches() {
+		int checkedIn = 0;
+		String[] batch = new String[BATCH];
+		for (int start = 0; start < waiting.length; start += BATCH) {
+			int size = Math.min(BATCH, waiting.length - start);
+			if (size < BATCH) {
+				batch = new String[size];
+			}
+			System.arraycopy(waiting, start, batch, 0, size);
+			checkedIn += handler.processPassengers(batch, batchDimensions, batchWeights).length;
+		}
+		return checkedIn;
+	}
+}
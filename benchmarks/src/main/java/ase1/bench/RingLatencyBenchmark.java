@@ -0,0 +1,87 @@
+package ase1.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import ase1.CheckInEventRing;
+import ase1.CheckInEventRing.BackPressure;
+import ase1.CheckInEventRing.WaitStrategy;
+
+/**
+ * End to end latency through the check-in event ring, from a desk publishing an event to a consumer
+ * seeing it, with events published at a steady rate (one million a second unless told otherwise).
+ * Run for each wait strategy in turn, printing percentiles. Not a JMH benchmark, as JMH measures how
+ * long calls take rather than how long an event takes to cross between threads at a fixed rate.
+ *
+ * Arguments: [events per second] [seconds per strategy] [ring size]
+ */
+public class RingLatencyBenchmark {
+	public static void main(String[] args) throws Exception {
+		long rate = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int ringSize = args.length > 2 ? Integer.parseInt(args[2]) : 1 << 16;
+
+		System.out.printf("%d events/s for %ds, ring of %d, %d CPUs%n", rate, seconds, ringSize,
+				Runtime.getRuntime().availableProcessors());
+		System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %12s%n",
+				"strategy", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "achieved/s", "desk wait us");
+		for (WaitStrategy strategy : WaitStrategy.values()) {
+			run(strategy, rate, 1, ringSize); // warm up
+			run(strategy, rate, seconds, ringSize).print(strategy);
+		}
+	}
+
+	private static Result run(WaitStrategy strategy, long rate, int seconds, int ringSize) throws InterruptedException {
+		int events = (int) Math.min(rate * seconds, Integer.MAX_VALUE - 8);
+		long[] latencies = new long[events];
+		int[] seen = new int[1];
+		CheckInEventRing ring = new CheckInEventRing(ringSize, strategy, BackPressure.BLOCK);
+		ring.addConsumer("latency", (event, sequence, endOfBatch) -> {
+			latencies[seen[0]++] = System.nanoTime() - event.getPublishedNanos();
+		});
+		ring.start();
+
+		// Publish on schedule, if the desk falls behind it catches up without waiting
+		long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+		long start = System.nanoTime();
+		long deskWait = 0;
+		for (int i = 0; i < events; i++) {
+			long due = start + i * interval;
+			while (System.nanoTime() < due) {
+				Thread.onSpinWait();
+			}
+			long before = System.nanoTime();
+			ring.publish("abc1234", null, 0.1f, 10f, 0f);
+			deskWait += System.nanoTime() - before;
+		}
+		long elapsed = System.nanoTime() - start;
+		ring.close();
+
+		Arrays.sort(latencies, 0, seen[0]);
+		return new Result(latencies, seen[0], events * 1e9 / elapsed, deskWait / (double) events);
+	}
+
+	private static final class Result {
+		final long[] sorted;
+		final int count;
+		final double achieved;
+		final double deskWaitNanos;
+
+		Result(long[] sorted, int count, double achieved, double deskWaitNanos) {
+			this.sorted = sorted;
+			this.count = count;
+			this.achieved = achieved;
+			this.deskWaitNanos = deskWaitNanos;
+		}
+
+		double percentile(double p) {
+			return sorted[Math.min(count - 1, (int) (count * p))] / 1000.0;
+		}
+
+		void print(WaitStrategy strategy) {
+			System.out.printf("%-10s %10.1f %10.1f %10.1f %10.1f %10.1f %10.0f %12.3f%n", strategy,
+					percentile(0.5), percentile(0.9), percentile(0.99), percentile(0.999),
+					sorted[count - 1] / 1000.0, achieved, deskWaitNanos / 1000.0);
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package ase1.bench;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * The checkDetails benchmarks again, with IllegalReferenceCodeException created without a stack trace
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xmx6g", "-Dase1.stacklessExceptions=true" })
+public class StacklessCheckDetailsBenchmark extends CheckDetailsBenchmark {
+}
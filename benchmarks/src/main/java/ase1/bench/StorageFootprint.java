@@ -0,0 +1,133 @@
+package ase1.bench;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import ase1.CheckInHandler;
+import ase1.data.PassengerList;
+
+/**
+ * Measures what keeping passengers on or off the heap costs: the heap and direct memory in use once the
+ * passengers are loaded, how long a full collection takes with them loaded, and the collections and
+ * pauses while loading and while a desk checks everyone in. One storage per run, so the heap holds
+ * nothing else, run it once for each to compare them.
+ *
+ * Options, all optional:
+ * <pre>
+ *   --passengers 10000000  --storage HEAP|OFF_HEAP
+ * </pre>
+ */
+public class StorageFootprint {
+	private static final float[] DIMENSIONS = { 0.5f, 0.6f, 0.4f };
+
+	public static void main(String[] args) throws Exception {
+		int passengers = 10_000_000;
+		PassengerList.Storage storage = PassengerList.Storage.HEAP;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "--passengers": passengers = Integer.parseInt(value); break;
+			case "--storage": storage = PassengerList.Storage.valueOf(value); break;
+			default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		BenchmarkData data = BenchmarkData.get(passengers);
+		List<String> collectors = new ArrayList<String>();
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			collectors.add(collector.getName());
+		}
+		System.out.printf("%d passengers, %s storage, %s, max heap %dMB%n", passengers, storage, collectors,
+				Runtime.getRuntime().maxMemory() >> 20);
+
+		Pauses pauses = new Pauses();
+		System.gc();
+		pauses.reset();
+		long start = System.nanoTime();
+		CheckInHandler handler = new CheckInHandler(data.getFlightFile(), data.getPassengerFile(), storage);
+		pauses.print("load", System.nanoTime() - start);
+
+		start = System.nanoTime();
+		System.gc();
+		long fullGc = System.nanoTime() - start;
+		System.out.printf("  heap used %7dMB   direct memory %7dMB   full GC %6.0fms%n",
+				ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20, directMemory() >> 20, fullGc / 1e6);
+		pauses.reset();
+
+		start = System.nanoTime();
+		float fees = 0;
+		for (int i = 0; i < passengers; i++) {
+			if (!data.checkedIn(i)) {
+				fees += handler.processPassenger(data.bookingRef(i), DIMENSIONS, 20f);
+			}
+		}
+		pauses.print("check in everyone", System.nanoTime() - start);
+		if (fees < 0) {
+			throw new IllegalStateException("Negative fees");
+		}
+	}
+
+	private static long directMemory() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if (pool.getName().equals("direct")) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Counts the collections and their pauses, as the JVM reports them, since the last reset
+	 */
+	private static final class Pauses {
+		private int count;
+		private long totalMillis;
+		private long maxMillis;
+
+		Pauses() {
+			for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+				((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+					if (notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+						long millis = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+								.getGcInfo().getDuration();
+						add(millis);
+					}
+				}, null, null);
+			}
+		}
+
+		synchronized void add(long millis) {
+			count++;
+			totalMillis += millis;
+			maxMillis = Math.max(maxMillis, millis);
+		}
+
+		/**
+		 * Forgets the collections so far, once any still being reported have arrived
+		 */
+		void reset() throws InterruptedException {
+			Thread.sleep(100); // notifications arrive on a thread of their own
+			synchronized (this) {
+				count = 0;
+				totalMillis = 0;
+				maxMillis = 0;
+			}
+		}
+
+		void print(String phase, long nanos) throws InterruptedException {
+			Thread.sleep(100);
+			synchronized (this) {
+				System.out.printf("  %-18s %8.0fms   %4d GCs   %6dms paused   longest %5dms%n", phase, nanos / 1e6, count,
+						totalMillis, maxMillis);
+			}
+			reset();
+		}
+	}
+}
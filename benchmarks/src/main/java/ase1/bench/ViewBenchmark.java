@@ -0,0 +1,117 @@
+package ase1.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ase1.CheckInHandler;
+import ase1.data.CheckInView;
+
+/**
+ * Time for a desk to check in everyone still waiting, as in {@link ProcessPassengerBenchmark}, while dashboard
+ * threads take views and read every flight's totals from them as fast as they can, or every pause
+ * microseconds. With the desk never waiting for a view, the time should stay flat as readers are added,
+ * as long as there are spare CPUs for them to run on. The number of views taken is printed after each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ViewBenchmark {
+	@Param({ "1000000" })
+	int passengers;
+
+	@Param({ "0", "1", "4" })
+	int readers;
+
+	@Param({ "0", "1000" })
+	int pauseMicros;
+
+	BenchmarkData data;
+	String[] waiting;
+	float[] dimensions = { 0.5f, 0.6f, 0.4f };
+	CheckInHandler handler;
+	Thread[] dashboards;
+	volatile boolean running;
+	final AtomicLong views = new AtomicLong();
+
+	@Setup(Level.Trial)
+	public void prepare() {
+		data = BenchmarkData.get(passengers);
+		waiting = new String[passengers - (passengers + 4) / 5];
+		int n = 0;
+		for (int i = 0; i < passengers; i++) {
+			if (!data.checkedIn(i)) {
+				waiting[n++] = data.bookingRef(i);
+			}
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void load() {
+		handler = null;
+		handler = new CheckInHandler(data.getFlightFile(), data.getPassengerFile());
+		System.gc(); // the last iteration's handler, so collecting it doesn't land in this one
+		views.set(0);
+		running = true;
+		dashboards = new Thread[readers];
+		for (int i = 0; i < readers; i++) {
+			dashboards[i] = new Thread(this::dashboard, "dashboard-" + i);
+			dashboards[i].setDaemon(true);
+			dashboards[i].start();
+		}
+	}
+
+	private void dashboard() {
+		while (running) {
+			CheckInView view = handler.getView();
+			long fees = 0;
+			for (String code : view.getFlightCodes()) {
+				fees += view.getTotals(code).getFeesFixed();
+			}
+			if (fees < 0) {
+				throw new IllegalStateException("Negative fees in view " + view.getEpoch());
+			}
+			views.incrementAndGet();
+			if (pauseMicros > 0) {
+				LockSupport.parkNanos(pauseMicros * 1000L);
+			}
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void stopDashboards() throws InterruptedException {
+		running = false;
+		for (Thread dashboard : dashboards) {
+			dashboard.join();
+		}
+		if (readers > 0) {
+			System.out.println(views.get() + " views taken");
+		}
+	}
+
+	@Benchmark
+	public float checkInEveryone() {
+		float fees = 0;
+		for (int i = 0; i < waiting.length; i++) {
+			fees += handler.processPassenger(waiting[i], dimensions, 20f);
+		}
+		return fees;
+	}
+}
@@ -0,0 +1,124 @@
+package ase1.data;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.function.Function;
+
+import ase1.bench.DataGenerator;
+
+/**
+ * Compares the heap taken by {@link BookingRefMap}, where passengers are kept on the heap, with the
+ * {@code HashMap<String,Passenger>} it replaced, and the time each takes to look passengers up.
+ * Both hold the same passenger objects, so the heap each adds on top of the passengers is the index alone.
+ * Lookups are in random order with booking reference Strings made afresh, as a desk typing them in would,
+ * so the HashMap can't use the hash cached in its own key.
+ * It lives in ase1.data, rather than ase1.bench, to reach the package private map.
+ *
+ * Options, all optional:
+ * <pre>
+ *   --passengers 1000000,10000000
+ * </pre>
+ */
+public class IndexFootprint {
+	private static final int LOOKUPS = 3_000_000;
+
+	public static void main(String[] args) {
+		int[] counts = { 1_000_000, 10_000_000 };
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "--passengers":
+				String[] parts = value.split(",");
+				counts = new int[parts.length];
+				for (int j = 0; j < parts.length; j++) {
+					counts[j] = Integer.parseInt(parts[j].trim());
+				}
+				break;
+			default: throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		for (int count : counts) {
+			measure(count);
+		}
+	}
+
+	private static void measure(int count) {
+		Flight flight = new Flight("FL000000", "Destination", "Carrier", Integer.MAX_VALUE, 1e9f, 1e9f, 1f);
+		Passenger[] passengers = new Passenger[count];
+		for (int i = 0; i < count; i++) {
+			passengers[i] = new Passenger(DataGenerator.bookingRef(i), "First", "Last", flight);
+		}
+		String[] lookups = new String[LOOKUPS];
+		Random random = new Random(42);
+		for (int i = 0; i < LOOKUPS; i++) {
+			lookups[i] = new String(passengers[random.nextInt(count)].getBookingRefCode().toCharArray());
+		}
+		long base = usedHeap();
+
+		long[] hashMap = hashMap(passengers, lookups, base);
+		long[] refMap = bookingRefMap(passengers, lookups, base);
+
+		System.out.printf("%,d passengers%n", count);
+		System.out.printf("  HashMap<String,Passenger> %7.1fMB %6.1f bytes/passenger %6.0fns/lookup%n", hashMap[0] / 1048576.0,
+				(double) hashMap[0] / count, (double) hashMap[1] / LOOKUPS);
+		System.out.printf("  BookingRefMap             %7.1fMB %6.1f bytes/passenger %6.0fns/lookup%n", refMap[0] / 1048576.0,
+				(double) refMap[0] / count, (double) refMap[1] / LOOKUPS);
+	}
+
+	/**
+	 * Fills a HashMap with the passengers
+	 * @return the heap it takes, and the nanoseconds for all the lookups
+	 */
+	private static long[] hashMap(Passenger[] passengers, String[] lookups, long base) {
+		HashMap<String, Passenger> map = new HashMap<String, Passenger>();
+		for (Passenger passenger : passengers) {
+			map.put(passenger.getBookingRefCode(), passenger);
+		}
+		long bytes = usedHeap() - base;
+		return new long[] { bytes, time(lookups, map::get) };
+	}
+
+	/**
+	 * Fills a BookingRefMap with the passengers
+	 * @return the heap it takes, and the nanoseconds for all the lookups
+	 */
+	private static long[] bookingRefMap(Passenger[] passengers, String[] lookups, long base) {
+		BookingRefMap map = new BookingRefMap();
+		for (Passenger passenger : passengers) {
+			map.putIfAbsent(BookingRefCodec.encode(passenger.getBookingRefCode()), passenger, Passenger.NOT_CHECKED_IN);
+		}
+		long bytes = usedHeap() - base;
+		return new long[] { bytes, time(lookups, map::get) };
+	}
+
+	/**
+	 * Looks up every key three times, the first to warm up, and times the last two
+	 */
+	private static long time(String[] lookups, Function<String, Passenger> index) {
+		long nanos = 0;
+		int found = 0;
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			for (String key : lookups) {
+				if (index.apply(key) != null) {
+					found++;
+				}
+			}
+			if (round > 0) {
+				nanos += System.nanoTime() - start;
+			}
+		}
+		if (found != lookups.length * 3) {
+			throw new IllegalStateException("Only found " + found + " of " + lookups.length * 3);
+		}
+		return nanos / 2;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,90 @@
+package ase1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import ase1.data.BookingRefCodec;
+
+class CheckInEventRingTest {
+	private static final int RING_SIZE = 8;
+
+	@Test
+	void eventsPublishedBeforeStartAreDroppedAndConsumersGetEveryEventAfter() {
+		CheckInEventRing ring = new CheckInEventRing(RING_SIZE, CheckInEventRing.WaitStrategy.BLOCKING, CheckInEventRing.BackPressure.BLOCK);
+		List<String> seen = new ArrayList<String>();
+		List<Long> sequences = new ArrayList<Long>();
+		ring.addConsumer("test-consumer", (event, sequence, endOfBatch) -> {
+			seen.add(event.getBookingRefCode());
+			sequences.add(sequence);
+		});
+		// More than a whole ring before start, none of it can be consumed
+		for (int i = 0; i < RING_SIZE * 3; i++) {
+			assertFalse(ring.publish(ref(i), null, 1, 1, 0));
+		}
+		assertEquals(RING_SIZE * 3, ring.getDropped());
+		ring.start();
+
+		// A desk waiting for room must never be stuck behind events from before start
+		int events = RING_SIZE * 20;
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			for (int i = 0; i < events; i++) {
+				assertTrue(ring.publish(ref(i), null, 1, 1, 0));
+			}
+			ring.close();
+		});
+		assertEquals(events, seen.size());
+		for (int i = 0; i < events; i++) {
+			assertEquals(ref(i), seen.get(i));
+			assertEquals(i, sequences.get(i).longValue());
+		}
+		assertEquals(RING_SIZE * 3, ring.getDropped());
+	}
+
+	@Test
+	void manyDesksBlockingLoseNoEvent() throws Exception {
+		int desks = 4;
+		int each = 5_000;
+		CheckInEventRing ring = new CheckInEventRing(RING_SIZE, CheckInEventRing.WaitStrategy.YIELDING, CheckInEventRing.BackPressure.BLOCK);
+		BitSet seen = new BitSet();
+		long[] lastSequence = { -1 };
+		ring.addConsumer("test-consumer", (event, sequence, endOfBatch) -> {
+			assertEquals(lastSequence[0] + 1, sequence);
+			lastSequence[0] = sequence;
+			seen.set(BookingRefCodec.encode(event.getBookingRefCode()) - BookingRefCodec.encode(ref(0)));
+		});
+		ring.start();
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			Thread[] threads = new Thread[desks];
+			for (int d = 0; d < desks; d++) {
+				int desk = d;
+				threads[d] = new Thread(() -> {
+					for (int i = desk * each; i < (desk + 1) * each; i++) {
+						ring.publish(ref(i), null, 1, 1, 0);
+					}
+				});
+				threads[d].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			ring.close();
+		});
+		assertEquals(0, ring.getDropped());
+		assertEquals(0, ring.getConsumerFailures());
+		assertEquals(desks * each, seen.cardinality());
+		assertEquals(desks * each - 1, lastSequence[0]);
+	}
+
+	private static String ref(int i) {
+		return BookingRefCodec.decode(5_000_000 + i);
+	}
+}
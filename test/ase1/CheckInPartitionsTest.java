@@ -0,0 +1,77 @@
+package ase1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Desks checking in through partitions and through the handler at once, with and without the handler's
+ * check-ins routed through the partitions: each passenger is checked in exactly once either way.
+ */
+class CheckInPartitionsTest {
+	private static final int FLIGHTS = 40;
+	private static final int PASSENGERS = 10_000;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void handlerAndPartitionsTogetherCheckEachInOnce() throws Exception {
+		checkInEveryone(false);
+	}
+
+	@Test
+	void routedHandlerCheckInsCheckEachInOnce() throws Exception {
+		checkInEveryone(true);
+	}
+
+	@Test
+	void closedPartitionsCantBeRoutedThrough() {
+		CheckInHandler handler = new TestData(directory, FLIGHTS, 10, 10).newHandler();
+		CheckInPartitions partitions = new CheckInPartitions(handler, 2);
+		partitions.close();
+		assertThrows(IllegalStateException.class, partitions::routeHandlerCheckIns);
+		assertEquals(CheckInResult.Status.CHECKED_IN,
+				handler.tryProcessPassenger(TestData.bookingRef(0), TestData.dimensions(0), TestData.weight(0)).getStatus());
+	}
+
+	private void checkInEveryone(boolean routed) throws Exception {
+		TestData data = new TestData(directory, FLIGHTS, PASSENGERS, PASSENGERS);
+		CheckInHandler handler = data.newHandler();
+		AtomicIntegerArray wins = new AtomicIntegerArray(PASSENGERS);
+		float[] fees = new float[PASSENGERS];
+		try (CheckInPartitions partitions = new CheckInPartitions(handler, 3)) {
+			if (routed) {
+				partitions.routeHandlerCheckIns();
+			}
+			ConcurrentCheckInTest.runDesks(desk -> {
+				for (int k = 0; k < PASSENGERS; k++) {
+					int i = (k + desk * 997) % PASSENGERS;
+					// Half the desks go through the partitions, half through the handler
+					CheckInResult result = desk % 2 == 0
+							? partitions.tryProcessPassenger(TestData.bookingRef(i), TestData.dimensions(i), TestData.weight(i))
+							: handler.tryProcessPassenger(TestData.bookingRef(i), TestData.dimensions(i), TestData.weight(i));
+					if (result.getStatus() == CheckInResult.Status.CHECKED_IN) {
+						wins.incrementAndGet(i);
+						fees[i] = result.getFee();
+					} else {
+						assertEquals(CheckInResult.Status.ALREADY_CHECKED_IN, result.getStatus());
+					}
+				}
+			});
+		}
+
+		boolean[] checkedIn = new boolean[PASSENGERS];
+		for (int i = 0; i < PASSENGERS; i++) {
+			assertEquals(1, wins.get(i), TestData.bookingRef(i) + " check-ins");
+			checkedIn[i] = true;
+		}
+		assertEquals(0, handler.getNumToCheckIn());
+		data.assertTotals(handler, checkedIn, fees);
+	}
+}
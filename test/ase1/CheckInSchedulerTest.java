@@ -0,0 +1,121 @@
+package ase1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Desks served from the scheduler's shared queue check each passenger in once, the priority lane is served
+ * first, flight closing soonest first, and each desk's statistics add up to everyone served.
+ */
+class CheckInSchedulerTest {
+	private static final int FLIGHTS = 40;
+	private static final int PASSENGERS = 5_000;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void everyPassengerIsCheckedInOnce() throws Exception {
+		TestData data = new TestData(directory, FLIGHTS, PASSENGERS, PASSENGERS);
+		CheckInHandler handler = data.newHandler();
+		List<CompletableFuture<CheckInResult>> results = new ArrayList<CompletableFuture<CheckInResult>>();
+		try (CheckInScheduler scheduler = new CheckInScheduler(handler, 6)) {
+			for (int i = 0; i < PASSENGERS; i++) {
+				results.add(scheduler.submit(TestData.bookingRef(i), "Last" + i % 13, TestData.dimensions(i), TestData.weight(i)));
+			}
+			// everyone arrives a second time, and is only checked in once
+			for (int i = 0; i < PASSENGERS; i++) {
+				results.add(scheduler.submit(TestData.bookingRef(i), "Last" + i % 13, TestData.dimensions(i), TestData.weight(i)));
+			}
+			scheduler.close();
+
+			boolean[] checkedIn = new boolean[PASSENGERS];
+			float[] fees = new float[PASSENGERS];
+			for (int i = 0; i < PASSENGERS; i++) {
+				// two desks can serve a passenger's arrivals at once, either may win
+				CheckInResult first = results.get(i).join();
+				CheckInResult second = results.get(PASSENGERS + i).join();
+				CheckInResult won = first.getStatus() == CheckInResult.Status.CHECKED_IN ? first : second;
+				assertEquals(CheckInResult.Status.CHECKED_IN, won.getStatus());
+				assertEquals(CheckInResult.Status.ALREADY_CHECKED_IN, (won == first ? second : first).getStatus());
+				checkedIn[i] = true;
+				fees[i] = won.getFee();
+			}
+			assertEquals(0, handler.getNumToCheckIn());
+			data.assertTotals(handler, checkedIn, fees);
+
+			long served = 0;
+			for (int d = 0; d < scheduler.getDeskCount(); d++) {
+				served += scheduler.getDeskStats(d).getServed();
+			}
+			assertEquals(2 * PASSENGERS, served);
+			assertEquals(2 * PASSENGERS, scheduler.getWaitTime().getSampleCount());
+			assertEquals(0, scheduler.getQueueDepth());
+		}
+	}
+
+	@Test
+	void priorityLaneIsServedFirstByCloseTime() throws Exception {
+		TestData data = new TestData(directory, 3, 12, 12);
+		CountDownLatch busy = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> order = new ArrayList<String>();
+		CheckInScheduler scheduler = new CheckInScheduler(data.newHandler(), 1, 30, TimeUnit.MINUTES) {
+			@Override
+			protected CheckInResult serve(int desk, String ref, String name, float[] dimensions, float weight) {
+				if (order.isEmpty()) {
+					busy.countDown();
+					awaitUninterruptibly(release); // hold the only desk while the others queue
+				}
+				order.add(ref);
+				return super.serve(desk, ref, name, dimensions, weight);
+			}
+		};
+		long now = System.currentTimeMillis();
+		scheduler.setCloseTime(TestData.flightCode(1), now + TimeUnit.MINUTES.toMillis(20));
+		scheduler.setCloseTime(TestData.flightCode(2), now + TimeUnit.MINUTES.toMillis(10));
+
+		// passenger i is on flight i % 3: flight 0 has no close time, flight 2 closes before flight 1
+		scheduler.submit(TestData.bookingRef(0), "Last0", TestData.dimensions(0), TestData.weight(0));
+		busy.await();
+		for (int i = 3; i < 9; i++) {
+			scheduler.submit(TestData.bookingRef(i), "Last" + i, TestData.dimensions(i), TestData.weight(i));
+		}
+		assertEquals(6, scheduler.getQueueDepth());
+		assertEquals(4, scheduler.getPriorityQueueDepth());
+		release.countDown();
+		scheduler.close();
+
+		int[] expected = { 0, 5, 8, 4, 7, 3, 6 };
+		List<String> refs = new ArrayList<String>();
+		for (int i : expected) {
+			refs.add(TestData.bookingRef(i));
+		}
+		assertEquals(refs, order);
+		assertEquals(4, scheduler.getPriorityWaitTime().getSampleCount());
+		assertEquals(5, scheduler.getDeskStats(0).getMaxQueueDepth());
+		assertThrows(IllegalStateException.class,
+				() -> scheduler.submit(TestData.bookingRef(9), "Last9", TestData.dimensions(9), TestData.weight(9)));
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		while (true) {
+			try {
+				latch.await();
+				return;
+			} catch (InterruptedException e) {
+				// keep the desk held until released
+			}
+		}
+	}
+}
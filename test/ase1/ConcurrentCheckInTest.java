@@ -0,0 +1,167 @@
+package ase1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Many desks checking in the same passengers at once: each passenger is checked in exactly once,
+ * and every flight's totals are exactly the sum of the check-ins on it.
+ */
+class ConcurrentCheckInTest {
+	private static final int DESKS = 8;
+	private static final int FLIGHTS = 40;
+	private static final int PASSENGERS = 20_000;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void everyDeskTryingEveryPassengerChecksEachInOnce() throws Exception {
+		TestData data = new TestData(directory, FLIGHTS, PASSENGERS, PASSENGERS);
+		CheckInHandler handler = data.newHandler();
+		AtomicIntegerArray wins = new AtomicIntegerArray(PASSENGERS);
+		float[] fees = new float[PASSENGERS];
+
+		runDesks(desk -> {
+			// Each desk starts at a different passenger, so they collide all the way through
+			for (int k = 0; k < PASSENGERS; k++) {
+				int i = (k + desk * PASSENGERS / DESKS) % PASSENGERS;
+				CheckInResult result = handler.tryProcessPassenger(TestData.bookingRef(i), TestData.dimensions(i), TestData.weight(i));
+				if (result.getStatus() == CheckInResult.Status.CHECKED_IN) {
+					wins.incrementAndGet(i);
+					fees[i] = result.getFee();
+				} else {
+					assertEquals(CheckInResult.Status.ALREADY_CHECKED_IN, result.getStatus());
+				}
+			}
+		});
+
+		boolean[] checkedIn = new boolean[PASSENGERS];
+		for (int i = 0; i < PASSENGERS; i++) {
+			assertEquals(1, wins.get(i), TestData.bookingRef(i) + " check-ins");
+			checkedIn[i] = true;
+		}
+		assertEquals(0, handler.getNumToCheckIn());
+		data.assertTotals(handler, checkedIn, fees);
+	}
+
+	@Test
+	void singleAndBatchCheckInsTogetherCheckEachInOnce() throws Exception {
+		TestData data = new TestData(directory, FLIGHTS, PASSENGERS, PASSENGERS);
+		CheckInHandler handler = data.newHandler();
+		AtomicIntegerArray wins = new AtomicIntegerArray(PASSENGERS);
+		float[] fees = new float[PASSENGERS];
+		int batch = 50;
+
+		runDesks(desk -> {
+			for (int start = 0; start < PASSENGERS; start += batch) {
+				if (desk % 2 == 0) {
+					// Half the desks check in a batch at a time
+					String[] refs = new String[batch];
+					float[] dimensions = new float[batch * 3];
+					float[] weights = new float[batch];
+					for (int k = 0; k < batch; k++) {
+						refs[k] = TestData.bookingRef(start + k);
+						System.arraycopy(TestData.dimensions(start + k), 0, dimensions, k * 3, 3);
+						weights[k] = TestData.weight(start + k);
+					}
+					CheckInResult[] results = handler.processPassengers(refs, dimensions, weights);
+					for (int k = 0; k < batch; k++) {
+						if (results[k].getStatus() == CheckInResult.Status.CHECKED_IN) {
+							wins.incrementAndGet(start + k);
+							fees[start + k] = results[k].getFee();
+						}
+					}
+				} else {
+					for (int i = start; i < start + batch; i++) {
+						CheckInResult result = handler.tryProcessPassenger(TestData.bookingRef(i), TestData.dimensions(i), TestData.weight(i));
+						if (result.getStatus() == CheckInResult.Status.CHECKED_IN) {
+							wins.incrementAndGet(i);
+							fees[i] = result.getFee();
+						}
+					}
+				}
+			}
+		});
+
+		boolean[] checkedIn = new boolean[PASSENGERS];
+		for (int i = 0; i < PASSENGERS; i++) {
+			assertEquals(1, wins.get(i), TestData.bookingRef(i) + " check-ins");
+			checkedIn[i] = true;
+		}
+		assertEquals(0, handler.getNumToCheckIn());
+		data.assertTotals(handler, checkedIn, fees);
+	}
+
+	@Test
+	void enforcedLimitsNeverTakeAFlightOverItsCapacity() throws Exception {
+		int capacity = PASSENGERS / FLIGHTS / 2;
+		TestData data = new TestData(directory, FLIGHTS, PASSENGERS, capacity);
+		CheckInHandler handler = data.newHandler();
+		handler.setEnforceLimits(true);
+		AtomicIntegerArray wins = new AtomicIntegerArray(PASSENGERS);
+		float[] fees = new float[PASSENGERS];
+
+		runDesks(desk -> {
+			for (int k = 0; k < PASSENGERS; k++) {
+				int i = (k + desk * PASSENGERS / DESKS) % PASSENGERS;
+				CheckInResult result = handler.tryProcessPassenger(TestData.bookingRef(i), TestData.dimensions(i), TestData.weight(i));
+				if (result.getStatus() == CheckInResult.Status.CHECKED_IN) {
+					wins.incrementAndGet(i);
+					fees[i] = result.getFee();
+				}
+			}
+		});
+
+		boolean[] checkedIn = new boolean[PASSENGERS];
+		int total = 0;
+		for (int i = 0; i < PASSENGERS; i++) {
+			assertTrue(wins.get(i) <= 1, TestData.bookingRef(i) + " checked in twice");
+			checkedIn[i] = wins.get(i) == 1;
+			total += wins.get(i);
+		}
+		// Every seat is taken, by no more passengers than there are seats, and everyone else is still waiting
+		assertEquals(capacity * FLIGHTS, total);
+		assertEquals(PASSENGERS - total, handler.getNumToCheckIn());
+		data.assertTotals(handler, checkedIn, fees);
+	}
+
+	interface Desk {
+		void run(int desk) throws Exception;
+	}
+
+	/**
+	 * Runs every desk on a thread of its own, all at once, and waits for them all
+	 */
+	static void runDesks(Desk desk) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(DESKS);
+		try {
+			List<Future<Void>> done = new ArrayList<Future<Void>>();
+			for (int d = 0; d < DESKS; d++) {
+				int number = d;
+				Callable<Void> task = () -> {
+					desk.run(number);
+					return null;
+				};
+				done.add(pool.submit(task));
+			}
+			for (Future<Void> future : done) {
+				future.get(); // rethrows any assertion a desk failed
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
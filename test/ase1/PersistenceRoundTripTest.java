@@ -0,0 +1,144 @@
+package ase1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Check-ins made by many desks survive a restart, whether replayed from the journal, restored from a snapshot,
+ * or restored from a snapshot taken while desks were checking in and then caught up from the journal.
+ */
+class PersistenceRoundTripTest {
+	private static final int FLIGHTS = 30;
+	private static final int PASSENGERS = 12_000;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void journalReplaysEveryCheckIn() throws Exception {
+		TestData data = new TestData(directory, FLIGHTS, PASSENGERS, PASSENGERS);
+		CheckInHandler handler = data.newHandler();
+		Path journalFile = directory.resolve("journal");
+		CheckInJournal journal = new CheckInJournal(journalFile, CheckInJournal.SyncPolicy.NO_SYNC, 64, 0);
+		handler.attachJournal(journal);
+		CheckIns checkIns = checkInEveryOther(handler, null);
+		journal.close();
+
+		CheckInHandler restarted = data.newHandler();
+		try (CheckInJournal reopened = CheckInJournal.open(journalFile)) {
+			assertEquals(checkIns.count(), restarted.attachJournal(reopened));
+		}
+		assertEquals(handler.getNumToCheckIn(), restarted.getNumToCheckIn());
+		data.assertTotals(restarted, checkIns.checkedIn(), checkIns.fees);
+	}
+
+	@Test
+	void snapshotRestoresCheckInsAndTotals() throws Exception {
+		TestData data = new TestData(directory, FLIGHTS, PASSENGERS, PASSENGERS);
+		CheckInHandler handler = data.newHandler();
+		CheckIns checkIns = checkInEveryOther(handler, null);
+		Path snapshot = directory.resolve("snapshot");
+		handler.saveSnapshot(snapshot);
+
+		CheckInHandler restored = CheckInHandler.loadSnapshot(snapshot);
+		assertEquals(PASSENGERS - checkIns.count(), restored.getNumToCheckIn());
+		data.assertTotals(restored, checkIns.checkedIn(), checkIns.fees);
+		for (int i = 0; i < PASSENGERS; i++) {
+			CheckInResult.Status expected = checkIns.checkedIn()[i] ? CheckInResult.Status.ALREADY_CHECKED_IN : CheckInResult.Status.DETAILS_MATCH;
+			assertEquals(expected, restored.tryCheckDetails(TestData.bookingRef(i), "Last" + i % 13).getStatus(), TestData.bookingRef(i));
+		}
+	}
+
+	@Test
+	void snapshotTakenWhileCheckingInCatchesUpFromTheJournal() throws Exception {
+		TestData data = new TestData(directory, FLIGHTS, PASSENGERS, PASSENGERS);
+		CheckInHandler handler = data.newHandler();
+		Path journalFile = directory.resolve("journal");
+		CheckInJournal journal = new CheckInJournal(journalFile, CheckInJournal.SyncPolicy.NO_SYNC, 64, 0);
+		handler.attachJournal(journal);
+		Path snapshot = directory.resolve("snapshot");
+		CheckIns checkIns = checkInEveryOther(handler, () -> handler.saveSnapshot(snapshot));
+		journal.close();
+
+		CheckInHandler restored = CheckInHandler.loadSnapshot(snapshot);
+		try (CheckInJournal reopened = CheckInJournal.open(journalFile)) {
+			restored.attachJournal(reopened);
+		}
+		assertEquals(PASSENGERS - checkIns.count(), restored.getNumToCheckIn());
+		data.assertTotals(restored, checkIns.checkedIn(), checkIns.fees);
+	}
+
+	interface Midway {
+		void run() throws Exception;
+	}
+
+	/**
+	 * Who checked in and what they paid
+	 */
+	static final class CheckIns {
+		final AtomicIntegerArray wins = new AtomicIntegerArray(PASSENGERS);
+		final float[] fees = new float[PASSENGERS];
+
+		boolean[] checkedIn() {
+			boolean[] checkedIn = new boolean[PASSENGERS];
+			for (int i = 0; i < PASSENGERS; i++) {
+				checkedIn[i] = wins.get(i) == 1;
+			}
+			return checkedIn;
+		}
+
+		int count() {
+			int count = 0;
+			for (int i = 0; i < PASSENGERS; i++) {
+				count += wins.get(i);
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Has every desk try to check in every other passenger, running midway once the desks are a quarter of the way through
+	 */
+	private static CheckIns checkInEveryOther(CheckInHandler handler, Midway midway) throws Exception {
+		CheckIns checkIns = new CheckIns();
+		CountDownLatch started = new CountDownLatch(1);
+		Thread other = null;
+		Throwable[] failed = new Throwable[1];
+		if (midway != null) {
+			other = new Thread(() -> {
+				try {
+					started.await();
+					midway.run();
+				} catch (Throwable e) {
+					failed[0] = e;
+				}
+			});
+			other.start();
+		}
+		ConcurrentCheckInTest.runDesks(desk -> {
+			for (int i = 0; i < PASSENGERS; i += 2) {
+				if (i == PASSENGERS / 4) {
+					started.countDown();
+				}
+				CheckInResult result = handler.tryProcessPassenger(TestData.bookingRef(i), TestData.dimensions(i), TestData.weight(i));
+				if (result.getStatus() == CheckInResult.Status.CHECKED_IN) {
+					checkIns.wins.incrementAndGet(i);
+					checkIns.fees[i] = result.getFee();
+				}
+			}
+		});
+		if (other != null) {
+			other.join();
+			if (failed[0] != null) {
+				throw new AssertionError("Failed midway", failed[0]);
+			}
+		}
+		return checkIns;
+	}
+}
@@ -0,0 +1,104 @@
+package ase1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import ase1.data.BookingRefCodec;
+import ase1.data.FlightTotals;
+
+/**
+ * Writes small flight.txt and passengers.txt files for tests, with passenger i booked on flight i % flights
+ * and always bringing the same baggage, so a test can work out exactly what every flight's totals should be.
+ */
+final class TestData {
+	final int flights;
+	final int passengers;
+	final Path flightFile;
+	final Path passengerFile;
+
+	/**
+	 * Writes the files
+	 * @param directory where to write them
+	 * @param flights the number of flights
+	 * @param passengers the number of passengers, none checked in yet
+	 * @param capacity the passenger capacity of every flight
+	 */
+	TestData(Path directory, int flights, int passengers, int capacity) {
+		this.flights = flights;
+		this.passengers = passengers;
+		this.flightFile = directory.resolve("flight.txt");
+		this.passengerFile = directory.resolve("passengers.txt");
+		StringBuilder out = new StringBuilder();
+		for (int f = 0; f < flights; f++) {
+			out.append(flightCode(f)).append(",Destination").append(f % 7).append(",Carrier").append(f % 3)
+					.append(',').append(capacity).append(',').append(capacity * 50).append(',').append(capacity * 50).append(",1.5\n");
+		}
+		write(flightFile, out);
+		out.setLength(0);
+		for (int i = 0; i < passengers; i++) {
+			out.append(bookingRef(i)).append(",First").append(i % 11).append(",Last").append(i % 13).append(',')
+					.append(flightCode(i % flights)).append(",false\n");
+		}
+		write(passengerFile, out);
+	}
+
+	CheckInHandler newHandler() {
+		return new CheckInHandler(flightFile, passengerFile);
+	}
+
+	static String flightCode(int f) {
+		return String.format("TST%04d", f);
+	}
+
+	static String bookingRef(int i) {
+		return BookingRefCodec.decode(1_000_000 + i * 7);
+	}
+
+	static float[] dimensions(int i) {
+		return new float[] { 1, 1, 1 + i % 5 };
+	}
+
+	static float weight(int i) {
+		return 1 + i % 7;
+	}
+
+	/**
+	 * Checks every flight's totals are exactly those of the passengers on it who checked in
+	 * @param handler the handler holding the flights
+	 * @param checkedIn whether each passenger has checked in
+	 * @param fees the fee each checked in passenger paid
+	 */
+	void assertTotals(CheckInHandler handler, boolean[] checkedIn, float[] fees) {
+		for (int f = 0; f < flights; f++) {
+			int count = 0;
+			long vol = 0, weight = 0, fee = 0;
+			for (int i = f; i < passengers; i += flights) {
+				if (checkedIn[i]) {
+					count++;
+					float[] d = dimensions(i);
+					vol += FlightTotals.toFixed(d[0] * d[1] * d[2]);
+					weight += FlightTotals.toFixed(weight(i));
+					fee += FlightTotals.toFixed(fees[i]);
+				}
+			}
+			FlightTotals totals = handler.getFlight(flightCode(f)).getTotals();
+			assertEquals(count, totals.getPassengers(), flightCode(f) + " passengers");
+			assertEquals(vol, totals.getVolumeFixed(), flightCode(f) + " volume");
+			assertEquals(weight, totals.getWeightFixed(), flightCode(f) + " weight");
+			assertEquals(fee, totals.getFeesFixed(), flightCode(f) + " fees");
+		}
+	}
+
+	private static void write(Path file, CharSequence text) {
+		try {
+			Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package ase1.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ase1.IllegalReferenceCodeException;
+
+/**
+ * Checks a view keeps answering as of when it was taken, and the one documented exception for removed passengers.
+ */
+class CheckInViewTest {
+	private static final String FLIGHT = "TST0001";
+
+	@TempDir
+	Path directory;
+	private FlightList flights;
+
+	@Test
+	void viewIgnoresLaterCheckIns() throws Exception {
+		PassengerList passengers = load(2);
+		CheckInEpochs epochs = new CheckInEpochs(flights, passengers);
+		checkIn(passengers, epochs, ref(0));
+		CheckInView before = epochs.view();
+		checkIn(passengers, epochs, ref(1));
+		CheckInView after = epochs.view();
+
+		assertTrue(before.isCheckedIn(ref(0)));
+		assertFalse(before.isCheckedIn(ref(1)));
+		assertEquals(1, before.getNumCheckedIn());
+		assertEquals(1, before.getTotals(FLIGHT).getPassengers());
+		assertTrue(after.isCheckedIn(ref(1)));
+		assertEquals(2, after.getNumCheckedIn());
+		assertEquals(2, after.getTotals(FLIGHT).getPassengers());
+	}
+
+	@Test
+	void removalChangesOnlyIsCheckedIn() throws Exception {
+		PassengerList passengers = load(2);
+		CheckInEpochs epochs = new CheckInEpochs(flights, passengers);
+		checkIn(passengers, epochs, ref(0));
+		CheckInView before = epochs.view();
+		assertTrue(passengers.remove(ref(0)));
+		CheckInView after = epochs.view();
+
+		// removals aren't recorded in epochs, so counts and totals keep the passenger in every view
+		for (CheckInView view : new CheckInView[] { before, after }) {
+			assertEquals(1, view.getNumCheckedIn());
+			assertEquals(1, view.getNumToCheckIn());
+			assertEquals(1, view.getTotals(FLIGHT).getPassengers());
+			assertFalse(view.isCheckedIn(ref(0)));
+		}
+		assertEquals(0, passengers.getNumCheckedIn());
+	}
+
+	private PassengerList load(int count) throws IOException, IllegalReferenceCodeException {
+		Path flightFile = directory.resolve("flight.txt");
+		Path passengerFile = directory.resolve("passengers.txt");
+		Files.write(flightFile, (FLIGHT + ",Destination,Carrier,10,500,500,1.5\n").getBytes(StandardCharsets.UTF_8));
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			out.append(ref(i)).append(",First,Last").append(i).append(',').append(FLIGHT).append(",false\n");
+		}
+		Files.write(passengerFile, out.toString().getBytes(StandardCharsets.UTF_8));
+		flights = new FlightList(flightFile);
+		return new PassengerList(flights, passengerFile);
+	}
+
+	private static void checkIn(PassengerList passengers, CheckInEpochs epochs, String ref) {
+		assertTrue(passengers.checkInPassenger(ref));
+		Passenger passenger = passengers.find(ref);
+		passenger.getFlight().addPassengerAndBaggage(2, 3, 0);
+		epochs.record(passenger, 2, 3, 0);
+	}
+
+	private static String ref(int i) {
+		return BookingRefCodec.decode(1_000_000 + i * 7);
+	}
+}
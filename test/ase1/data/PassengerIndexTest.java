@@ -0,0 +1,102 @@
+package ase1.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Lookups that don't lock, while passengers are added and the index grows underneath them,
+ * for both the heap and off-heap indexes
+ */
+class PassengerIndexTest {
+	private static final int PASSENGERS = 200_000;
+	private static final int READERS = 3;
+
+	private final Flight flight = new Flight("TST0001", "Destination", "Carrier", PASSENGERS, 1e6f, 1e6f, 1.5f);
+
+	@Test
+	void heapLookupsFindEveryPassengerWhileTheIndexGrows() throws Exception {
+		lookupsFindEveryPassengerWhileTheIndexGrows(new BookingRefMap());
+	}
+
+	@Test
+	void offHeapLookupsFindEveryPassengerWhileTheIndexGrows() throws Exception {
+		lookupsFindEveryPassengerWhileTheIndexGrows(new OffHeapPassengerStore(0));
+	}
+
+	@Test
+	void heapRemovedPassengersAreNotFound() {
+		removedPassengersAreNotFound(new BookingRefMap());
+	}
+
+	@Test
+	void offHeapRemovedPassengersAreNotFound() {
+		removedPassengersAreNotFound(new OffHeapPassengerStore(0));
+	}
+
+	private void lookupsFindEveryPassengerWhileTheIndexGrows(PassengerIndex index) throws Exception {
+		AtomicInteger added = new AtomicInteger();
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<String> wrong = new AtomicReference<String>();
+		Thread[] readers = new Thread[READERS];
+		for (int r = 0; r < READERS; r++) {
+			readers[r] = new Thread(() -> {
+				while (!done.get() && wrong.get() == null) {
+					int upTo = added.get();
+					// Everyone added so far must be found, and be who they were added as
+					for (int i = Math.max(0, upTo - 1000); i < upTo; i++) {
+						Passenger found = index.get(code(i));
+						if (found == null || !found.getBookingRefCode().equals(BookingRefCodec.decode(code(i)))) {
+							wrong.compareAndSet(null, "passenger " + i + " of " + upTo + " found as " + found);
+						}
+					}
+				}
+			});
+			readers[r].start();
+		}
+		for (int i = 0; i < PASSENGERS; i++) {
+			assertNull(index.putIfAbsent(code(i), passenger(i), Passenger.NOT_CHECKED_IN));
+			added.set(i + 1);
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertNull(wrong.get());
+		assertEquals(PASSENGERS, index.size());
+		for (int i = 0; i < PASSENGERS; i++) {
+			assertNotNull(index.get(code(i)), BookingRefCodec.decode(code(i)));
+		}
+		assertNull(index.get(code(PASSENGERS)));
+	}
+
+	private void removedPassengersAreNotFound(PassengerIndex index) {
+		for (int i = 0; i < 1000; i++) {
+			index.putIfAbsent(code(i), passenger(i), Passenger.NOT_CHECKED_IN);
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			assertEquals(true, index.remove(code(i), index.get(code(i))));
+		}
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i % 2 == 1, index.get(code(i)) != null, BookingRefCodec.decode(code(i)));
+		}
+		assertEquals(500, index.size());
+		// Adding a removed passenger again finds them again
+		assertNull(index.putIfAbsent(code(0), passenger(0), Passenger.NOT_CHECKED_IN));
+		assertNotNull(index.get(code(0)));
+	}
+
+	private static int code(int i) {
+		return 3_000_000 + i * 13;
+	}
+
+	private Passenger passenger(int i) {
+		return new Passenger(BookingRefCodec.decode(code(i)), "First", "Last" + i, flight);
+	}
+}
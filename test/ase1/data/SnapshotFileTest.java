@@ -0,0 +1,36 @@
+package ase1.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SnapshotFileTest {
+	@TempDir
+	Path directory;
+
+	@Test
+	void missingNamesAreSavedAsEmptyNames() throws Exception {
+		Flight flight = new Flight("TST0001", "Destination", "Carrier", 10, 100, 100, 1.5f);
+		FlightList flights = new FlightList(Collections.singletonList(flight));
+		PassengerList passengers = new PassengerList(2);
+		passengers.add(new Passenger("abc0001", null, "Smith", flight), false);
+		passengers.add(new Passenger("abc0002", "Jane", null, flight), true);
+		Path file = directory.resolve("snapshot");
+		SnapshotFile.save(flights, passengers, new CheckInEpochs(flights, passengers).view(), file);
+
+		PassengerList restored = SnapshotFile.load(file).getPassengers();
+		Passenger first = restored.get("abc0001");
+		assertEquals("", first.getFirstName());
+		assertEquals("Smith", first.getLastName());
+		Passenger second = restored.get("abc0002");
+		assertEquals("Jane", second.getFirstName());
+		assertEquals("", second.getLastName());
+		assertTrue(second.isCheckedIn());
+		assertEquals(1, restored.getNumToCheckIn());
+	}
+}